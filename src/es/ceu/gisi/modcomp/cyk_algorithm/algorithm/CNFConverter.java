@@ -0,0 +1,557 @@
+package es.ceu.gisi.modcomp.cyk_algorithm.algorithm;
+
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.exceptions.CYKAlgorithmException;
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.interfaces.CYKAlgorithmInterface;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Clase que admite una gramática independiente del contexto cualquiera
+ * (partes derechas de cualquier longitud, producciones unitarias, producciones
+ * ε y terminales mezclados con no terminales) y la convierte a forma normal de
+ * Chomsky para poder cargarla en un CYKAlgorithmInterface.
+ *
+ * Los símbolos siguen las mismas reglas que en CYKAlgorithm: los no terminales
+ * son letras mayúsculas y los terminales letras minúsculas. Los no terminales
+ * que introduce la conversión se toman de las letras mayúsculas que no usa la
+ * gramática.
+ *
+ * Las partes derechas largas se dividen de derecha a izquierda y cada sufijo
+ * tiene un único no terminal auxiliar, de modo que las producciones con un
+ * sufijo común comparten los símbolos que lo derivan. Cada producción en FNC
+ * recuerda todas las producciones originales de las que procede, ver
+ * {@link #getOrigins(char, String)}.
+ */
+public class CNFConverter {
+
+    private final List<Character> nonTerminals;
+    private final List<Character> terminals;
+    private Character startSymbol;
+    private final List<Rule> rules;
+    private final Set<String> ruleKeys;
+
+    private List<Rule> converted;
+    private Set<Character> auxiliaries;
+    private Map<String, Rule> convertedByKey;
+    private boolean emptyWord;
+
+    public CNFConverter() {
+        nonTerminals = new ArrayList<>();
+        terminals = new ArrayList<>();
+        startSymbol = null;
+        rules = new ArrayList<>();
+        ruleKeys = new HashSet<>();
+    }
+
+    /**
+     * Método que añade un no terminal a la gramática original.
+     *
+     * @param nonterminal Por ejemplo, 'S'
+     * @throws CYKAlgorithmException Si el elemento no es una letra mayúscula o
+     * si ya está en el conjunto.
+     */
+    public void addNonTerminal(char nonterminal) throws CYKAlgorithmException {
+        if (nonTerminals.contains(nonterminal) || !Character.isLetter(nonterminal) || !Character.isUpperCase(nonterminal)) {
+            throw new CYKAlgorithmException();
+        }
+        nonTerminals.add(nonterminal);
+        converted = null;
+    }
+
+    /**
+     * Método que añade un terminal a la gramática original.
+     *
+     * @param terminal Por ejemplo, 'a'
+     * @throws CYKAlgorithmException Si el elemento no es una letra minúscula o
+     * si ya está en el conjunto.
+     */
+    public void addTerminal(char terminal) throws CYKAlgorithmException {
+        if (terminals.contains(terminal) || !Character.isLetter(terminal) || !Character.isLowerCase(terminal)) {
+            throw new CYKAlgorithmException();
+        }
+        terminals.add(terminal);
+        converted = null;
+    }
+
+    /**
+     * Método que indica el axioma de la gramática original.
+     *
+     * @param nonterminal Por ejemplo, 'S'
+     * @throws CYKAlgorithmException Si el elemento no forma parte del conjunto
+     * de elementos no terminales.
+     */
+    public void setStartSymbol(char nonterminal) throws CYKAlgorithmException {
+        if (!nonTerminals.contains(nonterminal)) {
+            throw new CYKAlgorithmException();
+        }
+        startSymbol = nonterminal;
+        converted = null;
+    }
+
+    /**
+     * Método que añade una producción cualquiera a la gramática original.
+     *
+     * @param nonterminal A
+     * @param production Cualquier secuencia de símbolos definidos, por ejemplo
+     * "aBcD", "B" o "" para una producción ε
+     * @throws CYKAlgorithmException Si la parte izquierda o algún símbolo de la
+     * producción no están definidos, o si la producción ya se había añadido.
+     */
+    public void addProduction(char nonterminal, String production) throws CYKAlgorithmException {
+        if (!nonTerminals.contains(nonterminal)) {
+            throw new CYKAlgorithmException();
+        }
+        for (char c : production.toCharArray()) {
+            if (!nonTerminals.contains(c) && !terminals.contains(c)) {
+                throw new CYKAlgorithmException();
+            }
+        }
+        Rule rule = new Rule(nonterminal, production, rules.size());
+        if (!ruleKeys.add(rule.toString())) {
+            throw new CYKAlgorithmException();
+        }
+        rules.add(rule);
+        converted = null;
+    }
+
+    /**
+     * Convierte la gramática y la carga en el algoritmo indicado, sustituyendo
+     * la gramática que tuviera.
+     *
+     * @param cyk El algoritmo que recibe la gramática en FNC
+     * @throws CYKAlgorithmException Si la gramática no tiene axioma o si la
+     * conversión se queda sin letras mayúsculas para los no terminales
+     * auxiliares.
+     */
+    public void loadInto(CYKAlgorithmInterface cyk) throws CYKAlgorithmException {
+        convert();
+        cyk.removeGrammar();
+        for (Character c : terminals) {
+            cyk.addTerminal(c);
+        }
+        Set<Character> added = new HashSet<>();
+        for (Character c : nonTerminals) {
+            if (c.equals(startSymbol) || isUsed(c)) {
+                cyk.addNonTerminal(c);
+                added.add(c);
+            }
+        }
+        for (Character c : auxiliaries) {
+            if (added.add(c)) {
+                cyk.addNonTerminal(c);
+            }
+        }
+        cyk.setStartSymbol(startSymbol);
+        for (Rule rule : converted) {
+            cyk.addProduction(rule.lhs, rule.rhs);
+        }
+    }
+
+    /**
+     * Convierte la gramática y devuelve las producciones en FNC con el mismo
+     * formato que CYKAlgorithmInterface.getProductions, una por parte
+     * izquierda.
+     *
+     * @return Las producciones convertidas, por ejemplo ["S::=AB|a", "A::=a"]
+     * @throws CYKAlgorithmException En los mismos casos que loadInto.
+     */
+    public List<String> getConvertedProductions() throws CYKAlgorithmException {
+        convert();
+        Map<Character, String> byLhs = new LinkedHashMap<>();
+        for (Rule rule : converted) {
+            String s = byLhs.get(rule.lhs);
+            byLhs.put(rule.lhs, s == null ? rule.toString() : s + "|" + rule.rhs);
+        }
+        return new ArrayList<>(byLhs.values());
+    }
+
+    /**
+     * Indica si el axioma deriva la palabra vacía. La FNC no puede
+     * expresarlo, así que quien lo necesite tiene que comprobarlo aparte.
+     *
+     * @return TRUE si ε pertenece al lenguaje de la gramática original
+     * @throws CYKAlgorithmException Si la gramática no tiene axioma.
+     */
+    public boolean derivesEmptyWord() throws CYKAlgorithmException {
+        convert();
+        return emptyWord;
+    }
+
+    /**
+     * Indica si un no terminal lo ha introducido la conversión. Al mostrar un
+     * árbol se pueden quitar esos nodos para recuperar la forma de la
+     * derivación original.
+     *
+     * @param nonterminal Símbolo de la gramática convertida
+     * @return TRUE si no pertenece a la gramática original
+     * @throws CYKAlgorithmException Si la gramática no tiene axioma.
+     */
+    public boolean isAuxiliary(char nonterminal) throws CYKAlgorithmException {
+        convert();
+        return auxiliaries.contains(nonterminal);
+    }
+
+    /**
+     * Devuelve la primera, en orden de inserción, de las producciones
+     * originales de las que procede una producción en FNC, ver
+     * getOrigins(char, String).
+     *
+     * @param nonterminal Parte izquierda de la producción en FNC
+     * @param production Parte derecha de la producción en FNC, "BC" o "a"
+     * @return La producción original, por ejemplo "A::=aBC", o "" si la
+     * producción no existe o sólo deriva un terminal para un auxiliar.
+     * @throws CYKAlgorithmException Si la gramática no tiene axioma.
+     */
+    public String getOrigin(char nonterminal, String production) throws CYKAlgorithmException {
+        List<String> origins = getOrigins(nonterminal, production);
+        return origins.isEmpty() ? "" : origins.get(0);
+    }
+
+    /**
+     * Devuelve todas las producciones originales de las que procede una
+     * producción en FNC. Hay más de una cuando varias producciones comparten
+     * un sufijo (y por tanto su no terminal auxiliar) o dan lugar a la misma
+     * producción en FNC.
+     *
+     * @param nonterminal Parte izquierda de la producción en FNC
+     * @param production Parte derecha de la producción en FNC, "BC" o "a"
+     * @return Las producciones originales en orden de inserción, vacía si la
+     * producción no existe o sólo deriva un terminal para un auxiliar.
+     * @throws CYKAlgorithmException Si la gramática no tiene axioma.
+     */
+    public List<String> getOrigins(char nonterminal, String production) throws CYKAlgorithmException {
+        convert();
+        Rule rule = convertedByKey.get(nonterminal + "::=" + production);
+        List<String> origins = new ArrayList<>();
+        if (rule != null) {
+            for (int origin : rule.origins) {
+                origins.add(rules.get(origin).toString());
+            }
+        }
+        return origins;
+    }
+
+    private boolean isUsed(char nonterminal) {
+        for (Rule rule : converted) {
+            if (rule.lhs == nonterminal) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * runs the conversion pipeline if the source grammar changed since the
+     * last run
+     */
+    private void convert() throws CYKAlgorithmException {
+        if (converted != null) {
+            return;
+        }
+        if (startSymbol == null) {
+            throw new CYKAlgorithmException();
+        }
+        Set<Character> used = new HashSet<>(nonTerminals);
+        used.addAll(terminals);
+        Set<Character> aux = new HashSet<>();
+
+        List<Rule> current = replaceTerminals(rules, used, aux);
+        current = binarize(current, used, aux);
+        Set<Character> nullable = nullableSymbols(current);
+        emptyWord = nullable.contains(startSymbol);
+        current = removeEmptyRules(current, nullable);
+        current = removeUnitRules(current);
+        current = removeUselessRules(current);
+
+        Map<String, Rule> byKey = new LinkedHashMap<>();
+        for (Rule rule : current) {
+            Rule kept = byKey.putIfAbsent(rule.toString(), rule);
+            if (kept != null) {
+                kept.origins.addAll(rule.origins);
+            }
+        }
+        aux.retainAll(lhsSymbols(byKey.values()));
+        converted = new ArrayList<>(byKey.values());
+        convertedByKey = byKey;
+        auxiliaries = aux;
+    }
+
+    /**
+     * replace the terminals of right-hand sides with two or more symbols by a
+     * non-terminal that only derives that terminal
+     */
+    private List<Rule> replaceTerminals(List<Rule> source, Set<Character> used, Set<Character> aux) throws CYKAlgorithmException {
+        Map<Character, Character> proxies = new HashMap<>();
+        Map<Character, List<String>> byLhs = new HashMap<>();
+        for (Rule rule : source) {
+            byLhs.computeIfAbsent(rule.lhs, k -> new ArrayList<>()).add(rule.rhs);
+        }
+        for (Map.Entry<Character, List<String>> entry : byLhs.entrySet()) {   // reuse existing A::=a
+            List<String> values = entry.getValue();
+            if (values.size() == 1 && values.get(0).length() == 1 && terminals.contains(values.get(0).charAt(0))) {
+                proxies.putIfAbsent(values.get(0).charAt(0), entry.getKey());
+            }
+        }
+
+        List<Rule> result = new ArrayList<>();
+        for (Rule rule : source) {
+            if (rule.rhs.length() < 2) {
+                result.add(rule);
+                continue;
+            }
+            StringBuilder rhs = new StringBuilder(rule.rhs.length());
+            for (char c : rule.rhs.toCharArray()) {
+                if (terminals.contains(c)) {
+                    Character proxy = proxies.get(c);
+                    if (proxy == null) {
+                        proxy = freshNonTerminal(used, aux);
+                        proxies.put(c, proxy);
+                        result.add(new Rule(proxy, String.valueOf(c), -1));
+                    }
+                    rhs.append(proxy);
+                } else {
+                    rhs.append(c);
+                }
+            }
+            result.add(new Rule(rule.lhs, rhs.toString(), rule.origins));
+        }
+        return result;
+    }
+
+    /**
+     * split right-hand sides longer than two symbols, sharing one auxiliary
+     * non-terminal per distinct suffix
+     */
+    private List<Rule> binarize(List<Rule> source, Set<Character> used, Set<Character> aux) throws CYKAlgorithmException {
+        Map<String, Rule> suffixes = new HashMap<>();
+        List<Rule> result = new ArrayList<>();
+        for (Rule rule : source) {
+            if (rule.rhs.length() <= 2) {
+                result.add(rule);
+                continue;
+            }
+            Rule tail = suffixRule(rule.rhs.substring(1), rule.origins, suffixes, result, used, aux);
+            result.add(new Rule(rule.lhs, "" + rule.rhs.charAt(0) + tail.lhs, rule.origins));
+        }
+        return result;
+    }
+
+    /**
+     * the rule of the auxiliary that derives a suffix, created the first time;
+     * every rule that shares it adds its origins to it and to the rules of the
+     * shorter suffixes it uses
+     */
+    private Rule suffixRule(String suffix, Set<Integer> origins, Map<String, Rule> suffixes, List<Rule> result,
+            Set<Character> used, Set<Character> aux) throws CYKAlgorithmException {
+        Rule rule = suffixes.get(suffix);
+        if (rule != null) {
+            for (String s = suffix; s.length() >= 2; s = s.substring(1)) {
+                suffixes.get(s).origins.addAll(origins);
+            }
+            return rule;
+        }
+        String rhs = suffix;
+        if (suffix.length() > 2) {
+            rhs = "" + suffix.charAt(0) + suffixRule(suffix.substring(1), origins, suffixes, result, used, aux).lhs;
+        }
+        rule = new Rule(freshNonTerminal(used, aux), rhs, origins);
+        suffixes.put(suffix, rule);
+        result.add(rule);
+        return rule;
+    }
+
+    private static Set<Character> nullableSymbols(List<Rule> source) {
+        Set<Character> nullable = new HashSet<>();
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (Rule rule : source) {
+                if (!nullable.contains(rule.lhs) && allIn(rule.rhs, nullable)) {
+                    nullable.add(rule.lhs);
+                    changed = true;
+                }
+            }
+        }
+        return nullable;
+    }
+
+    /**
+     * drop ε-rules, adding the variants of each binary rule that skip a
+     * nullable symbol
+     */
+    private static List<Rule> removeEmptyRules(List<Rule> source, Set<Character> nullable) {
+        List<Rule> result = new ArrayList<>();
+        for (Rule rule : source) {
+            if (rule.rhs.isEmpty()) {
+                continue;
+            }
+            result.add(rule);
+            if (rule.rhs.length() == 2) {
+                if (nullable.contains(rule.rhs.charAt(0))) {
+                    result.add(new Rule(rule.lhs, rule.rhs.substring(1), rule.origins));
+                }
+                if (nullable.contains(rule.rhs.charAt(1))) {
+                    result.add(new Rule(rule.lhs, rule.rhs.substring(0, 1), rule.origins));
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * replace every unit chain A::=B ... B::=α by A::=α
+     */
+    private List<Rule> removeUnitRules(List<Rule> source) {
+        Map<Character, List<Character>> units = new HashMap<>();
+        Map<Character, List<Rule>> proper = new LinkedHashMap<>();
+        for (Rule rule : source) {
+            if (rule.rhs.length() == 1 && !terminals.contains(rule.rhs.charAt(0))) {
+                units.computeIfAbsent(rule.lhs, k -> new ArrayList<>()).add(rule.rhs.charAt(0));
+            } else {
+                proper.computeIfAbsent(rule.lhs, k -> new ArrayList<>()).add(rule);
+            }
+        }
+        List<Rule> result = new ArrayList<>();
+        for (Character lhs : orderedLhs(source)) {
+            Set<Character> reached = new HashSet<>();
+            Deque<Character> pending = new ArrayDeque<>();
+            reached.add(lhs);
+            pending.add(lhs);
+            while (!pending.isEmpty()) {
+                Character b = pending.poll();
+                for (Rule rule : proper.getOrDefault(b, List.of())) {
+                    result.add(b.equals(lhs) ? rule : new Rule(lhs, rule.rhs, rule.origins));
+                }
+                for (Character c : units.getOrDefault(b, List.of())) {
+                    if (reached.add(c)) {
+                        pending.add(c);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * keep only the rules whose symbols all derive some word and are reachable
+     * from the start symbol
+     */
+    private List<Rule> removeUselessRules(List<Rule> source) {
+        Set<Character> generating = new HashSet<>(terminals);
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (Rule rule : source) {
+                if (!generating.contains(rule.lhs) && allIn(rule.rhs, generating)) {
+                    generating.add(rule.lhs);
+                    changed = true;
+                }
+            }
+        }
+        Map<Character, List<Rule>> byLhs = new HashMap<>();
+        for (Rule rule : source) {
+            if (allIn(rule.rhs, generating)) {
+                byLhs.computeIfAbsent(rule.lhs, k -> new ArrayList<>()).add(rule);
+            }
+        }
+        Set<Character> reachable = new HashSet<>();
+        Deque<Character> pending = new ArrayDeque<>();
+        reachable.add(startSymbol);
+        pending.add(startSymbol);
+        while (!pending.isEmpty()) {
+            for (Rule rule : byLhs.getOrDefault(pending.poll(), List.of())) {
+                for (char c : rule.rhs.toCharArray()) {
+                    if (reachable.add(c)) {
+                        pending.add(c);
+                    }
+                }
+            }
+        }
+        List<Rule> result = new ArrayList<>();
+        for (Rule rule : source) {
+            if (reachable.contains(rule.lhs) && allIn(rule.rhs, generating)) {
+                result.add(rule);
+            }
+        }
+        return result;
+    }
+
+    private static List<Character> orderedLhs(List<Rule> source) {
+        Set<Character> seen = new HashSet<>();
+        List<Character> result = new ArrayList<>();
+        for (Rule rule : source) {
+            if (seen.add(rule.lhs)) {
+                result.add(rule.lhs);
+            }
+        }
+        return result;
+    }
+
+    private static Set<Character> lhsSymbols(Iterable<Rule> source) {
+        Set<Character> result = new HashSet<>();
+        for (Rule rule : source) {
+            result.add(rule.lhs);
+        }
+        return result;
+    }
+
+    private static boolean allIn(String rhs, Set<Character> symbols) {
+        for (int i = 0; i < rhs.length(); i++) {
+            if (!symbols.contains(rhs.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * first uppercase letter that is not used by the grammar yet
+     */
+    private static char freshNonTerminal(Set<Character> used, Set<Character> aux) throws CYKAlgorithmException {
+        for (char c = 'A'; c < Character.MAX_VALUE; c++) {
+            if (Character.isLetter(c) && Character.isUpperCase(c) && !used.contains(c)) {
+                used.add(c);
+                aux.add(c);
+                return c;
+            }
+        }
+        throw new CYKAlgorithmException();
+    }
+
+    /**
+     * production of the grammar, origins are the indexes of the source rules
+     * it comes from, none for terminal proxies
+     */
+    private static final class Rule {
+
+        private final char lhs;
+        private final String rhs;
+        private final Set<Integer> origins;
+
+        /**
+         * @param origin index of the source rule, -1 for none
+         */
+        private Rule(char lhs, String rhs, int origin) {
+            this(lhs, rhs, origin < 0 ? Set.of() : Set.of(origin));
+        }
+
+        private Rule(char lhs, String rhs, Set<Integer> origins) {
+            this.lhs = lhs;
+            this.rhs = rhs;
+            this.origins = new TreeSet<>(origins);
+        }
+
+        @Override
+        public String toString() {
+            return lhs + "::=" + rhs;
+        }
+    }
+}
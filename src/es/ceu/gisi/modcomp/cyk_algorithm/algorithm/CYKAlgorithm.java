@@ -1,33 +1,126 @@
 package es.ceu.gisi.modcomp.cyk_algorithm.algorithm;
 
 import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.exceptions.CYKAlgorithmException;
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.exceptions.ParseAbortedException;
 import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.interfaces.CYKAlgorithmInterface;
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.interfaces.ChartView;
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.interfaces.ParsingEngine;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Esta clase contiene la implementación de la interfaz CYKAlgorithmInterface
  * que establece los métodos necesarios para el correcto funcionamiento del
  * proyecto de programación de la asignatura Modelos de Computación.
  *
+ * Los símbolos se internan en dos SymbolTable y el algoritmo trabaja con sus
+ * identificadores enteros, de modo que los métodos que reciben un char son un
+ * adaptador sobre los que reciben nombres arbitrarios (String).
+ *
  * @author Sergio Saugar García <sergio.saugargarcia@ceu.es>
  */
 public class CYKAlgorithm implements CYKAlgorithmInterface {
 
-    private String[][] table;
+    /**
+     * production keys pack three ids of 21 bits each into a long
+     */
+    public static final int MAX_NON_TERMINALS = 1 << 21;
 
-    private List<Character> nonTerminals;
-    private List<Character> terminals;
-    private Character startSymbol;
-    private Map<Character, List<String>> productions;
+    private long[][][] table;
+
+    private SymbolTable nonTerminals;
+    private SymbolTable terminals;
+    private int startSymbol;
+    private List<List<int[]>> productions;
+    private Set<Long> productionKeys;
+    /**
+     * non-terminal ids in the order they got their first production
+     */
+    private List<Integer> lhsOrder;
+    private CompiledGrammar compiled;
+    private ParsingEngine engine;
 
     public CYKAlgorithm() {
-        terminals = new ArrayList();
-        nonTerminals = new ArrayList();
-        startSymbol = null;
-        productions = new HashMap();
+        terminals = new SymbolTable();
+        nonTerminals = new SymbolTable();
+        startSymbol = -1;
+        productions = new ArrayList<>();
+        productionKeys = new HashSet<>();
+        lhsOrder = new ArrayList<>();
+        compiled = null;
+    }
+
+    /**
+     * Crea el algoritmo a partir de una gramática ya compilada, por ejemplo la
+     * cargada por {@link GrammarLoader#readCompiled}. isDerived(int[]) usa
+     * directamente sus tablas; el resto de métodos reconstruyen la gramática
+     * editable la primera vez que la necesitan. Como las tablas no guardan el
+     * orden en que se añadieron las producciones, algorithmStateToString
+     * muestra las celdas como si se hubieran añadido en el orden de los no
+     * terminales.
+     *
+     * @param grammar Gramática compilada
+     */
+    public CYKAlgorithm(CompiledGrammar grammar) {
+        terminals = null;
+        nonTerminals = null;
+        startSymbol = grammar.startSymbol();
+        productions = null;
+        productionKeys = null;
+        lhsOrder = null;
+        compiled = grammar;
+    }
+
+    /**
+     * rebuild the editable grammar from the compiled tables when the algorithm
+     * was created from a CompiledGrammar
+     */
+    private void materialize() {
+        if (productions != null) {
+            return;
+        }
+        CompiledGrammar grammar = compiled;
+        terminals = new SymbolTable();
+        nonTerminals = new SymbolTable();
+        productions = new ArrayList<>();
+        productionKeys = new HashSet<>();
+        lhsOrder = new ArrayList<>();
+        for (int i = 0; i < grammar.terminalCount(); i++) {
+            terminals.intern(grammar.terminalName(i));
+        }
+        for (int i = 0; i < grammar.nonTerminalCount(); i++) {
+            nonTerminals.intern(grammar.nonTerminalName(i));
+            productions.add(new ArrayList<>());
+        }
+        for (int t = 0; t < grammar.terminalCount(); t++) {
+            for (int w = 0; w < grammar.words; w++) {
+                long bits = grammar.terminalSets[t * grammar.words + w];
+                while (bits != 0) {
+                    int lhs = (w << 6) + Long.numberOfTrailingZeros(bits);
+                    bits &= bits - 1;
+                    productions.get(lhs).add(new int[]{t});
+                    productionKeys.add(productionKey(lhs, new int[]{t}));
+                }
+            }
+        }
+        for (int b = 0; b < grammar.nonTerminalCount(); b++) {
+            for (int r = grammar.leftOffsets[b]; r < grammar.leftOffsets[b + 1]; r++) {
+                int[] rhs = {b, grammar.binaryRight[r]};
+                productions.get(grammar.binaryLhs[r]).add(rhs);
+                productionKeys.add(productionKey(grammar.binaryLhs[r], rhs));
+            }
+        }
+        for (int lhs = 0; lhs < productions.size(); lhs++) {
+            if (!productions.get(lhs).isEmpty()) {
+                lhsOrder.add(lhs);
+            }
+        }
     }
 
     @Override
@@ -38,11 +131,29 @@ public class CYKAlgorithm implements CYKAlgorithmInterface {
      * @throws CYKAlgorithmException Si el elemento no es una letra mayúscula.
      */
     public void addNonTerminal(char nonterminal) throws CYKAlgorithmException {
-        if (!nonTerminals.contains(nonterminal) && Character.isLetter(nonterminal) && Character.isUpperCase(nonterminal)) {
-            nonTerminals.add(nonterminal);
-        } else {
+        if (!Character.isLetter(nonterminal) || !Character.isUpperCase(nonterminal)) {
             throw new CYKAlgorithmException();
         }
+        addNonTerminal(String.valueOf(nonterminal));
+    }
+
+    /**
+     * Método que añade un elemento no terminal con un nombre arbitrario.
+     *
+     * @param nonterminal Por ejemplo, "Expr"
+     * @throws CYKAlgorithmException Si el nombre es vacío, contiene espacios o
+     * alguno de los separadores '|', ',', '{', '}', o ya es un terminal o no
+     * terminal de la gramática.
+     */
+    public void addNonTerminal(String nonterminal) throws CYKAlgorithmException {
+        materialize();
+        if (!validName(nonterminal) || nonTerminals.contains(nonterminal) || terminals.contains(nonterminal)
+                || nonTerminals.size() == MAX_NON_TERMINALS) {
+            throw new CYKAlgorithmException();
+        }
+        nonTerminals.intern(nonterminal);
+        productions.add(new ArrayList<>());
+        compiled = null;
     }
 
     @Override
@@ -53,11 +164,48 @@ public class CYKAlgorithm implements CYKAlgorithmInterface {
      * @throws CYKAlgorithmException Si el elemento no es una letra minúscula.
      */
     public void addTerminal(char terminal) throws CYKAlgorithmException {
-        if (!terminals.contains(terminal) && Character.isLetter(terminal) && Character.isLowerCase(terminal)) {
-            terminals.add(terminal);
-        } else {
+        if (!Character.isLetter(terminal) || !Character.isLowerCase(terminal)) {
             throw new CYKAlgorithmException();
         }
+        addTerminal(String.valueOf(terminal));
+    }
+
+    /**
+     * Método que añade un elemento terminal con un nombre arbitrario.
+     *
+     * @param terminal Por ejemplo, "num"
+     * @throws CYKAlgorithmException Si el nombre es vacío, contiene espacios o
+     * alguno de los separadores '|', ',', '{', '}', o ya es un terminal o no
+     * terminal de la gramática.
+     */
+    public void addTerminal(String terminal) throws CYKAlgorithmException {
+        materialize();
+        if (!validName(terminal) || terminals.contains(terminal) || nonTerminals.contains(terminal)) {
+            throw new CYKAlgorithmException();
+        }
+        terminals.intern(terminal);
+        compiled = null;
+    }
+
+    /**
+     * symbol names can be anything that can be written back in getGrammar
+     * format
+     *
+     * @param name
+     * @return true if the name is not empty and has no spaces or any of the
+     * separators '|', ',', '{', '}'
+     */
+    private static boolean validName(String name) {
+        if (name.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (Character.isWhitespace(c) || c == '|' || c == ',' || c == '{' || c == '}') {
+                return false;
+            }
+        }
+        return true;
     }
 
     @Override
@@ -70,11 +218,29 @@ public class CYKAlgorithm implements CYKAlgorithmInterface {
      * conjunto de elementos no terminales.
      */
     public void setStartSymbol(char nonterminal) throws CYKAlgorithmException {
-        if (nonTerminals.contains(nonterminal)) {
-            startSymbol = nonterminal;
-        } else {
+        materialize();
+        setStartSymbol(nonTerminals.idOf(nonterminal));
+    }
+
+    /**
+     * Método que indica el axioma de la gramática por su nombre.
+     *
+     * @param nonterminal Por ejemplo, "Expr"
+     * @throws CYKAlgorithmException Si el elemento insertado no forma parte del
+     * conjunto de elementos no terminales.
+     */
+    public void setStartSymbol(String nonterminal) throws CYKAlgorithmException {
+        materialize();
+        setStartSymbol(nonTerminals.idOf(nonterminal));
+    }
+
+    private void setStartSymbol(int id) throws CYKAlgorithmException {
+        materialize();
+        if (id < 0) {
             throw new CYKAlgorithmException();
         }
+        startSymbol = id;
+        compiled = null;
     }
 
     @Override
@@ -89,21 +255,65 @@ public class CYKAlgorithm implements CYKAlgorithmInterface {
      * previamente.
      */
     public void addProduction(char nonterminal, String production) throws CYKAlgorithmException {
-        if (!nonTerminals.contains(nonterminal) || !validProduction(production)) {
+        materialize();
+        int lhs = nonTerminals.idOf(nonterminal);
+        if (lhs < 0 || !validProduction(production)) {
             throw new CYKAlgorithmException();
         }
-        if (productions.get(nonterminal) != null) {
-            if (!productions.get(nonterminal).contains(production)) {//if it's already contained
-                productions.get(nonterminal).add(production);
-            } else {
-                throw new CYKAlgorithmException();
-            }
+        if (production.length() == 1) {
+            addProduction(lhs, new int[]{terminals.idOf(production.charAt(0))});
+        } else {
+            addProduction(lhs, new int[]{nonTerminals.idOf(production.charAt(0)), nonTerminals.idOf(production.charAt(1))});
+        }
+    }
+
+    /**
+     * Método utilizado para construir la gramática con nombres arbitrarios.
+     * Admite producciones en FNC, es decir de tipo A::=B C o A::=a
+     *
+     * @param nonterminal A
+     * @param production "B", "C" o "a"
+     * @throws CYKAlgorithmException Si la producción no se ajusta a FNC, está
+     * compuesta por elementos no definidos previamente o ya existe.
+     */
+    public void addProduction(String nonterminal, String... production) throws CYKAlgorithmException {
+        materialize();
+        int lhs = nonTerminals.idOf(nonterminal);
+        if (lhs < 0) {
+            throw new CYKAlgorithmException();
+        }
+        if (production.length == 1 && terminals.contains(production[0])) {
+            addProduction(lhs, new int[]{terminals.idOf(production[0])});
+        } else if (production.length == 2 && nonTerminals.contains(production[0]) && nonTerminals.contains(production[1])) {
+            addProduction(lhs, new int[]{nonTerminals.idOf(production[0]), nonTerminals.idOf(production[1])});
         } else {
-            ArrayList<String> array = new ArrayList<>();
-            array.add(production);
-            productions.put(nonterminal, array);
+            throw new CYKAlgorithmException();
         }
+    }
 
+    /**
+     * store a production already translated to ids
+     *
+     * @param lhs non-terminal id
+     * @param rhs {terminal} or {non-terminal, non-terminal}
+     * @throws CYKAlgorithmException if it's already contained
+     */
+    private void addProduction(int lhs, int[] rhs) throws CYKAlgorithmException {
+        if (!productionKeys.add(productionKey(lhs, rhs))) {
+            throw new CYKAlgorithmException();
+        }
+        if (productions.get(lhs).isEmpty()) {
+            lhsOrder.add(lhs);
+        }
+        productions.get(lhs).add(rhs);
+        compiled = null;
+    }
+
+    private static long productionKey(int lhs, int[] rhs) {
+        if (rhs.length == 1) {
+            return Long.MIN_VALUE | ((long) lhs << 42) | rhs[0];
+        }
+        return ((long) lhs << 42) | ((long) rhs[0] << 21) | rhs[1];
     }
 
     /**
@@ -114,6 +324,7 @@ public class CYKAlgorithm implements CYKAlgorithmInterface {
      * false
      */
     public boolean validProduction(String production) {
+        materialize();
         int length = production.length();
         if (length == 1 && terminals.contains(production.charAt(0))) {
             return true;
@@ -127,7 +338,9 @@ public class CYKAlgorithm implements CYKAlgorithmInterface {
     @Override
     /**
      * Método que indica si una palabra pertenece al lenguaje generado por la
-     * gramática que se ha introducido.
+     * gramática que se ha introducido. Antes de construir la tabla se
+     * descartan en tiempo lineal las palabras que no cumplen alguna condición
+     * necesaria de la gramática (ver {@link CompiledGrammar#filter()}).
      *
      * @param word La palabra a verificar, tiene que estar formada sólo por
      * elementos no terminales.
@@ -138,57 +351,287 @@ public class CYKAlgorithm implements CYKAlgorithmInterface {
      * gramática es vacía o si el autómata carece de axioma.
      */
     public boolean isDerived(String word) throws CYKAlgorithmException {
-        if (productions.isEmpty() || terminals.isEmpty() || startSymbol == null) //If there are no productions or terminals or startSymbol is equal to null
+        return isDerived(word, new ParseOptions().interruptible(false));
+    }
+
+    /**
+     * Igual que isDerived(String), pero comprueba los límites de tiempo,
+     * número de celdas y memoria de las opciones antes de rellenar cada fila
+     * de la tabla, y se detiene si se supera alguno o si se interrumpe el
+     * hilo.
+     *
+     * @param word La palabra a verificar, tiene que estar formada sólo por
+     * elementos terminales.
+     * @param options Límites del análisis.
+     * @return TRUE si la palabra pertenece, FALSE en caso contrario
+     * @throws ParseAbortedException Si se supera un límite, con el progreso
+     * alcanzado.
+     * @throws CYKAlgorithmException En los mismos casos que
+     * isDerived(String).
+     */
+    public boolean isDerived(String word, ParseOptions options) throws CYKAlgorithmException {
+        materialize();
+        if (productionKeys.isEmpty() || terminals.isEmpty() || startSymbol < 0) //If there are no productions or terminals or startSymbol is not set
         {
             throw new CYKAlgorithmException();
         }
 
-        for (char c : word.toCharArray()) {
-            if (!terminals.contains(c)) //If the string doesn't contain only terminals( of the grammar)
-            {
+        CompiledGrammar grammar = compiledTables();
+        int[] tokens = toTerminalIds(word, grammar);
+        if (tokens.length == 0) {   // a CNF grammar never derives the empty word
+            return false;
+        }
+        if (grammar.filter().check(tokens) != null) {
+            return false;
+        }
+        if (engine != null) {
+            return engine.isDerived(grammar, tokens, options);
+        }
+        createMatrix(tokens, grammar, options.start(tokens.length));
+
+        //I take the cell at the top of the triangle
+        long[] result = table[tokens.length - 1][0];
+
+        return (result[startSymbol >>> 6] & (1L << startSymbol)) != 0;
+    }
+
+    /**
+     * Método que indica si una secuencia de terminales, ya traducidos a sus
+     * identificadores (por ejemplo, los tokens de un analizador léxico),
+     * pertenece al lenguaje generado por la gramática. La primera fila de la
+     * tabla se rellena directamente desde la tabla terminal → no terminales de
+     * la gramática compilada, sin pasar por char ni String.
+     *
+     * @param tokens Identificadores de terminales, ver
+     * {@link CompiledGrammar#terminalId(String)}
+     * @return TRUE si la secuencia pertenece, FALSE en caso contrario
+     * @throws CYKAlgorithmException Si algún identificador no corresponde a un
+     * terminal, si la gramática es vacía o si el autómata carece de axioma.
+     */
+    public boolean isDerived(int[] tokens) throws CYKAlgorithmException {
+        return isDerived(tokens, new ParseOptions().interruptible(false));
+    }
+
+    /**
+     * Igual que isDerived(int[]), con los límites de las opciones (ver
+     * isDerived(String, ParseOptions)).
+     *
+     * @param tokens Identificadores de terminales.
+     * @param options Límites del análisis.
+     * @return TRUE si la secuencia pertenece, FALSE en caso contrario
+     * @throws ParseAbortedException Si se supera un límite, con el progreso
+     * alcanzado.
+     * @throws CYKAlgorithmException En los mismos casos que isDerived(int[]).
+     */
+    public boolean isDerived(int[] tokens, ParseOptions options) throws CYKAlgorithmException {
+        CompiledGrammar grammar = compile();
+        for (int token : tokens) {
+            if (token < 0 || token >= grammar.terminalCount()) {
                 throw new CYKAlgorithmException();
             }
         }
-        createMatrix(word);
+        if (tokens.length == 0 || grammar.filter().check(tokens) != null) {
+            return false;
+        }
+        if (engine != null) {
+            return engine.isDerived(grammar, tokens.clone(), options);
+        }
+        createMatrix(tokens, grammar, options.start(tokens.length));
 
-        //I take the string at the top of the triangle
-        String result = table[table[0].length - 1][0];
+        long[] result = table[tokens.length - 1][0];
 
-        if (result.contains(Character.toString(startSymbol))) {
-            return true;
-        } else {
-            return false;
+        return (result[startSymbol >>> 6] & (1L << startSymbol)) != 0;
+    }
+
+    /**
+     * Cambia la forma en que isDerived rellena la tabla, por ejemplo por
+     * {@link EngineDispatcher#calibrated()}, que elige la más rápida en cada
+     * llamada según la palabra y la gramática. El resultado no cambia.
+     *
+     * @param engine Motor de análisis, o null para usar la tabla propia de
+     * esta clase, que es la opción por defecto.
+     */
+    public void setEngine(ParsingEngine engine) {
+        this.engine = engine;
+    }
+
+    /**
+     * Devuelve la gramática compilada en tablas indexadas por identificador.
+     * Se reutiliza mientras la gramática no se modifique.
+     *
+     * @return La gramática compilada
+     * @throws CYKAlgorithmException Si la gramática es vacía o si el autómata
+     * carece de axioma.
+     */
+    public CompiledGrammar compile() throws CYKAlgorithmException {
+        if (productionKeys == null) {   // tables loaded by GrammarLoader, checked there
+            return compiled;
+        }
+        if (productionKeys.isEmpty() || terminals.isEmpty() || startSymbol < 0) {
+            throw new CYKAlgorithmException();
         }
+        return compiledTables();
     }
 
     /**
-     * create and fill the matrix
+     * Devuelve una huella (hash de 64 bits) del contenido de la gramática:
+     * terminales, no terminales, axioma y producciones. No depende del orden
+     * en que se introdujeron ni de la ejecución, así que sirve como clave de
+     * la caché de gramáticas compiladas (ver GrammarCache). Coincide con
+     * {@link CompiledGrammar#fingerprint()} y se calcula sin compilar la
+     * gramática.
+     *
+     * @return La huella de la gramática.
+     */
+    public long fingerprint() {
+        if (productions == null) {
+            return compiled.fingerprint();
+        }
+        Fingerprint fingerprint = new Fingerprint();
+        for (int i = 0; i < nonTerminals.size(); i++) {
+            fingerprint.nonTerminal(nonTerminals.nameOf(i));
+        }
+        for (int i = 0; i < terminals.size(); i++) {
+            fingerprint.terminal(terminals.nameOf(i));
+        }
+        fingerprint.start(startSymbol < 0 ? null : nonTerminals.nameOf(startSymbol));
+        for (int lhs = 0; lhs < productions.size(); lhs++) {
+            for (int[] rhs : productions.get(lhs)) {
+                if (rhs.length == 1) {
+                    fingerprint.production(nonTerminals.nameOf(lhs), terminals.nameOf(rhs[0]));
+                } else {
+                    fingerprint.production(nonTerminals.nameOf(lhs), nonTerminals.nameOf(rhs[0]),
+                            nonTerminals.nameOf(rhs[1]));
+                }
+            }
+        }
+        return fingerprint.value();
+    }
+
+    /**
+     * compile the grammar if it changed since the last call, without checking
+     * that it's complete
+     *
+     * @return compiled grammar
+     */
+    private CompiledGrammar compiledTables() {
+        if (compiled == null) {
+            compiled = CompiledGrammar.compile(nonTerminals, terminals, startSymbol, productions);
+        }
+        return compiled;
+    }
+
+    /**
+     * translate every char of the word to its terminal id with the char table
+     * of the compiled grammar, for the callers that need the ids as well as
+     * the matrix
      *
      * @param word
+     * @param grammar
+     * @return terminal ids of the word
+     * @throws CYKAlgorithmException if the word contains a char that is not a
+     * terminal of the grammar
      */
-    private void createMatrix(String word) {
-        int length = word.length();
-        table = new String[length][length];
-        for (int i = 0; i < length; i++) {
-            for (int j = 0; j < length; j++) {
-                table[i][j] = "";
+    private static int[] toTerminalIds(String word, CompiledGrammar grammar) throws CYKAlgorithmException {
+        int[] tokens = new int[word.length()];
+        for (int i = 0; i < tokens.length; i++) {
+            tokens[i] = grammar.terminalId(word.charAt(i));
+            if (tokens[i] < 0) //If the string doesn't contain only terminals( of the grammar)
+            {
+                throw new CYKAlgorithmException();
             }
         }
+        return tokens;
+    }
 
-        //fill the first row
-        for (int i = 0; i < length; i++) {
-            for (Map.Entry<Character, List<String>> entry : productions.entrySet()) //scroll through productions in search of the letter
+    /**
+     * create and fill the matrix of a word, each cell is a bitset of
+     * non-terminal ids; the first row takes the sets of the chars from the
+     * char table of the grammar
+     *
+     * @param word
+     * @param grammar
+     * @param guard limits of the parse, null if there are none
+     * @throws CYKAlgorithmException if the word contains a char that is not a
+     * terminal of the grammar or a limit is exceeded
+     */
+    private void createMatrix(String word, CompiledGrammar grammar, ParseOptions.Guard guard)
+            throws CYKAlgorithmException {
+        long[][] charRows = grammar.charRows;
+        long[][] firstRow = new long[word.length()][];
+        for (int i = 0; i < firstRow.length; i++) {
+            char c = word.charAt(i);
+            if (c >= charRows.length || charRows[c] == null) //If the string doesn't contain only terminals( of the grammar)
             {
-                if (entry.getValue().contains(String.valueOf(word.charAt(i)))) {
-                    table[0][i] += "" + entry.getKey();
-                }
+                throw new CYKAlgorithmException();
             }
+            firstRow[i] = charRows[c];
         }
+        initTable(firstRow, guard);
+        fillTable(grammar, guard);
+    }
+
+    /**
+     * create and fill the matrix of a sequence of terminal ids, taking the
+     * first row from the terminal table of the grammar
+     *
+     * @param tokens terminal ids
+     * @param grammar
+     * @param guard limits of the parse, null if there are none
+     * @throws ParseAbortedException if a limit is exceeded
+     */
+    private void createMatrix(int[] tokens, CompiledGrammar grammar, ParseOptions.Guard guard)
+            throws ParseAbortedException {
+        long[][] firstRow = new long[tokens.length][];
+        for (int i = 0; i < tokens.length; i++) {
+            firstRow[i] = grammar.terminalRows[tokens[i]];
+        }
+        initTable(firstRow, guard);
+        fillTable(grammar, guard);
+    }
+
+    /**
+     * set the first row; its cells are the sets of the grammar, shared and
+     * never written. The cells of the other rows are allocated by fillTable as
+     * they are computed
+     */
+    private void initTable(long[][] firstRow, ParseOptions.Guard guard) throws ParseAbortedException {
+        int length = firstRow.length;
+        if (guard != null) {
+            guard.check(0, length, 16 + 8L * length);
+        }
+        table = new long[length][][];
+        if (length > 0) {
+            table[0] = firstRow;
+        }
+    }
 
+    /**
+     * approximate heap taken by a row of the table: the array of cells and a
+     * long array per cell
+     */
+    private static long rowBytes(int cells, int words) {
+        return 16 + 8L * cells + cells * (16 + 8L * words);
+    }
+
+    /**
+     * fill every row but the first one
+     *
+     * @param grammar
+     * @param guard limits of the parse, checked before every row, null if
+     * there are none
+     * @throws ParseAbortedException if a limit is exceeded
+     */
+    private void fillTable(CompiledGrammar grammar, ParseOptions.Guard guard) throws ParseAbortedException {
         //start the algorithm
+        int length = table.length;
         for (int i = 1; i < length; i++) {
+            if (guard != null) {
+                guard.check(i, length - i, rowBytes(length - i, grammar.words()));
+            }
+            table[i] = new long[length - i][];
             for (int j = 0; j < length - i; j++) {
-                table[i][j] = getCombinationsResult(getColumn(i, j), getDiagonal(i, j));
+                table[i][j] = getCombinationsResult(getColumn(i, j), getDiagonal(i, j), grammar);
             }
         }
     }
@@ -198,10 +641,10 @@ public class CYKAlgorithm implements CYKAlgorithmInterface {
      *
      * @param i current row
      * @param j current column
-     * @return string array with the elements to compare in the algorithm
+     * @return cells with the elements to compare in the algorithm
      */
-    private String[] getDiagonal(int i, int j) {
-        String[] array = new String[i];
+    private long[][] getDiagonal(int i, int j) {
+        long[][] array = new long[i][];
         int k = 0;
         while (i != 0) {
             i--;
@@ -217,10 +660,10 @@ public class CYKAlgorithm implements CYKAlgorithmInterface {
      *
      * @param i current row
      * @param j current column
-     * @return string array with the elements to compare in the algorithm
+     * @return cells with the elements to compare in the algorithm
      */
-    private String[] getColumn(int i, int j) {
-        String[] array = new String[i];
+    private long[][] getColumn(int i, int j) {
+        long[][] array = new long[i][];
         int k = 0;
         while (k != i) {
             array[k] = table[k][j];
@@ -231,62 +674,182 @@ public class CYKAlgorithm implements CYKAlgorithmInterface {
 
     /**
      * calculates the combinations between the cells of the two arrays and
-     * checks that they are valid
+     * checks that they are valid. Each pair of cells is combined pair driven
+     * or rule driven depending on the number of symbols of the two cells,
+     * see Chart.combine
      *
      * @param array1
      * @param array2
-     * @return Result string of the calculation with the cyk algorithm
+     * @param grammar
+     * @return Result cell of the calculation with the cyk algorithm
      */
-    private String getCombinationsResult(String[] array1, String[] array2) {
-        String result = "";
+    private long[] getCombinationsResult(long[][] array1, long[][] array2, CompiledGrammar grammar) {
+        long[] result = new long[grammar.words()];
 
         for (int i = 0; i < array1.length; i++) {   // iterate through the two arrays using the same index i
+            Chart.combine(grammar, array1[i], 0, array2[i], 0, result, 0);
+        }
+        return result;
+    }
 
-            for (int j = 0; j < array1[i].length(); j++) {  //first string
-                for (int k = 0; k < array2[i].length(); k++) {  //second string
-                    String s = "" + array1[i].charAt(j) + array2[i].charAt(k);
-                    if (isStringContained(s)) {
-                        for (Map.Entry<Character, List<String>> entry : productions.entrySet()) {
-                            if (entry.getValue().contains(s) && !isCharacterPresent(result, entry.getKey())) {
-                                result += "" + entry.getKey();
+    /**
+     * the lhs of the productions in the order the HashMap of productions by
+     * name, which this class used before symbols had ids, iterated them; the
+     * same HashMap is built again so the order is exactly the same
+     *
+     * @return non-terminal ids with at least one production
+     */
+    private int[] productionMapOrder() {
+        Map<String, Integer> byName = new HashMap<>();
+        for (int lhs : lhsOrder) {
+            byName.put(nonTerminals.nameOf(lhs), lhs);
+        }
+        int[] order = new int[byName.size()];
+        int i = 0;
+        for (int lhs : byName.values()) {
+            order[i++] = lhs;
+        }
+        return order;
+    }
+
+    /**
+     * order in which the String table that this class used to fill added the
+     * non-terminals to every cell of the table filled by the last call to
+     * createMatrix: the first row in the order of the productions, and every
+     * other cell split by split, the pairs B C in the order of the left and
+     * right cells and the A of every A::=BC in the order of the productions
+     *
+     * @param grammar grammar of the table
+     * @return the ids of every cell in that order
+     */
+    private int[][][] shownOrder(CompiledGrammar grammar) {
+        int[] byRank = productionMapOrder();
+        int[] rank = new int[grammar.nonTerminalCount()];
+        for (int r = 0; r < byRank.length; r++) {
+            rank[byRank[r]] = r;
+        }
+        int[] lhs = grammar.pairLhs.clone();
+        for (int slot = 0; slot < grammar.pairKeys.length; slot++) {
+            if (grammar.pairKeys[slot] != -1L) {
+                sortByRank(lhs, grammar.pairFrom[slot], grammar.pairTo[slot], rank);
+            }
+        }
+        int length = table.length;
+        int words = grammar.words();
+        int[][][] shown = new int[length][][];
+        for (int i = 0; i < length; i++) {
+            shown[i] = new int[length - i][];
+            for (int j = 0; j < length - i; j++) {
+                long[] cell = table[i][j];
+                int[] order = new int[Chart.count(cell, 0, words)];
+                int n = 0;
+                if (i == 0) {
+                    for (int a : byRank) {
+                        if ((cell[a >>> 6] & (1L << a)) != 0) {
+                            order[n++] = a;
+                        }
+                    }
+                }
+                long[] seen = new long[words];
+                for (int k = 0; k < i; k++) {
+                    for (int b : shown[k][j]) {
+                        for (int c : shown[i - 1 - k][j + k + 1]) {
+                            int slot = grammar.pairSlot(b, c);
+                            if (slot < 0) {
+                                continue;
+                            }
+                            for (int r = grammar.pairFrom[slot]; r < grammar.pairTo[slot]; r++) {
+                                int a = lhs[r];
+                                if ((seen[a >>> 6] & (1L << a)) == 0) {
+                                    seen[a >>> 6] |= 1L << a;
+                                    order[n++] = a;
+                                }
                             }
                         }
                     }
                 }
+                shown[i][j] = order;
             }
         }
-        return result;
+        return shown;
     }
 
     /**
-     * Check if productions contains the entered string
-     *
-     * @param searchValue string to check
-     * @return true if contained, false if it isn't
+     * insertion sort of ids by their rank, the ranges are the few A of a pair
      */
-    private boolean isStringContained(String searchValue) {
-        for (List<String> values : productions.values()) {
-            if (values.contains(searchValue)) {
-                return true;
+    private static void sortByRank(int[] ids, int from, int to, int[] rank) {
+        for (int i = from + 1; i < to; i++) {
+            int id = ids[i];
+            int k = i;
+            while (k > from && rank[ids[k - 1]] > rank[id]) {
+                ids[k] = ids[k - 1];
+                k--;
             }
+            ids[k] = id;
         }
-        return false;
     }
 
     /**
-     * check if a character is present in a string
+     * read-only view of the table filled by the last call to createMatrix
      *
-     * @param str
-     * @param ch
-     * @return true if contained, false if it isn't
+     * @param shown order of the non-terminals of every cell, see shownOrder;
+     * null to show them in id order
+     * @return view of the table
      */
-    private boolean isCharacterPresent(String str, Character ch) {
-        for (int i = 0; i < str.length(); i++) {
-            if (str.charAt(i) == ch) {
-                return true;
+    private ChartView tableView(int[][][] shown) {
+        long[][][] cells = table;
+        SymbolTable names = nonTerminals;
+        return new ChartView() {
+            private int[] lastCell;
+            private int lastIndex;
+
+            @Override
+            public int length() {
+                return cells.length;
+            }
+
+            @Override
+            public int nonTerminalCount() {
+                return names.size();
+            }
+
+            @Override
+            public String nonTerminalName(int nonterminal) {
+                return names.nameOf(nonterminal);
+            }
+
+            @Override
+            public int nextNonTerminal(int row, int col, int from) {
+                long[] cell = cells[row][col];
+                return Chart.nextSetBit(cell, 0, cell.length, from);
+            }
+
+            @Override
+            public int nextShownNonTerminal(int row, int col, int previous) {
+                if (shown == null) {
+                    return nextNonTerminal(row, col, previous + 1);
+                }
+                int[] cell = shown[row][col];
+                int index = 0;
+                if (previous >= 0) {   // cells are walked in order, so the last position is usually right
+                    index = cell == lastCell && lastIndex < cell.length && cell[lastIndex] == previous
+                            ? lastIndex : indexOf(cell, previous);
+                    index++;
+                }
+                lastCell = cell;
+                lastIndex = index;
+                return index < cell.length ? cell[index] : -1;
+            }
+        };
+    }
+
+    private static int indexOf(int[] ids, int id) {
+        for (int i = 0; i < ids.length; i++) {
+            if (ids[i] == id) {
+                return i;
             }
         }
-        return false;
+        return ids.length;
     }
 
     @Override
@@ -306,40 +869,109 @@ public class CYKAlgorithm implements CYKAlgorithmInterface {
      * gramática es vacía o si el autómata carece de axioma.
      */
     public String algorithmStateToString(String word) throws CYKAlgorithmException {
-        if (productions.isEmpty() || terminals.isEmpty()) //If there are no productions or terminals
+        materialize();
+        if (productionKeys.isEmpty() || terminals.isEmpty()) //If there are no productions or terminals
         {
             throw new CYKAlgorithmException();
         }
 
-        for (char c : word.toCharArray()) {
-            if (!terminals.contains(c)) //If the string doesn't contain only terminals( of the grammar)
-            {
-                throw new CYKAlgorithmException();
-            }
+        CompiledGrammar grammar = compiledTables();
+        createMatrix(word, grammar, null);
+
+        return new ChartRenderer().render(tableView(shownOrder(grammar)));
+    }
+
+    /**
+     * Igual que algorithmStateToString(String), pero escribe la tabla
+     * directamente en el destino, en el formato y con los límites de filas,
+     * columnas y longitud de celda del ChartRenderer indicado.
+     *
+     * @param word La palabra a verificar, tiene que estar formada sólo por
+     * elementos terminales.
+     * @param out Destino de la tabla, por ejemplo un Writer.
+     * @param renderer Formato de salida (TABLE, CSV o JSON) y límites.
+     * @throws CYKAlgorithmException En los mismos casos que
+     * algorithmStateToString(String).
+     * @throws IOException Si falla la escritura en el destino.
+     */
+    public void algorithmStateToString(String word, Appendable out, ChartRenderer renderer)
+            throws CYKAlgorithmException, IOException {
+        materialize();
+        if (productionKeys.isEmpty() || terminals.isEmpty()) {
+            throw new CYKAlgorithmException();
         }
-        createMatrix(word);
-        // Calculate the maximum length of strings in each column to paginate after
-        int[] maxLength = new int[table[0].length];
-        for (int i = 0; i < table.length; i++) {
-            for (int j = 0; j < table[i].length - i; j++) {
-                int length = table[i][j].length();
-                if (length > maxLength[j]) {
-                    maxLength[j] = length;
-                }
-            }
+
+        CompiledGrammar grammar = compiledTables();
+        createMatrix(word, grammar, null);
+
+        renderer.render(tableView(shownOrder(grammar)), out);
+    }
+
+    /**
+     * Método que devuelve, con un solo cálculo de la tabla, todas las
+     * subcadenas de la palabra que pertenecen al lenguaje generado por la
+     * gramática, en lugar de llamar a isDerived para cada subcadena.
+     *
+     * @param word La palabra a analizar, tiene que estar formada sólo por
+     * elementos terminales.
+     * @return Un BitSet por cada longitud: el elemento i tiene activo el bit
+     * j si la subcadena de longitud i + 1 que empieza en la posición j se
+     * deriva del axioma.
+     * @throws CYKAlgorithmException En los mismos casos que isDerived(String).
+     */
+    public BitSet[] derivedSpans(String word) throws CYKAlgorithmException {
+        materialize();
+        if (startSymbol < 0) {
+            throw new CYKAlgorithmException();
         }
+        return derivedSpans(word, nonTerminals.nameOf(startSymbol));
+    }
 
-        // Create table string with pagination
-        String result = "";
-        for (int i = 0; i < table.length; i++) {
-            for (int j = 0; j < table.length - i; j++) {
-                String spazi = " ".repeat(maxLength[j] - table[i][j].length() + 1);
-                result += "" + table[i][j] + spazi;
-            }
-            result += "\n";
+    /**
+     * Igual que derivedSpans(String), pero con las subcadenas que deriva el
+     * no terminal indicado.
+     *
+     * @param word La palabra a analizar, tiene que estar formada sólo por
+     * elementos terminales.
+     * @param nonterminal Nombre del no terminal.
+     * @return Un BitSet por cada longitud, ver derivedSpans(String).
+     * @throws CYKAlgorithmException Si el no terminal no pertenece a la
+     * gramática o en los mismos casos que algorithmStateToString(String).
+     */
+    public BitSet[] derivedSpans(String word, String nonterminal) throws CYKAlgorithmException {
+        materialize();
+        int id = nonTerminals.idOf(nonterminal);
+        if (productionKeys.isEmpty() || terminals.isEmpty() || id < 0) {
+            throw new CYKAlgorithmException();
         }
 
-        return result;
+        createMatrix(word, compiledTables(), null);
+
+        return tableView(null).spans(id);
+    }
+
+    /**
+     * Rellena la tabla para una palabra y devuelve una copia de ella que se
+     * puede guardar en disco (ver ChartSnapshot.write) para analizarla o
+     * mostrarla más tarde sin repetir el algoritmo.
+     *
+     * @param word La palabra a verificar, tiene que estar formada sólo por
+     * elementos terminales.
+     * @return Copia de la tabla calculada, con la huella de la gramática.
+     * @throws CYKAlgorithmException En los mismos casos que
+     * algorithmStateToString(String).
+     */
+    public ChartSnapshot snapshot(String word) throws CYKAlgorithmException {
+        materialize();
+        if (productionKeys.isEmpty() || terminals.isEmpty()) {
+            throw new CYKAlgorithmException();
+        }
+
+        CompiledGrammar grammar = compiledTables();
+        int[] tokens = toTerminalIds(word, grammar);
+        createMatrix(tokens, grammar, null);
+
+        return ChartSnapshot.capture(tableView(null), grammar, tokens);
     }
 
     @Override
@@ -349,10 +981,13 @@ public class CYKAlgorithm implements CYKAlgorithmInterface {
      * dejando el algoritmo listo para volver a insertar una gramática nueva.
      */
     public void removeGrammar() {
-        terminals = new ArrayList();
-        nonTerminals = new ArrayList();
-        startSymbol = null;
-        productions = new HashMap();
+        terminals = new SymbolTable();
+        nonTerminals = new SymbolTable();
+        startSymbol = -1;
+        productions = new ArrayList<>();
+        productionKeys = new HashSet<>();
+        lhsOrder = new ArrayList<>();
+        compiled = null;
     }
 
     @Override
@@ -368,12 +1003,42 @@ public class CYKAlgorithm implements CYKAlgorithmInterface {
      * salida podría ser: "S::=AB|BC".
      */
     public String getProductions(char nonterminal) {
-        if (!productions.containsKey(nonterminal)) {
+        materialize();
+        return getProductions(nonTerminals.idOf(nonterminal));
+    }
+
+    /**
+     * Devuelve las producciones de un elemento no terminal por su nombre. Si
+     * algún símbolo de una producción tiene un nombre de más de un carácter,
+     * los dos no terminales se separan con un espacio, por ejemplo
+     * "Expr::=Expr Term|num".
+     *
+     * @param nonterminal
+     * @return Devuelve un String con el mismo formato que getProductions(char)
+     */
+    public String getProductions(String nonterminal) {
+        materialize();
+        return getProductions(nonTerminals.idOf(nonterminal));
+    }
+
+    private String getProductions(int id) {
+        if (id < 0 || productions.get(id).isEmpty()) {
             return "";
         }
-        String s = nonterminal + "::=";
-        for (String n : productions.get(nonterminal)) {
-            s += n + "|";
+        StringBuilder s = new StringBuilder(nonTerminals.nameOf(id)).append("::=");
+        for (int[] rhs : productions.get(id)) {
+            if (rhs.length == 1) {
+                s.append(terminals.nameOf(rhs[0]));
+            } else {
+                String b = nonTerminals.nameOf(rhs[0]);
+                String c = nonTerminals.nameOf(rhs[1]);
+                s.append(b);
+                if (b.length() != 1 || c.length() != 1) {
+                    s.append(' ');
+                }
+                s.append(c);
+            }
+            s.append('|');
         }
         return s.substring(0, s.length() - 1);
     }
@@ -386,21 +1051,22 @@ public class CYKAlgorithm implements CYKAlgorithmInterface {
      * elementos no terminales.
      */
     public String getGrammar() {
-        String grammar = "G=({";
-        for (Character c : terminals) {
-            grammar += c + ",";
+        materialize();
+        StringBuilder grammar = new StringBuilder("G=({");
+        for (int i = 0; i < terminals.size(); i++) {
+            grammar.append(i > 0 ? "," : "").append(terminals.nameOf(i));
         }
-        grammar = grammar.substring(0, grammar.length() - 1);
-        grammar += "},{";
-        for (Character c : nonTerminals) {
-            grammar += c + ",";
+        grammar.append("},{");
+        for (int i = 0; i < nonTerminals.size(); i++) {
+            grammar.append(i > 0 ? "," : "").append(nonTerminals.nameOf(i));
         }
-        grammar = grammar.substring(0, grammar.length() - 1);
-        grammar += "}," + startSymbol + ",P)\nP={\n";
-        for (Map.Entry<Character, List<String>> entry : productions.entrySet()) {
-            grammar += getProductions(entry.getKey()) + "\n";
+        grammar.append("},").append(startSymbol < 0 ? "null" : nonTerminals.nameOf(startSymbol)).append(",P)\nP={\n");
+        for (int i = 0; i < nonTerminals.size(); i++) {
+            if (!productions.get(i).isEmpty()) {
+                grammar.append(getProductions(i)).append('\n');
+            }
         }
 
-        return grammar + "}";
+        return grammar.append('}').toString();
     }
 }
@@ -0,0 +1,387 @@
+package es.ceu.gisi.modcomp.cyk_algorithm.algorithm;
+
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.exceptions.ParseAbortedException;
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.interfaces.ChartView;
+import java.util.Arrays;
+import java.util.function.BooleanSupplier;
+import java.util.stream.IntStream;
+
+/**
+ * Reusable CYK chart over a CompiledGrammar. The triangle is stored in a
+ * single long array, row by row like the table of CYKAlgorithm: row i holds
+ * the n - i cells of the substrings of length i + 1, and every cell is a
+ * bitset of {@link CompiledGrammar#words()} longs.
+ *
+ * The array only grows, so filling the same chart with many words of similar
+ * length does not allocate. A chart is not thread safe; use one per thread.
+ */
+public final class Chart implements ChartView {
+
+    /**
+     * cell combinations of a row below which it is not worth splitting it
+     * among threads
+     */
+    private static final long PARALLEL_GRAIN = 1 << 14;
+
+    private final CompiledGrammar grammar;
+    private final int words;
+    private long[] cells;
+    private int[] tokens;
+    private int length;
+    private long ruleDrivenSplits;
+
+    public Chart(CompiledGrammar grammar) {
+        this.grammar = grammar;
+        this.words = grammar.words();
+        this.cells = new long[0];
+        this.tokens = new int[0];
+        this.length = 0;
+    }
+
+    public CompiledGrammar grammar() {
+        return grammar;
+    }
+
+    /**
+     * @return length of the last word filled
+     */
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public int nonTerminalCount() {
+        return grammar.nonTerminalCount();
+    }
+
+    @Override
+    public String nonTerminalName(int nonterminal) {
+        return grammar.nonTerminalName(nonterminal);
+    }
+
+    @Override
+    public int nextNonTerminal(int row, int col, int from) {
+        return nextSetBit(cells, offset(row, col), words, from);
+    }
+
+    /**
+     * Number of splits of the last fill that were combined rule driven, see
+     * {@link CompiledGrammar#combinesByRules(int, int)}; the other splits with
+     * two non-empty cells were combined pair driven.
+     *
+     * @return rule driven splits since the chart was last reset
+     */
+    public long ruleDrivenSplits() {
+        return ruleDrivenSplits;
+    }
+
+    /**
+     * Fills the chart for the first {@code length} tokens.
+     *
+     * @param tokens terminal ids, they are not checked
+     * @param length number of tokens to use
+     */
+    public void fill(int[] tokens, int length) {
+        fillFirstRow(tokens, length);
+        fillRows(1, null);
+    }
+
+    /**
+     * Fills the chart for the first {@code length} tokens within the limits
+     * of the options. The memory budget is checked before the chart grows,
+     * and the other limits before every row.
+     *
+     * @param tokens terminal ids, they are not checked
+     * @param length number of tokens to use
+     * @param options limits of the parse
+     * @throws ParseAbortedException if a limit is exceeded; the chart is left
+     * incomplete
+     */
+    public void fill(int[] tokens, int length, ParseOptions options) throws ParseAbortedException {
+        fill(tokens, length, options.start(length), false, false);
+    }
+
+    /**
+     * like fill(int[], int, ParseOptions), choosing how the cells are
+     * combined and whether the cells of every row are split among the
+     * threads of the common pool (the cells of a row only depend on the rows
+     * below, so they can be filled in any order)
+     *
+     * @param guard limits of the parse, null if there are none
+     * @param byRules combine the cells rule by rule, see combineByRules
+     * @param parallel fill the long rows in parallel
+     * @throws ParseAbortedException if a limit is exceeded
+     */
+    void fill(int[] tokens, int length, ParseOptions.Guard guard, boolean byRules, boolean parallel)
+            throws ParseAbortedException {
+        if (guard != null) {
+            guard.check(0, length, cellCount(length) * words * Long.BYTES);
+        }
+        fillFirstRow(tokens, length);
+        for (int i = 1; i < length; i++) {
+            if (guard != null) {
+                guard.check(i, length - i, 0);
+            }
+            int cells = length - i;
+            if (parallel && (long) cells * i >= PARALLEL_GRAIN) {
+                int row = i;
+                int blocks = Math.min(cells, 4 * Runtime.getRuntime().availableProcessors());
+                ruleDrivenSplits += IntStream.range(0, blocks).parallel().mapToLong(b -> fillCells(row,
+                        (int) ((long) cells * b / blocks), (int) ((long) cells * (b + 1) / blocks), byRules)).sum();
+            } else {
+                ruleDrivenSplits += fillCells(i, 0, cells, byRules);
+            }
+        }
+    }
+
+    /**
+     * like fill(int[], int), but check the stop condition before every row
+     * and leave the chart incomplete as soon as it holds
+     *
+     * @param stop stop condition, null to fill the whole chart
+     * @return true if the chart was filled, false if it was stopped
+     */
+    boolean fill(int[] tokens, int length, BooleanSupplier stop) {
+        fillFirstRow(tokens, length);
+        return fillRows(1, stop);
+    }
+
+    /**
+     * reset the chart for a word and fill the row of its terminals
+     */
+    private void fillFirstRow(int[] tokens, int length) {
+        reset(length);
+        if (length > this.tokens.length) {
+            this.tokens = new int[length];
+        }
+        System.arraycopy(tokens, 0, this.tokens, 0, length);
+        for (int j = 0; j < length; j++) {
+            System.arraycopy(grammar.terminalSets, tokens[j] * words, cells, j * words, words);
+        }
+    }
+
+    /**
+     * clear the cells used by a word of the given length, growing the array
+     * if needed
+     */
+    void reset(int length) {
+        long cellLongs = cellCount(length) * words;
+        if (cellLongs > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("word too long for an on-heap chart: " + length);
+        }
+        int size = (int) cellLongs;
+        if (size > cells.length) {
+            cells = new long[(int) Math.min(Integer.MAX_VALUE - 8, Math.max(size, cells.length + (long) (cells.length >> 1)))];
+        } else {
+            Arrays.fill(cells, 0, size, 0L);
+        }
+        this.length = length;
+        this.ruleDrivenSplits = 0;
+    }
+
+    /**
+     * fill the rows from {@code from} to the top, the rows below must be
+     * already filled
+     *
+     * @param stop checked before every row, may be null
+     * @return false if the stop condition held before the top row was filled
+     */
+    boolean fillRows(int from, BooleanSupplier stop) {
+        for (int i = from; i < length; i++) {
+            if (stop != null && stop.getAsBoolean()) {
+                return false;
+            }
+            ruleDrivenSplits += fillCells(i, 0, length - i, false);
+        }
+        return true;
+    }
+
+    /**
+     * fill the cells of a row from column {@code from} to {@code to}
+     * (excluded), the rows below must be already filled
+     *
+     * @return splits combined rule driven
+     */
+    private long fillCells(int i, int from, int to, boolean byRules) {
+        long ruleDriven = 0;
+        for (int j = from; j < to; j++) {
+            int target = offset(i, j);
+            for (int k = 0; k < i; k++) {
+                if (byRules) {
+                    combineByRules(grammar, cells, offset(k, j), cells, offset(i - 1 - k, j + k + 1), cells, target);
+                    ruleDriven++;
+                } else if (combine(grammar, cells, offset(k, j), offset(i - 1 - k, j + k + 1), target)) {
+                    ruleDriven++;
+                }
+            }
+        }
+        return ruleDriven;
+    }
+
+    /**
+     * add to the target cell every A with A::=BC, B in the left cell and C in
+     * the right cell; the cells are offsets of bitsets in the same array
+     *
+     * @return true if the cells were combined rule driven
+     */
+    static boolean combine(CompiledGrammar grammar, long[] cells, int left, int right, int target) {
+        return combine(grammar, cells, left, cells, right, cells, target);
+    }
+
+    /**
+     * like combine(CompiledGrammar, long[], int, int, int), with every cell
+     * in its own array. It looks up every pair B C of the two cells in the
+     * pair index (pair driven) unless there are more pairs than binary rules,
+     * see CompiledGrammar.combinesByRules, in which case it goes through the
+     * rules (rule driven)
+     *
+     * @return true if the cells were combined rule driven
+     */
+    static boolean combine(CompiledGrammar grammar, long[] leftCells, int left, long[] rightCells, int right,
+            long[] targetCells, int target) {
+        int leftCount = count(leftCells, left, grammar.words);
+        int rightCount = leftCount == 0 ? 0 : count(rightCells, right, grammar.words);
+        if (rightCount == 0) {
+            return false;
+        }
+        if (grammar.combinesByRules(leftCount, rightCount)) {
+            combineByRules(grammar, leftCells, left, rightCells, right, targetCells, target);
+            return true;
+        }
+        combineByPairs(grammar, leftCells, left, rightCells, right, targetCells, target);
+        return false;
+    }
+
+    /**
+     * @return symbols of the cell
+     */
+    static int count(long[] cells, int offset, int words) {
+        int count = 0;
+        for (int w = 0; w < words; w++) {
+            count += Long.bitCount(cells[offset + w]);
+        }
+        return count;
+    }
+
+    /**
+     * for every B in the left cell and C in the right cell, look up the rules
+     * A::=BC of the pair
+     */
+    private static void combineByPairs(CompiledGrammar grammar, long[] leftCells, int left, long[] rightCells,
+            int right, long[] targetCells, int target) {
+        int words = grammar.words;
+        int[] from = grammar.pairFrom;
+        int[] to = grammar.pairTo;
+        int[] lhs = grammar.pairLhs;
+        for (int w = 0; w < words; w++) {
+            long bits = leftCells[left + w];
+            while (bits != 0) {
+                int b = (w << 6) + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+                for (int v = 0; v < words; v++) {
+                    long rightBits = rightCells[right + v];
+                    while (rightBits != 0) {
+                        int c = (v << 6) + Long.numberOfTrailingZeros(rightBits);
+                        rightBits &= rightBits - 1;
+                        int slot = grammar.pairSlot(b, c);
+                        if (slot < 0) {
+                            continue;
+                        }
+                        for (int r = from[slot]; r < to[slot]; r++) {
+                            targetCells[target + (lhs[r] >>> 6)] |= 1L << lhs[r];
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * for every left symbol B of a binary rule, test whether it is in the
+     * left cell and then its rules A::=BC, skipping the A already in the
+     * target; faster when the cells have many symbols and the grammar few
+     * rules
+     */
+    static void combineByRules(CompiledGrammar grammar, long[] leftCells, int left, long[] rightCells, int right,
+            long[] targetCells, int target) {
+        int[] ruleLefts = grammar.ruleLefts;
+        int[] offsets = grammar.leftOffsets;
+        int[] rights = grammar.binaryRight;
+        int[] lhs = grammar.binaryLhs;
+        for (int b : ruleLefts) {
+            if ((leftCells[left + (b >>> 6)] & (1L << b)) == 0) {
+                continue;
+            }
+            for (int r = offsets[b]; r < offsets[b + 1]; r++) {
+                int a = lhs[r];
+                int c = rights[r];
+                if ((targetCells[target + (a >>> 6)] & (1L << a)) == 0
+                        && (rightCells[right + (c >>> 6)] & (1L << c)) != 0) {
+                    targetCells[target + (a >>> 6)] |= 1L << a;
+                }
+            }
+        }
+    }
+
+    /**
+     * @param row length of the substring - 1
+     * @param col first position of the substring
+     * @param nonterminal non-terminal id
+     * @return true if the non-terminal derives the substring
+     */
+    public boolean contains(int row, int col, int nonterminal) {
+        return (cells[offset(row, col) + (nonterminal >>> 6)] & (1L << nonterminal)) != 0;
+    }
+
+    /**
+     * @return true if the axiom derives the whole word
+     */
+    public boolean isDerived() {
+        return length > 0 && grammar.startSymbol >= 0 && contains(length - 1, 0, grammar.startSymbol);
+    }
+
+    /**
+     * index of the first long of a cell
+     */
+    int offset(int row, int col) {
+        return (int) (((long) row * length - (long) row * (row - 1) / 2 + col) * words);
+    }
+
+    long[] cells() {
+        return cells;
+    }
+
+    /**
+     * @return copy of the tokens of the last word filled
+     */
+    int[] tokens() {
+        return Arrays.copyOf(tokens, length);
+    }
+
+    /**
+     * first bit set at or after {@code from} in a bitset of {@code words} longs
+     * starting at {@code base}, -1 if there is none
+     */
+    static int nextSetBit(long[] bitset, int base, int words, int from) {
+        int w = from >>> 6;
+        if (w >= words) {
+            return -1;
+        }
+        long bits = bitset[base + w] & (-1L << from);
+        while (bits == 0) {
+            if (++w == words) {
+                return -1;
+            }
+            bits = bitset[base + w];
+        }
+        return (w << 6) + Long.numberOfTrailingZeros(bits);
+    }
+
+    /**
+     * @return number of cells of the triangle of a word of the given length
+     */
+    static long cellCount(int length) {
+        return (long) length * (length + 1) / 2;
+    }
+}
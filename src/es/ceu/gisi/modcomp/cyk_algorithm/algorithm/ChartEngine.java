@@ -0,0 +1,46 @@
+package es.ceu.gisi.modcomp.cyk_algorithm.algorithm;
+
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.exceptions.ParseAbortedException;
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.interfaces.ParsingEngine;
+
+/**
+ * The engines built on {@link Chart}. They fill the same bit-packed chart and
+ * differ in how the work is done:
+ * <ul>
+ * <li>SERIAL: one thread, every split combined pair driven or rule driven
+ * depending on the number of symbol pairs of its two cells. The cheapest
+ * setup, best for short words.</li>
+ * <li>RULES: one thread, every split combined rule driven, skipping the
+ * symbols already derived. Best for grammars with few rules per pair of
+ * symbols.</li>
+ * <li>PARALLEL: like SERIAL, but the cells of every long row are split among
+ * the threads of the common ForkJoinPool, a wavefront that goes up one row at
+ * a time. Best for long words on several cores.</li>
+ * </ul>
+ *
+ * Every call fills a chart of its own, so the engines can be shared between
+ * threads; the name of the constant is the name of the engine. See
+ * EngineDispatcher to choose one per call.
+ */
+public enum ChartEngine implements ParsingEngine {
+
+    SERIAL(false, false),
+    RULES(true, false),
+    PARALLEL(false, true);
+
+    private final boolean byRules;
+    private final boolean parallel;
+
+    private ChartEngine(boolean byRules, boolean parallel) {
+        this.byRules = byRules;
+        this.parallel = parallel;
+    }
+
+    @Override
+    public boolean isDerived(CompiledGrammar grammar, int[] tokens, ParseOptions options)
+            throws ParseAbortedException {
+        Chart chart = new Chart(grammar);
+        chart.fill(tokens, tokens.length, options.start(tokens.length), byRules, parallel);
+        return chart.isDerived();
+    }
+}
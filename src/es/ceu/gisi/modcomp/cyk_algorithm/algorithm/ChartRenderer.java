@@ -0,0 +1,337 @@
+package es.ceu.gisi.modcomp.cyk_algorithm.algorithm;
+
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.interfaces.ChartView;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Writes a CYK chart to an Appendable (a Writer, a StringBuilder...) in a
+ * single pass, without building the text of the cells.
+ *
+ * Formats:
+ * <ul>
+ * <li>TABLE, the layout of algorithmStateToString: one line per row and every
+ * cell padded to the width of its column plus one space.</li>
+ * <li>CSV, one "row,column,nonterminals" line per cell, the non-terminals
+ * separated by spaces.</li>
+ * <li>JSON, {"length":n,"firstColumn":c,"truncated":b,"rows":[[["S","A"],[]],...]}.</li>
+ * </ul>
+ *
+ * Huge charts can be limited to their first rows and to a page of columns. In
+ * TABLE format cells can also be cut to a maximum length, and a last line
+ * tells which part of the chart was written.
+ *
+ * The non-terminals of a cell are written in the order given by
+ * {@link ChartView#nextShownNonTerminal(int, int, int)}.
+ */
+public final class ChartRenderer {
+
+    public enum Format {
+        TABLE, CSV, JSON
+    }
+
+    private static final String ELLIPSIS = "...";
+
+    private Format format;
+    private int maxRows;
+    private int firstColumn;
+    private int maxColumns;
+    private int maxCellLength;
+
+    public ChartRenderer() {
+        format = Format.TABLE;
+        maxRows = Integer.MAX_VALUE;
+        firstColumn = 0;
+        maxColumns = Integer.MAX_VALUE;
+        maxCellLength = Integer.MAX_VALUE;
+    }
+
+    public ChartRenderer format(Format format) {
+        this.format = format;
+        return this;
+    }
+
+    /**
+     * @param maxRows write only the rows of the substrings of length up to
+     * this value
+     * @return this renderer
+     */
+    public ChartRenderer rows(int maxRows) {
+        if (maxRows < 0) {
+            throw new IllegalArgumentException();
+        }
+        this.maxRows = maxRows;
+        return this;
+    }
+
+    /**
+     * @param first first column written
+     * @param count number of columns written
+     * @return this renderer
+     */
+    public ChartRenderer columns(int first, int count) {
+        if (first < 0 || count < 0) {
+            throw new IllegalArgumentException();
+        }
+        this.firstColumn = first;
+        this.maxColumns = count;
+        return this;
+    }
+
+    /**
+     * @param page page number, from 0
+     * @param columnsPerPage columns of every page
+     * @return this renderer
+     */
+    public ChartRenderer page(int page, int columnsPerPage) {
+        return columns((int) Math.min(Integer.MAX_VALUE, (long) page * columnsPerPage), columnsPerPage);
+    }
+
+    /**
+     * @param maxCellLength longer cells are cut and end with "...", or fewer
+     * dots if the limit is very short (TABLE format only)
+     * @return this renderer
+     */
+    public ChartRenderer maxCellLength(int maxCellLength) {
+        if (maxCellLength < 1) {
+            throw new IllegalArgumentException();
+        }
+        this.maxCellLength = maxCellLength;
+        return this;
+    }
+
+    /**
+     * @param chart chart to write
+     * @return the chart as text
+     */
+    public String render(ChartView chart) {
+        Window window = new Window(chart);
+        StringBuilder sb;
+        if (format == Format.TABLE) {
+            int[] widths = columnWidths(chart, window);
+            long size = 0;
+            for (int i = 0; i < window.rows; i++) {
+                for (int j = window.firstColumn; j < window.lastColumn(i); j++) {
+                    size += widths[j - window.firstColumn] + 1;
+                }
+                size++;
+            }
+            sb = new StringBuilder((int) Math.min(Integer.MAX_VALUE - 8, size + 64));
+        } else {
+            sb = new StringBuilder();
+        }
+        try {
+            render(chart, sb, window);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);   // StringBuilder does not throw
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @param chart chart to write
+     * @param out destination of the text
+     * @throws IOException if the destination fails
+     */
+    public void render(ChartView chart, Appendable out) throws IOException {
+        render(chart, out, new Window(chart));
+    }
+
+    private void render(ChartView chart, Appendable out, Window window) throws IOException {
+        switch (format) {
+            case CSV:
+                writeCsv(chart, out, window);
+                break;
+            case JSON:
+                writeJson(chart, out, window);
+                break;
+            default:
+                writeTable(chart, out, window, columnWidths(chart, window));
+        }
+    }
+
+    private int[] columnWidths(ChartView chart, Window window) {
+        int[] widths = new int[window.lastColumn(0) - window.firstColumn];
+        for (int i = 0; i < window.rows; i++) {
+            for (int j = window.firstColumn; j < window.lastColumn(i); j++) {
+                int length = Math.min(cellLength(chart, i, j, window.separator), maxCellLength);
+                if (length > widths[j - window.firstColumn]) {
+                    widths[j - window.firstColumn] = length;
+                }
+            }
+        }
+        return widths;
+    }
+
+    private void writeTable(ChartView chart, Appendable out, Window window, int[] widths) throws IOException {
+        int maxWidth = 0;
+        for (int width : widths) {
+            maxWidth = Math.max(maxWidth, width);
+        }
+        String spaces = " ".repeat(maxWidth + 1);
+        for (int i = 0; i < window.rows; i++) {
+            for (int j = window.firstColumn; j < window.lastColumn(i); j++) {
+                int length = cellLength(chart, i, j, window.separator);
+                if (length > maxCellLength) {
+                    int cut = maxCellLength - Math.min(ELLIPSIS.length(), maxCellLength - 1);
+                    writeCell(chart, i, j, window.separator, out, cut);
+                    out.append(ELLIPSIS, 0, maxCellLength - cut);
+                    length = maxCellLength;
+                } else {
+                    writeCell(chart, i, j, window.separator, out, length);
+                }
+                out.append(spaces, 0, widths[j - window.firstColumn] - length + 1);
+            }
+            out.append('\n');
+        }
+        if (window.truncated) {
+            out.append('[');
+            appendInt(out, window.rows);
+            out.append(" of ");
+            appendInt(out, chart.length());
+            out.append(" rows, columns ");
+            appendInt(out, window.firstColumn);
+            out.append('-');
+            appendInt(out, window.lastColumn(0) - 1);
+            out.append("]\n");
+        }
+    }
+
+    private void writeCsv(ChartView chart, Appendable out, Window window) throws IOException {
+        out.append("row,column,nonterminals\n");
+        for (int i = 0; i < window.rows; i++) {
+            for (int j = window.firstColumn; j < window.lastColumn(i); j++) {
+                appendInt(out, i);
+                out.append(',');
+                appendInt(out, j);
+                out.append(",\"");
+                for (int a = chart.nextShownNonTerminal(i, j, -1), k = 0; a >= 0; a = chart.nextShownNonTerminal(i, j, a), k++) {
+                    if (k > 0) {
+                        out.append(' ');
+                    }
+                    String name = chart.nonTerminalName(a);
+                    for (int c = 0; c < name.length(); c++) {
+                        if (name.charAt(c) == '"') {
+                            out.append('"');
+                        }
+                        out.append(name.charAt(c));
+                    }
+                }
+                out.append("\"\n");
+            }
+        }
+    }
+
+    private void writeJson(ChartView chart, Appendable out, Window window) throws IOException {
+        out.append("{\"length\":");
+        appendInt(out, chart.length());
+        out.append(",\"firstColumn\":");
+        appendInt(out, window.firstColumn);
+        out.append(",\"truncated\":").append(window.truncated ? "true" : "false").append(",\"rows\":[");
+        for (int i = 0; i < window.rows; i++) {
+            out.append(i > 0 ? ",[" : "[");
+            for (int j = window.firstColumn; j < window.lastColumn(i); j++) {
+                out.append(j > window.firstColumn ? ",[" : "[");
+                for (int a = chart.nextShownNonTerminal(i, j, -1), k = 0; a >= 0; a = chart.nextShownNonTerminal(i, j, a), k++) {
+                    out.append(k > 0 ? ",\"" : "\"");
+                    appendJsonString(out, chart.nonTerminalName(a));
+                    out.append('"');
+                }
+                out.append(']');
+            }
+            out.append(']');
+        }
+        out.append("]}");
+    }
+
+    private static int cellLength(ChartView chart, int row, int col, boolean separator) {
+        int length = 0;
+        for (int a = chart.nextShownNonTerminal(row, col, -1); a >= 0; a = chart.nextShownNonTerminal(row, col, a)) {
+            if (separator && length > 0) {
+                length++;
+            }
+            length += chart.nonTerminalName(a).length();
+        }
+        return length;
+    }
+
+    /**
+     * write the first {@code limit} chars of the text of a cell
+     */
+    private static void writeCell(ChartView chart, int row, int col, boolean separator, Appendable out, int limit)
+            throws IOException {
+        int written = 0;
+        for (int a = chart.nextShownNonTerminal(row, col, -1); a >= 0 && written < limit;
+                a = chart.nextShownNonTerminal(row, col, a)) {
+            if (separator && written > 0) {
+                out.append(',');
+                written++;
+            }
+            String name = chart.nonTerminalName(a);
+            int end = Math.min(name.length(), limit - written);
+            out.append(name, 0, end);
+            written += end;
+        }
+    }
+
+    private static void appendInt(Appendable out, int value) throws IOException {
+        if (value < 0) {
+            out.append('-');
+            value = -value;
+        }
+        int divisor = 1;
+        while (value / divisor >= 10) {
+            divisor *= 10;
+        }
+        for (; divisor > 0; divisor /= 10) {
+            out.append((char) ('0' + value / divisor % 10));
+        }
+    }
+
+    private static void appendJsonString(Appendable out, String s) throws IOException {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                out.append('\\').append(c);
+            } else if (c < 0x20) {
+                out.append("\\u00");
+                out.append(Character.forDigit(c >> 4, 16)).append(Character.forDigit(c & 0xF, 16));
+            } else {
+                out.append(c);
+            }
+        }
+    }
+
+    /**
+     * rows and columns of the chart that are written
+     */
+    private final class Window {
+
+        private final int length;
+        private final int rows;
+        private final int firstColumn;
+        private final int columnEnd;
+        private final boolean separator;
+        private final boolean truncated;
+
+        private Window(ChartView chart) {
+            length = chart.length();
+            rows = Math.min(length, maxRows);
+            firstColumn = Math.min(length, ChartRenderer.this.firstColumn);
+            columnEnd = (int) Math.min(length, (long) firstColumn + maxColumns);
+            truncated = rows < length || firstColumn > 0 || columnEnd < length;
+            boolean single = true;
+            for (int a = 0; a < chart.nonTerminalCount() && single; a++) {
+                single = chart.nonTerminalName(a).length() == 1;
+            }
+            separator = !single;
+        }
+
+        /**
+         * end (exclusive) of the columns written in a row
+         */
+        private int lastColumn(int row) {
+            return Math.max(firstColumn, Math.min(columnEnd, length - row));
+        }
+    }
+}
@@ -0,0 +1,514 @@
+package es.ceu.gisi.modcomp.cyk_algorithm.algorithm;
+
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.exceptions.CYKAlgorithmException;
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.interfaces.ChartView;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Immutable copy of a filled CYK chart, to inspect or replay a parse later
+ * without running it again. A snapshot keeps the names of the symbols, the
+ * word and the fingerprint of the grammar that filled it, so it can be read
+ * and rendered without the grammar; extracting a derivation tree needs the
+ * grammar back.
+ *
+ * File layout, little endian: magic, version and grammar fingerprint, then
+ * as varints the non-terminal count, terminal count, axiom + 1 and word
+ * length, the names as length prefixed UTF-8, the word as terminal ids and
+ * the cells in chart order as runs: a count of empty cells, a count of
+ * non-empty cells and the bits of those, one bit per non-terminal with no
+ * padding between cells. Most cells of the upper rows are usually empty, so
+ * they take a few bytes per run.
+ */
+public final class ChartSnapshot implements ChartView {
+
+    private static final int MAGIC = 0x434B5943;   // "CYKC"
+    private static final int VERSION = 1;
+
+    private final long fingerprint;
+    private final String[] nonTerminalNames;
+    private final String[] terminalNames;
+    private final int startSymbol;
+    private final int[] word;
+    private final int words;
+    private final long[] cells;
+
+    private ChartSnapshot(long fingerprint, String[] nonTerminalNames, String[] terminalNames, int startSymbol,
+            int[] word, long[] cells) {
+        this.fingerprint = fingerprint;
+        this.nonTerminalNames = nonTerminalNames;
+        this.terminalNames = terminalNames;
+        this.startSymbol = startSymbol;
+        this.word = word;
+        this.words = (nonTerminalNames.length + 63) >>> 6;
+        this.cells = cells;
+    }
+
+    /**
+     * @param chart chart filled by {@link Chart#fill}
+     * @return copy of its cells
+     */
+    public static ChartSnapshot of(Chart chart) {
+        return capture(chart, chart.grammar(), chart.tokens());
+    }
+
+    /**
+     * copy the cells of a chart filled with the given word and grammar
+     */
+    static ChartSnapshot capture(ChartView chart, CompiledGrammar grammar, int[] word) {
+        int n = grammar.nonTerminalCount();
+        int words = grammar.words();
+        long size = Chart.cellCount(word.length) * words;
+        if (size > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("chart too big for a snapshot: " + word.length);
+        }
+        long[] cells = new long[(int) size];
+        int cell = 0;
+        for (int i = 0; i < word.length; i++) {
+            for (int j = 0; j < word.length - i; j++, cell += words) {
+                for (int a = chart.nextNonTerminal(i, j, 0); a >= 0 && a < n; a = chart.nextNonTerminal(i, j, a + 1)) {
+                    cells[cell + (a >>> 6)] |= 1L << a;
+                }
+            }
+        }
+        return new ChartSnapshot(grammar.fingerprint(), grammar.nonTerminalNames.clone(),
+                grammar.terminalNames.clone(), grammar.startSymbol, word.clone(), cells);
+    }
+
+    /**
+     * @return fingerprint of the grammar that filled the chart, see
+     * {@link CompiledGrammar#fingerprint()}
+     */
+    public long fingerprint() {
+        return fingerprint;
+    }
+
+    @Override
+    public int length() {
+        return word.length;
+    }
+
+    @Override
+    public int nonTerminalCount() {
+        return nonTerminalNames.length;
+    }
+
+    @Override
+    public String nonTerminalName(int nonterminal) {
+        return nonTerminalNames[nonterminal];
+    }
+
+    @Override
+    public int nextNonTerminal(int row, int col, int from) {
+        return Chart.nextSetBit(cells, offset(row, col), words, from);
+    }
+
+    /**
+     * @param position position in the word
+     * @return name of the terminal at that position
+     */
+    public String terminalAt(int position) {
+        return terminalNames[word[position]];
+    }
+
+    /**
+     * @return true if the axiom derives the whole word
+     */
+    public boolean isDerived() {
+        return word.length > 0 && startSymbol >= 0 && contains(offset(word.length - 1, 0), startSymbol);
+    }
+
+    private int offset(int row, int col) {
+        return (int) (((long) row * word.length - (long) row * (row - 1) / 2 + col) * words);
+    }
+
+    private boolean contains(int cell, int nonterminal) {
+        return (cells[cell + (nonterminal >>> 6)] & (1L << nonterminal)) != 0;
+    }
+
+    /**
+     * Extracts a derivation tree of the whole word from the cells, without
+     * filling the chart again, as nested brackets: "(S (A a) (B b))". When
+     * there are several trees, one of them is returned.
+     *
+     * @param grammar grammar that filled the chart, with the same fingerprint;
+     * its symbols may have different ids
+     * @return the tree, or null if the axiom does not derive the word
+     * @throws CYKAlgorithmException if the grammar has another fingerprint
+     */
+    public String derivationTree(CompiledGrammar grammar) throws CYKAlgorithmException {
+        if (grammar.fingerprint() != fingerprint) {
+            throw new CYKAlgorithmException();
+        }
+        if (!isDerived()) {
+            return null;
+        }
+        Map<String, Integer> ids = new HashMap<>();
+        for (int i = 0; i < nonTerminalNames.length; i++) {
+            ids.put(nonTerminalNames[i], i);
+        }
+        int[] local = new int[grammar.nonTerminalCount()];   // grammar id -> id in this snapshot
+        int[] global = new int[nonTerminalNames.length];     // id in this snapshot -> grammar id
+        for (int a = 0; a < local.length; a++) {
+            Integer id = ids.get(grammar.nonTerminalName(a));
+            if (id == null) {
+                throw new CYKAlgorithmException();
+            }
+            local[a] = id;
+            global[id] = a;
+        }
+
+        StringBuilder sb = new StringBuilder();
+        int[] stack = new int[3 * 2 * word.length + 3];   // row, col, grammar id; -1 row closes a bracket
+        int top = 0;
+        stack[top++] = word.length - 1;
+        stack[top++] = 0;
+        stack[top++] = grammar.startSymbol();
+        while (top > 0) {
+            int a = stack[--top];
+            int col = stack[--top];
+            int row = stack[--top];
+            if (row < 0) {
+                sb.append(')');
+                continue;
+            }
+            if (sb.length() > 0) {
+                sb.append(' ');
+            }
+            sb.append('(').append(grammar.nonTerminalName(a));
+            if (row == 0) {
+                sb.append(' ').append(terminalAt(col)).append(')');
+                continue;
+            }
+            int[] split = split(grammar, local, global, row, col, a);
+            stack[top++] = -1;
+            stack[top++] = 0;
+            stack[top++] = 0;
+            stack[top++] = row - 1 - split[0];
+            stack[top++] = col + split[0] + 1;
+            stack[top++] = split[2];
+            stack[top++] = split[0];
+            stack[top++] = col;
+            stack[top++] = split[1];
+        }
+        return sb.toString();
+    }
+
+    /**
+     * find a split k and a rule A::=BC with B in the cell (k, col) and C in
+     * the cell (row - 1 - k, col + k + 1)
+     *
+     * @return {k, B, C} as grammar ids
+     */
+    private int[] split(CompiledGrammar grammar, int[] local, int[] global, int row, int col, int a) {
+        for (int k = 0; k < row; k++) {
+            int left = offset(k, col);
+            int right = offset(row - 1 - k, col + k + 1);
+            for (int b = nextSetBit(left, 0); b >= 0; b = nextSetBit(left, b + 1)) {
+                int gb = global[b];
+                for (int r = grammar.leftOffsets[gb]; r < grammar.leftOffsets[gb + 1]; r++) {
+                    if (grammar.binaryLhs[r] == a && contains(right, local[grammar.binaryRight[r]])) {
+                        return new int[]{k, gb, grammar.binaryRight[r]};
+                    }
+                }
+            }
+        }
+        throw new IllegalStateException("the chart does not match the grammar");
+    }
+
+    private int nextSetBit(int cell, int from) {
+        return Chart.nextSetBit(cells, cell, words, from);
+    }
+
+    /**
+     * Writes the snapshot in the binary format read by {@link #read(Path)}.
+     *
+     * @param path destination file, replaced if it exists
+     * @throws IOException if the file can't be written
+     */
+    public void write(Path path) throws IOException {
+        try (OutputStream out = Files.newOutputStream(path)) {
+            write(out);
+        }
+    }
+
+    /**
+     * Writes the snapshot in the binary format read by
+     * {@link #read(InputStream)}. The stream is not closed.
+     *
+     * @param stream destination
+     * @throws IOException if the stream fails
+     */
+    public void write(OutputStream stream) throws IOException {
+        Encoder out = new Encoder(stream);
+        out.putInt(MAGIC);
+        out.putInt(VERSION);
+        out.putLong(fingerprint);
+        out.putVarLong(nonTerminalNames.length);
+        out.putVarLong(terminalNames.length);
+        out.putVarLong(startSymbol + 1);
+        out.putVarLong(word.length);
+        for (String name : nonTerminalNames) {
+            out.putName(name);
+        }
+        for (String name : terminalNames) {
+            out.putName(name);
+        }
+        for (int token : word) {
+            out.putVarLong(token);
+        }
+
+        int n = nonTerminalNames.length;
+        int total = (int) Chart.cellCount(word.length);
+        int cell = 0;
+        while (cell < total) {
+            int empty = 0;
+            while (cell + empty < total && isEmpty(cell + empty)) {
+                empty++;
+            }
+            int filled = 0;
+            while (cell + empty + filled < total && !isEmpty(cell + empty + filled)) {
+                filled++;
+            }
+            out.putVarLong(empty);
+            out.putVarLong(filled);
+            for (int c = cell + empty; c < cell + empty + filled; c++) {
+                for (int w = 0; w < words; w++) {
+                    out.putBits(cells[c * words + w], Math.min(64, n - (w << 6)));
+                }
+            }
+            out.alignBits();
+            cell += empty + filled;
+        }
+        out.flush();
+    }
+
+    private boolean isEmpty(int cell) {
+        for (int w = 0; w < words; w++) {
+            if (cells[cell * words + w] != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Maps a snapshot file and reads it.
+     *
+     * @param path file written by {@link #write(Path)}
+     * @return the snapshot
+     * @throws IOException if the file can't be read
+     * @throws CYKAlgorithmException if the file is not a chart snapshot
+     */
+    public static ChartSnapshot read(Path path) throws IOException, CYKAlgorithmException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Reads a snapshot until the end of the stream.
+     *
+     * @param in stream written by {@link #write(OutputStream)}
+     * @return the snapshot
+     * @throws IOException if the stream fails
+     * @throws CYKAlgorithmException if the stream is not a chart snapshot
+     */
+    public static ChartSnapshot read(InputStream in) throws IOException, CYKAlgorithmException {
+        return read(ByteBuffer.wrap(in.readAllBytes()));
+    }
+
+    private static ChartSnapshot read(ByteBuffer bytes) throws CYKAlgorithmException {
+        Decoder in = new Decoder(bytes.duplicate().order(ByteOrder.LITTLE_ENDIAN));
+        try {
+            if (in.buffer.getInt() != MAGIC || in.buffer.getInt() != VERSION) {
+                throw new CYKAlgorithmException();
+            }
+            long fingerprint = in.buffer.getLong();
+            int n = in.getCount();
+            int t = in.getCount();
+            int start = in.getCount() - 1;
+            int length = in.getCount();
+            int words = (n + 63) >>> 6;
+            long size = Chart.cellCount(length) * words;
+            if (start >= n || size > Integer.MAX_VALUE - 8 || length > in.buffer.remaining()) {
+                throw new CYKAlgorithmException();
+            }
+            String[] nonTerminalNames = new String[n];
+            for (int i = 0; i < n; i++) {
+                nonTerminalNames[i] = in.getName();
+            }
+            String[] terminalNames = new String[t];
+            for (int i = 0; i < t; i++) {
+                terminalNames[i] = in.getName();
+            }
+            int[] word = new int[length];
+            for (int i = 0; i < length; i++) {
+                word[i] = in.getCount();
+                if (word[i] >= t) {
+                    throw new CYKAlgorithmException();
+                }
+            }
+
+            long[] cells = new long[(int) size];
+            int total = (int) Chart.cellCount(length);
+            int cell = 0;
+            while (cell < total) {
+                long empty = in.getCount();
+                int filled = in.getCount();
+                if (cell + empty + filled > total || (filled == 0 && cell + empty < total)) {
+                    throw new CYKAlgorithmException();
+                }
+                cell += (int) empty;
+                for (int c = cell; c < cell + filled; c++) {
+                    for (int w = 0; w < words; w++) {
+                        cells[c * words + w] = in.getBits(Math.min(64, n - (w << 6)));
+                    }
+                }
+                in.alignBits();
+                cell += filled;
+            }
+            return new ChartSnapshot(fingerprint, nonTerminalNames, terminalNames, start, word, cells);
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new CYKAlgorithmException();
+        }
+    }
+
+    /**
+     * buffered little endian writer with varints and bit packing
+     */
+    private static final class Encoder {
+
+        private final OutputStream out;
+        private int pending;
+        private int used;
+
+        private Encoder(OutputStream out) {
+            this.out = new BufferedOutputStream(out, 64 << 10);
+        }
+
+        private void putInt(int value) throws IOException {
+            for (int i = 0; i < 32; i += 8) {
+                out.write(value >>> i);
+            }
+        }
+
+        private void putLong(long value) throws IOException {
+            putInt((int) value);
+            putInt((int) (value >>> 32));
+        }
+
+        private void putVarLong(long value) throws IOException {
+            while ((value & ~0x7FL) != 0) {
+                out.write((int) (value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            out.write((int) value);
+        }
+
+        private void putName(String name) throws IOException {
+            byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+            putVarLong(bytes.length);
+            out.write(bytes);
+        }
+
+        /**
+         * append the lowest {@code count} bits of the value, lowest first
+         */
+        private void putBits(long value, int count) throws IOException {
+            for (int done = 0; done < count;) {
+                int take = Math.min(8 - used, count - done);
+                pending |= (int) ((value >>> done) & ((1 << take) - 1)) << used;
+                used += take;
+                done += take;
+                if (used == 8) {
+                    out.write(pending);
+                    pending = 0;
+                    used = 0;
+                }
+            }
+        }
+
+        private void alignBits() throws IOException {
+            if (used > 0) {
+                out.write(pending);
+                pending = 0;
+                used = 0;
+            }
+        }
+
+        private void flush() throws IOException {
+            out.flush();
+        }
+    }
+
+    /**
+     * reader of the encoding of Encoder
+     */
+    private static final class Decoder {
+
+        private final ByteBuffer buffer;
+        private int pending;
+        private int available;
+
+        private Decoder(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        /**
+         * varint that must fit a non-negative int
+         */
+        private int getCount() throws CYKAlgorithmException {
+            long value = 0;
+            for (int shift = 0; shift < 35; shift += 7) {
+                int b = buffer.get();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    if (value > Integer.MAX_VALUE) {
+                        throw new CYKAlgorithmException();
+                    }
+                    return (int) value;
+                }
+            }
+            throw new CYKAlgorithmException();
+        }
+
+        private String getName() throws CYKAlgorithmException {
+            byte[] bytes = new byte[getCount()];
+            buffer.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        private long getBits(int count) {
+            long value = 0;
+            for (int done = 0; done < count;) {
+                if (available == 0) {
+                    pending = buffer.get() & 0xFF;
+                    available = 8;
+                }
+                int take = Math.min(available, count - done);
+                value |= (long) (pending & ((1 << take) - 1)) << done;
+                pending >>>= take;
+                available -= take;
+                done += take;
+            }
+            return value;
+        }
+
+        private void alignBits() {
+            available = 0;
+        }
+    }
+}
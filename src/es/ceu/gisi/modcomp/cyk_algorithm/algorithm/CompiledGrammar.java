@@ -0,0 +1,406 @@
+package es.ceu.gisi.modcomp.cyk_algorithm.algorithm;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Immutable snapshot of a CNF grammar laid out as flat tables indexed by
+ * symbol id, ready to fill CYK charts without touching names or collections.
+ *
+ * Sets of non-terminals are bitsets of {@link #words()} longs. The tables are:
+ * <ul>
+ * <li>terminal id → set of non-terminals A with A::=t, used to fill the first
+ * row of the chart with a single copy per symbol.</li>
+ * <li>char code → terminal id for one-char terminals (see
+ * {@link #terminalId(char)}), an array lookup per char of a word.</li>
+ * <li>char code → the set of non-terminals of the one-char terminal, so a word
+ * can fill the first row without translating its chars to ids first.</li>
+ * <li>binary productions A::=BC grouped by their left symbol B (CSR layout:
+ * the rules of B are the positions leftOffsets[B] to leftOffsets[B+1] of
+ * binaryRight and binaryLhs).</li>
+ * <li>the same productions grouped by their pair B C, found through an open
+ * addressing table (see {@link #pairSlot(int, int)}), so a pair of cells can
+ * be combined pair by pair without going through the rules of B.</li>
+ * </ul>
+ *
+ * Instances can be shared freely between threads.
+ */
+public final class CompiledGrammar {
+
+    final String[] nonTerminalNames;
+    final String[] terminalNames;
+    final int startSymbol;
+    final int words;
+    final long[] terminalSets;
+    final int[] leftOffsets;
+    final int[] binaryRight;
+    final int[] binaryLhs;
+    /**
+     * the non-terminals B with at least one rule A::=BC, in id order
+     */
+    final int[] ruleLefts;
+    /**
+     * terminal id → its set of non-terminals, shared by the charts and never
+     * modified
+     */
+    final long[][] terminalRows;
+    /**
+     * char code → the row of the one-char terminal with that code, null for
+     * the other chars
+     */
+    final long[][] charRows;
+    /**
+     * open addressing table of the pairs B C with at least one rule: the key
+     * of a slot is B * n + C, or -1 if it is empty, and the A of its rules are
+     * the positions pairFrom[slot] to pairTo[slot] of pairLhs
+     */
+    final long[] pairKeys;
+    final int[] pairFrom;
+    final int[] pairTo;
+    final int[] pairLhs;
+    private final int pairShift;
+
+    private final SymbolTable terminals;
+    private volatile long fingerprint;   // 0 until computed; volatile so the 64 bits are read whole
+    private volatile WordFilter filter;
+
+    /**
+     * takes every table as is, including the indexes of the binary rules;
+     * GrammarLoader checks them before, see build to compute them
+     */
+    CompiledGrammar(String[] nonTerminalNames, String[] terminalNames, int startSymbol, long[] terminalSets,
+            int[] leftOffsets, int[] binaryRight, int[] binaryLhs, int[] ruleLefts, long[] pairKeys, int[] pairFrom,
+            int[] pairTo, int[] pairLhs) {
+        this.nonTerminalNames = nonTerminalNames;
+        this.terminalNames = terminalNames;
+        this.startSymbol = startSymbol;
+        this.words = (nonTerminalNames.length + 63) >>> 6;
+        this.terminalSets = terminalSets;
+        this.leftOffsets = leftOffsets;
+        this.binaryRight = binaryRight;
+        this.binaryLhs = binaryLhs;
+        this.ruleLefts = ruleLefts;
+        this.pairKeys = pairKeys;
+        this.pairFrom = pairFrom;
+        this.pairTo = pairTo;
+        this.pairLhs = pairLhs;
+        this.pairShift = 64 - Integer.numberOfTrailingZeros(pairKeys.length);
+        this.terminals = new SymbolTable();
+        this.terminalRows = new long[terminalNames.length][];
+        int maxChar = -1;
+        for (int t = 0; t < terminalNames.length; t++) {
+            terminals.intern(terminalNames[t]);
+            terminalRows[t] = Arrays.copyOfRange(terminalSets, t * words, (t + 1) * words);
+            if (terminalNames[t].length() == 1) {
+                maxChar = Math.max(maxChar, terminalNames[t].charAt(0));
+            }
+        }
+        this.charRows = new long[maxChar + 1][];
+        for (int t = 0; t < terminalNames.length; t++) {
+            if (terminalNames[t].length() == 1) {
+                charRows[terminalNames[t].charAt(0)] = terminalRows[t];
+            }
+        }
+    }
+
+    /**
+     * compiles the tables, indexing the binary rules (grouped by their left
+     * symbol B) by left symbol in ruleLefts and by pair in pairKeys,
+     * pairFrom, pairTo and pairLhs
+     *
+     * @return the compiled grammar
+     */
+    static CompiledGrammar build(String[] nonTerminalNames, String[] terminalNames, int startSymbol,
+            long[] terminalSets, int[] leftOffsets, int[] binaryRight, int[] binaryLhs) {
+        int n = nonTerminalNames.length;
+        int lefts = 0;
+        for (int b = 0; b < n; b++) {
+            if (leftOffsets[b] < leftOffsets[b + 1]) {
+                lefts++;
+            }
+        }
+        int[] ruleLefts = new int[lefts];
+        for (int b = 0, i = 0; b < n; b++) {
+            if (leftOffsets[b] < leftOffsets[b + 1]) {
+                ruleLefts[i++] = b;
+            }
+        }
+        int rules = binaryLhs.length;
+        long[] sorted = new long[rules];   // C << 32 | rule, by B and then by C
+        for (int b = 0; b < n; b++) {
+            for (int r = leftOffsets[b]; r < leftOffsets[b + 1]; r++) {
+                sorted[r] = (long) binaryRight[r] << 32 | r;
+            }
+            Arrays.sort(sorted, leftOffsets[b], leftOffsets[b + 1]);
+        }
+        int pairs = 0;
+        for (int b = 0; b < n; b++) {
+            for (int r = leftOffsets[b]; r < leftOffsets[b + 1]; r++) {
+                if (r == leftOffsets[b] || sorted[r] >>> 32 != sorted[r - 1] >>> 32) {
+                    pairs++;
+                }
+            }
+        }
+        int slots = Integer.highestOneBit(Math.max(1, pairs)) << 2;   // at most half full
+        long[] pairKeys = new long[slots];
+        Arrays.fill(pairKeys, -1L);
+        int[] pairFrom = new int[slots];
+        int[] pairTo = new int[slots];
+        int[] pairLhs = new int[rules];
+        int slot = 0;
+        for (int b = 0; b < n; b++) {
+            for (int r = leftOffsets[b]; r < leftOffsets[b + 1]; r++) {
+                int c = (int) (sorted[r] >>> 32);
+                pairLhs[r] = binaryLhs[(int) sorted[r]];
+                if (r == leftOffsets[b] || c != sorted[r - 1] >>> 32) {
+                    long key = (long) b * n + c;
+                    slot = pairHash(key, slots);
+                    while (pairKeys[slot] != -1L) {
+                        slot = (slot + 1) & (slots - 1);
+                    }
+                    pairKeys[slot] = key;
+                    pairFrom[slot] = r;
+                }
+                pairTo[slot] = r + 1;
+            }
+        }
+        return new CompiledGrammar(nonTerminalNames, terminalNames, startSymbol, terminalSets, leftOffsets,
+                binaryRight, binaryLhs, ruleLefts, pairKeys, pairFrom, pairTo, pairLhs);
+    }
+
+    /**
+     * first slot to probe for a pair key
+     *
+     * @param slots size of the table, a power of two
+     */
+    static int pairHash(long key, int slots) {
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> (64 - Integer.numberOfTrailingZeros(slots)));
+    }
+
+    /**
+     * builds the tables from the id based model of CYKAlgorithm
+     *
+     * @param nonTerminals
+     * @param terminals
+     * @param startSymbol id of the axiom or -1
+     * @param productions productions by left-hand side id, {t} or {B, C}
+     * @return the compiled grammar
+     */
+    static CompiledGrammar compile(SymbolTable nonTerminals, SymbolTable terminals, int startSymbol,
+            List<List<int[]>> productions) {
+        int n = nonTerminals.size();
+        int words = (n + 63) >>> 6;
+        long[] terminalSets = new long[terminals.size() * words];
+        int[] leftOffsets = new int[n + 1];
+        for (int lhs = 0; lhs < n; lhs++) {
+            for (int[] rhs : productions.get(lhs)) {
+                if (rhs.length == 1) {
+                    terminalSets[rhs[0] * words + (lhs >>> 6)] |= 1L << lhs;
+                } else {
+                    leftOffsets[rhs[0] + 1]++;
+                }
+            }
+        }
+        for (int b = 0; b < n; b++) {
+            leftOffsets[b + 1] += leftOffsets[b];
+        }
+        int[] binaryRight = new int[leftOffsets[n]];
+        int[] binaryLhs = new int[leftOffsets[n]];
+        int[] next = leftOffsets.clone();
+        for (int lhs = 0; lhs < n; lhs++) {
+            for (int[] rhs : productions.get(lhs)) {
+                if (rhs.length == 2) {
+                    int r = next[rhs[0]]++;
+                    binaryRight[r] = rhs[1];
+                    binaryLhs[r] = lhs;
+                }
+            }
+        }
+        String[] nonTerminalNames = new String[n];
+        for (int i = 0; i < n; i++) {
+            nonTerminalNames[i] = nonTerminals.nameOf(i);
+        }
+        String[] terminalNames = new String[terminals.size()];
+        for (int i = 0; i < terminalNames.length; i++) {
+            terminalNames[i] = terminals.nameOf(i);
+        }
+        return build(nonTerminalNames, terminalNames, startSymbol, terminalSets, leftOffsets, binaryRight,
+                binaryLhs);
+    }
+
+    /**
+     * slot of the pair B C in pairKeys, see pairFrom and pairTo
+     *
+     * @param b non-terminal id of the left symbol
+     * @param c non-terminal id of the right symbol
+     * @return the slot or -1 if the grammar has no rule A::=BC
+     */
+    int pairSlot(int b, int c) {
+        long key = (long) b * nonTerminalNames.length + c;
+        int mask = pairKeys.length - 1;   // pairHash with the shift computed once
+        for (int slot = (int) ((key * 0x9E3779B97F4A7C15L) >>> pairShift);; slot = (slot + 1) & mask) {
+            long k = pairKeys[slot];
+            if (k == key) {
+                return slot;
+            }
+            if (k == -1L) {
+                return -1;
+            }
+        }
+    }
+
+    /**
+     * Whether two cells are cheaper to combine rule driven, going through
+     * the binary productions and testing B in the left cell and C in the right
+     * one, than pair driven, looking up every pair B C of the two cells. The
+     * charts decide it for every split.
+     *
+     * @param leftCount symbols of the left cell
+     * @param rightCount symbols of the right cell
+     * @return true if the pairs of the cells outnumber the binary productions
+     */
+    public boolean combinesByRules(int leftCount, int rightCount) {
+        return (long) leftCount * rightCount > binaryLhs.length;
+    }
+
+    /**
+     * @return number of non-terminals, their ids go from 0 to this value - 1
+     */
+    public int nonTerminalCount() {
+        return nonTerminalNames.length;
+    }
+
+    /**
+     * @return number of terminals, their ids go from 0 to this value - 1
+     */
+    public int terminalCount() {
+        return terminalNames.length;
+    }
+
+    /**
+     * @return id of the axiom, -1 if the grammar has none
+     */
+    public int startSymbol() {
+        return startSymbol;
+    }
+
+    /**
+     * Content hash of the grammar: its terminals, non-terminals, axiom and
+     * productions. It does not depend on the order in which they were added,
+     * so two grammars with the same content have the same fingerprint even if
+     * their symbols got different ids, and it is stable between runs and JVMs.
+     *
+     * @return 64 bit fingerprint
+     */
+    public long fingerprint() {
+        long h = fingerprint;
+        if (h == 0) {
+            h = computeFingerprint();
+            fingerprint = h;
+        }
+        return h;
+    }
+
+    private long computeFingerprint() {
+        Fingerprint fingerprint = new Fingerprint();
+        for (String name : nonTerminalNames) {
+            fingerprint.nonTerminal(name);
+        }
+        for (String name : terminalNames) {
+            fingerprint.terminal(name);
+        }
+        fingerprint.start(startSymbol < 0 ? null : nonTerminalNames[startSymbol]);
+        for (int t = 0; t < terminalNames.length; t++) {
+            for (int a = Chart.nextSetBit(terminalSets, t * words, words, 0); a >= 0;
+                    a = Chart.nextSetBit(terminalSets, t * words, words, a + 1)) {
+                fingerprint.production(nonTerminalNames[a], terminalNames[t]);
+            }
+        }
+        for (int b = 0; b < nonTerminalNames.length; b++) {
+            for (int r = leftOffsets[b]; r < leftOffsets[b + 1]; r++) {
+                fingerprint.production(nonTerminalNames[binaryLhs[r]], nonTerminalNames[b],
+                        nonTerminalNames[binaryRight[r]]);
+            }
+        }
+        return fingerprint.value();
+    }
+
+    /**
+     * Necessary conditions for a word to be derived, computed the first time
+     * they are needed and shared by every user of the grammar.
+     *
+     * @return the pre-filter of the grammar
+     */
+    public WordFilter filter() {
+        WordFilter f = filter;
+        if (f == null) {
+            synchronized (this) {
+                f = filter;
+                if (f == null) {
+                    f = new WordFilter(this);
+                    filter = f;
+                }
+            }
+        }
+        return f;
+    }
+
+    /**
+     * @return longs used by every set of non-terminals
+     */
+    public int words() {
+        return words;
+    }
+
+    /**
+     * @return number of productions A::=BC
+     */
+    public int binaryRuleCount() {
+        return binaryLhs.length;
+    }
+
+    /**
+     * @return binary productions per possible right-hand side B C, between 0
+     * and the number of non-terminals
+     */
+    public double ruleDensity() {
+        int n = nonTerminalNames.length;
+        return n == 0 ? 0 : (double) binaryLhs.length / ((double) n * n);
+    }
+
+    public String nonTerminalName(int id) {
+        return nonTerminalNames[id];
+    }
+
+    public String terminalName(int id) {
+        return terminalNames[id];
+    }
+
+    /**
+     * Translates a terminal name to the id expected by
+     * {@link CYKAlgorithm#isDerived(int[])}.
+     *
+     * @param name terminal name
+     * @return its id or -1 if it is not a terminal of the grammar
+     */
+    public int terminalId(String name) {
+        return terminals.idOf(name);
+    }
+
+    /**
+     * @param c name of a one-char terminal
+     * @return its id or -1 if it is not a terminal of the grammar
+     */
+    public int terminalId(char c) {
+        return terminals.idOf(c);
+    }
+
+    /**
+     * @param terminal terminal id
+     * @param nonterminal non-terminal id
+     * @return true if the grammar has the production nonterminal::=terminal
+     */
+    public boolean derives(int terminal, int nonterminal) {
+        return (terminalSets[terminal * words + (nonterminal >>> 6)] & (1L << nonterminal)) != 0;
+    }
+}
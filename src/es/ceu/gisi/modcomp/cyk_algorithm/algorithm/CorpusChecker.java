@@ -0,0 +1,245 @@
+package es.ceu.gisi.modcomp.cyk_algorithm.algorithm;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Checks every line of a corpus file against a grammar and writes one result
+ * line per input line: '1' if the line is derived, '0' if it is not and '?' if
+ * it was not checked because it contains a byte that is not a terminal or it
+ * is longer than the configured limit.
+ *
+ * The input is memory mapped in chunks that end at a line break. Worker
+ * threads parse the lines of a chunk straight from the mapped bytes into a
+ * chart they reuse, and the results are written in input order while at most
+ * two chunks per thread are in flight, so memory does not grow with the size
+ * of the corpus. Every byte is taken as one char (ISO-8859-1), so only
+ * terminals whose name is a single char below 256 can appear in the corpus.
+ */
+public class CorpusChecker {
+
+    public static final byte ACCEPTED = '1';
+    public static final byte REJECTED = '0';
+    public static final byte SKIPPED = '?';
+
+    private static final int DEFAULT_CHUNK_SIZE = 8 << 20;
+
+    private final CompiledGrammar grammar;
+    private final int threads;
+    private final int maxLineLength;
+    private final int chunkSize;
+    private final int[] terminalByByte;
+    private final ThreadLocal<Worker> workers;
+
+    /**
+     * @param grammar compiled grammar, see CYKAlgorithm.compile()
+     * @param threads number of worker threads
+     * @param maxLineLength longer lines are skipped, this bounds the size of
+     * the charts
+     */
+    public CorpusChecker(CompiledGrammar grammar, int threads, int maxLineLength) {
+        this(grammar, threads, maxLineLength, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * @param grammar compiled grammar, see CYKAlgorithm.compile()
+     * @param threads number of worker threads
+     * @param maxLineLength longer lines are skipped, this bounds the size of
+     * the charts
+     * @param chunkSize approximate number of bytes mapped per task
+     */
+    public CorpusChecker(CompiledGrammar grammar, int threads, int maxLineLength, int chunkSize) {
+        if (threads < 1 || maxLineLength < 1 || chunkSize < 1) {
+            throw new IllegalArgumentException();
+        }
+        this.grammar = grammar;
+        this.threads = threads;
+        this.maxLineLength = maxLineLength;
+        this.chunkSize = chunkSize;
+        this.terminalByByte = new int[256];
+        Arrays.fill(terminalByByte, -1);
+        for (int t = 0; t < grammar.terminalCount(); t++) {
+            String name = grammar.terminalName(t);
+            if (name.length() == 1 && name.charAt(0) < 256) {
+                terminalByByte[name.charAt(0)] = t;
+            }
+        }
+        this.workers = ThreadLocal.withInitial(Worker::new);
+    }
+
+    /**
+     * Checks every line of the input file.
+     *
+     * @param input corpus, one word per line ('\n' or "\r\n")
+     * @param output results, one line per input line, replaced if it exists
+     * @return counters of the run
+     * @throws IOException if a file can't be read or written
+     */
+    public Summary check(Path input, Path output) throws IOException {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try (FileChannel in = FileChannel.open(input, StandardOpenOption.READ);
+                FileChannel out = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.TRUNCATE_EXISTING)) {
+            long size = in.size();
+            long[] counts = new long[3];
+            Deque<Future<byte[]>> pending = new ArrayDeque<>();
+            long start = 0;
+            while (start < size || !pending.isEmpty()) {
+                while (start < size && pending.size() < 2 * threads) {
+                    long from = start;
+                    long to = chunkEnd(in, start, size);
+                    pending.add(pool.submit(() -> checkChunk(in, from, to)));
+                    start = to;
+                }
+                byte[] results = await(pending.poll());
+                for (int i = 0; i < results.length; i += 2) {
+                    counts[results[i] == ACCEPTED ? 0 : results[i] == REJECTED ? 1 : 2]++;
+                }
+                ByteBuffer buffer = ByteBuffer.wrap(results);
+                while (buffer.hasRemaining()) {
+                    out.write(buffer);
+                }
+            }
+            return new Summary(counts[0], counts[1], counts[2]);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static byte[] await(Future<byte[]> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * first position after the line break that follows start + chunkSize
+     */
+    private long chunkEnd(FileChannel in, long start, long size) throws IOException {
+        long position = start + chunkSize - 1;
+        ByteBuffer buffer = ByteBuffer.allocate(64 << 10);
+        while (position < size) {
+            buffer.clear();
+            int read = in.read(buffer, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return size;
+    }
+
+    /**
+     * check the lines of [from, to) and return their result lines
+     */
+    private byte[] checkChunk(FileChannel in, long from, long to) throws IOException {
+        MappedByteBuffer bytes = in.map(FileChannel.MapMode.READ_ONLY, from, to - from);
+        Worker worker = workers.get();
+        worker.size = 0;
+        int length = bytes.limit();
+        int lineStart = 0;
+        for (int i = 0; i <= length; i++) {
+            if (i == length ? i > lineStart : bytes.get(i) == '\n') {
+                int lineEnd = i > lineStart && bytes.get(i - 1) == '\r' ? i - 1 : i;
+                worker.add(checkLine(bytes, lineStart, lineEnd, worker));
+                lineStart = i + 1;
+            }
+        }
+        return Arrays.copyOf(worker.results, worker.size);
+    }
+
+    private byte checkLine(ByteBuffer bytes, int from, int to, Worker worker) {
+        int n = to - from;
+        if (n > maxLineLength) {
+            return SKIPPED;
+        }
+        for (int i = 0; i < n; i++) {
+            int t = terminalByByte[bytes.get(from + i) & 0xFF];
+            if (t < 0) {
+                return SKIPPED;
+            }
+            worker.tokens[i] = t;
+        }
+        if (n == 0) {
+            return REJECTED;
+        }
+        worker.chart.fill(worker.tokens, n);
+        return worker.chart.isDerived() ? ACCEPTED : REJECTED;
+    }
+
+    /**
+     * state reused by a worker thread between lines and chunks
+     */
+    private final class Worker {
+
+        private final Chart chart = new Chart(grammar);
+        private final int[] tokens = new int[maxLineLength];
+        private byte[] results = new byte[1024];
+        private int size;
+
+        private void add(byte result) {
+            if (size + 2 > results.length) {
+                results = Arrays.copyOf(results, results.length * 2);
+            }
+            results[size++] = result;
+            results[size++] = '\n';
+        }
+    }
+
+    /**
+     * Counters of a corpus run.
+     */
+    public static final class Summary {
+
+        private final long accepted;
+        private final long rejected;
+        private final long skipped;
+
+        Summary(long accepted, long rejected, long skipped) {
+            this.accepted = accepted;
+            this.rejected = rejected;
+            this.skipped = skipped;
+        }
+
+        public long lines() {
+            return accepted + rejected + skipped;
+        }
+
+        public long accepted() {
+            return accepted;
+        }
+
+        public long rejected() {
+            return rejected;
+        }
+
+        public long skipped() {
+            return skipped;
+        }
+    }
+}
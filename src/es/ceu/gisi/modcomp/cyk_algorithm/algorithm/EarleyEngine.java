@@ -0,0 +1,503 @@
+package es.ceu.gisi.modcomp.cyk_algorithm.algorithm;
+
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.exceptions.ParseAbortedException;
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.interfaces.ParsingEngine;
+import java.util.Arrays;
+
+/**
+ * Earley recognizer over the same CompiledGrammar as the CYK engines, with
+ * Leo's optimization of right recursion. It takes O(n³) time in the worst
+ * case like CYK, but about O(n) for unambiguous grammars and most
+ * deterministic ones, because it only builds the items that can extend a
+ * prefix of the word instead of every cell of the triangle.
+ *
+ * With a CNF grammar the items are simple. Set j holds:
+ * <ul>
+ * <li>the predicted non-terminals, those that may start at j: the closure
+ * of the second symbols awaited at j under "first child of a rule";</li>
+ * <li>the items A::=B•C with origin i, waiting for a C that starts at j,
+ * kept sorted by C;</li>
+ * <li>the completed non-terminals (X, i) that derive the symbols i to j - 1,
+ * used only while the set is built.</li>
+ * </ul>
+ * When X completes from i to j, the predicted rules A::=XC of set i become
+ * items of set j and the items of set i waiting for X complete their
+ * non-terminal at j. Leo's optimization: when an X at i can only complete a
+ * single waiting item, and nothing else uses it, the chain of such items is
+ * followed once and memoized, so a right recursion of depth d costs O(1)
+ * per completion instead of O(d).
+ *
+ * The limits of the options are checked once the sets are allocated and
+ * after every set is built; the items of a set count as its cells, and the
+ * arrays it adds, to keep the set and for Leo's memo, as its bytes. Every
+ * call builds its own sets, so the engine can be shared between threads; the
+ * prediction tables of the last grammar used are kept for the next call. See
+ * EngineBenchmark for its times against the chart engines.
+ */
+public final class EarleyEngine implements ParsingEngine {
+
+    private final boolean leo;
+    private volatile Tables tables;
+
+    /**
+     * Earley engine with Leo's optimization
+     */
+    public EarleyEngine() {
+        this(true);
+    }
+
+    /**
+     * @param leo use Leo's optimization of right recursion
+     */
+    public EarleyEngine(boolean leo) {
+        this.leo = leo;
+    }
+
+    @Override
+    public String name() {
+        return leo ? "EARLEY_LEO" : "EARLEY";
+    }
+
+    @Override
+    public boolean isDerived(CompiledGrammar grammar, int[] tokens, ParseOptions options)
+            throws ParseAbortedException {
+        Tables current = tables;
+        if (current == null || current.grammar != grammar) {
+            current = new Tables(grammar);
+            tables = current;
+        }
+        return new Recognizer(current, tokens, leo).run(options.start(tokens.length));
+    }
+
+    /**
+     * what the sets of every word of a grammar use, kept for the last grammar
+     * parsed
+     */
+    private static final class Tables {
+
+        private final CompiledGrammar grammar;
+        private final long[] closure;
+        private final long[] firstParents;
+
+        private Tables(CompiledGrammar grammar) {
+            this.grammar = grammar;
+            this.closure = predictionClosure(grammar);
+            this.firstParents = firstParents(grammar);
+        }
+    }
+
+    /**
+     * the sets of one word
+     */
+    private static final class Recognizer {
+
+        private final CompiledGrammar grammar;
+        private final int[] tokens;
+        private final boolean leo;
+        private final int n;
+        private final int words;
+        private final long[] closure;
+        private final long[] firstParents;
+        private final long[] predicted;
+
+        // waiting items of every set, sorted by awaited symbol: symbol, lhs and origin
+        private final int[][] waitSymbol;
+        private final int[][] waitLhs;
+        private final int[][] waitOrigin;
+        // Leo's memo: key(symbol, set) → the top of its chain, -1 if X at set is not deterministic
+        private final LongMap leoTops = new LongMap();
+
+        // completions and items of the set being built
+        private final LongSet completed = new LongSet();
+        private long[] work = new long[16];
+        private int[] itemSymbol = new int[16];
+        private int[] itemLhs = new int[16];
+        private int[] itemOrigin = new int[16];
+        private int items;
+        private int pending;
+        private long sealedBytes;
+        private long bytes;
+
+        Recognizer(Tables tables, int[] tokens, boolean leo) {
+            this.grammar = tables.grammar;
+            this.tokens = tokens;
+            this.leo = leo;
+            this.n = tokens.length;
+            this.words = grammar.words;
+            this.closure = tables.closure;
+            this.firstParents = tables.firstParents;
+            this.predicted = new long[(n + 1) * words];
+            this.waitSymbol = new int[n + 1][];
+            this.waitLhs = new int[n + 1][];
+            this.waitOrigin = new int[n + 1][];
+        }
+
+        boolean run(ParseOptions.Guard guard) throws ParseAbortedException {
+            int start = grammar.startSymbol;
+            if (start < 0 || n == 0) {
+                return false;
+            }
+            guard.check(0, 0, newBytes());
+            orInto(predicted, 0, closure, start * words);
+            for (int j = 1; j <= n; j++) {
+                completed.clear();
+                items = 0;
+                // scan: the predicted non-terminals of j - 1 that produce its symbol
+                int base = (j - 1) * words;
+                int t = tokens[j - 1] * words;
+                for (int w = 0; w < words; w++) {
+                    long bits = predicted[base + w] & grammar.terminalSets[t + w];
+                    while (bits != 0) {
+                        complete((w << 6) + Long.numberOfTrailingZeros(bits), j - 1);
+                        bits &= bits - 1;
+                    }
+                }
+                while (pending > 0) {
+                    long item = work[--pending];
+                    process((int) (item >>> 32), (int) item, j);
+                }
+                if (j < n) {
+                    sealSet(j);
+                }
+                guard.check(j - 1, completed.size() + items, newBytes());
+            }
+            return completed.contains(key(start, 0));
+        }
+
+        /**
+         * approximate heap allocated since the last call: the sets, the
+         * waiting items sealed and what the work arrays and tables grew
+         */
+        private long newBytes() {
+            long total = 16 + 8L * predicted.length + 3 * (16 + 8L * (n + 1))
+                    + 8L * work.length + 3 * 4L * itemSymbol.length + sealedBytes
+                    + completed.bytes() + leoTops.bytes();
+            long added = total - bytes;
+            bytes = total;
+            return added;
+        }
+
+        /**
+         * record the completion of X from origin to the current set, if new
+         */
+        private void complete(int x, int origin) {
+            long key = key(x, origin);
+            if (completed.add(key)) {
+                if (pending == work.length) {
+                    work = Arrays.copyOf(work, pending * 2);
+                }
+                work[pending++] = key;
+            }
+        }
+
+        /**
+         * X derives the symbols from origin to j - 1
+         */
+        private void process(int x, int origin, int j) {
+            // predicted rules A::=XC of the origin set now wait for C at j
+            int base = origin * words;
+            for (int r = grammar.leftOffsets[x]; r < grammar.leftOffsets[x + 1]; r++) {
+                int a = grammar.binaryLhs[r];
+                if ((predicted[base + (a >>> 6)] & (1L << a)) != 0) {
+                    addItem(grammar.binaryRight[r], a, origin);
+                    if (j < n) {
+                        orInto(predicted, j * words, closure, grammar.binaryRight[r] * words);
+                    }
+                }
+            }
+            // items of the origin set waiting for X complete their left-hand side
+            long top = leo ? leoTop(origin, x) : -1;
+            if (top >= 0) {
+                complete((int) (top >>> 32), (int) top);
+            } else if (waitSymbol[origin] != null) {
+                int[] symbols = waitSymbol[origin];
+                for (int i = firstWaiting(symbols, x); i < symbols.length && symbols[i] == x; i++) {
+                    complete(waitLhs[origin][i], waitOrigin[origin][i]);
+                }
+            }
+        }
+
+        private void addItem(int symbol, int lhs, int origin) {
+            if (items == itemSymbol.length) {
+                itemSymbol = Arrays.copyOf(itemSymbol, items * 2);
+                itemLhs = Arrays.copyOf(itemLhs, items * 2);
+                itemOrigin = Arrays.copyOf(itemOrigin, items * 2);
+            }
+            itemSymbol[items] = symbol;
+            itemLhs[items] = lhs;
+            itemOrigin[items] = origin;
+            items++;
+        }
+
+        /**
+         * keep the waiting items of set j sorted by awaited symbol
+         */
+        private void sealSet(int j) {
+            long[] order = new long[items];
+            for (int i = 0; i < items; i++) {
+                order[i] = key(itemSymbol[i], i);
+            }
+            Arrays.sort(order);
+            waitSymbol[j] = new int[items];
+            waitLhs[j] = new int[items];
+            waitOrigin[j] = new int[items];
+            sealedBytes += 3 * (16 + 4L * items);
+            for (int i = 0; i < items; i++) {
+                int item = (int) order[i];
+                waitSymbol[j][i] = itemSymbol[item];
+                waitLhs[j][i] = itemLhs[item];
+                waitOrigin[j][i] = itemOrigin[item];
+            }
+        }
+
+        /**
+         * the topmost item of the deterministic chain that starts with X
+         * completed at set i, as lhs and origin packed in a long, -1 if X at i
+         * is not deterministic. The chain is walked iteratively and every set
+         * on it memoized
+         */
+        private long leoTop(int i, int x) {
+            long[] chain = new long[8];
+            int length = 0;
+            long top = -1;
+            int set = i;
+            int symbol = x;
+            while (true) {
+                long memo = leoTops.get(key(symbol, set));
+                if (memo != LongMap.MISSING) {
+                    top = memo >= 0 ? memo : top;
+                    break;
+                }
+                long item = uniqueWaiting(set, symbol);
+                if (item < 0) {
+                    leoTops.put(key(symbol, set), -1);
+                    break;
+                }
+                if (length == chain.length) {
+                    chain = Arrays.copyOf(chain, length * 2);
+                }
+                chain[length++] = key(symbol, set);
+                top = item;
+                set = (int) item;
+                symbol = (int) (item >>> 32);
+            }
+            for (int c = 0; c < length; c++) {
+                leoTops.put(chain[c], top);
+            }
+            return top;
+        }
+
+        /**
+         * the only item of set i that uses X, if it is a waiting item
+         * A::=B•X, as lhs and origin; -1 if there are more or a predicted rule
+         * A::=XC of set i uses it too
+         */
+        private long uniqueWaiting(int i, int x) {
+            int[] symbols = waitSymbol[i];
+            if (symbols == null) {
+                return -1;
+            }
+            int first = firstWaiting(symbols, x);
+            if (first >= symbols.length || symbols[first] != x
+                    || (first + 1 < symbols.length && symbols[first + 1] == x)) {
+                return -1;
+            }
+            int base = i * words;
+            int parents = x * words;
+            for (int w = 0; w < words; w++) {
+                if ((predicted[base + w] & firstParents[parents + w]) != 0) {
+                    return -1;
+                }
+            }
+            return key(waitLhs[i][first], waitOrigin[i][first]);
+        }
+
+        private static int firstWaiting(int[] symbols, int x) {
+            int low = 0;
+            int high = symbols.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (symbols[mid] < x) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        private static long key(int symbol, int origin) {
+            return ((long) symbol << 32) | origin;
+        }
+
+        private void orInto(long[] target, int targetBase, long[] source, int sourceBase) {
+            for (int w = 0; w < words; w++) {
+                target[targetBase + w] |= source[sourceBase + w];
+            }
+        }
+    }
+
+    /**
+     * for every non-terminal A, the non-terminals that may start where A
+     * starts: A and, recursively, the first children of its rules
+     */
+    private static long[] predictionClosure(CompiledGrammar grammar) {
+        int n = grammar.nonTerminalCount();
+        int words = grammar.words;
+        long[] closure = new long[n * words];
+        for (int a = 0; a < n; a++) {
+            closure[a * words + (a >>> 6)] |= 1L << a;
+        }
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int b = 0; b < n; b++) {
+                for (int r = grammar.leftOffsets[b]; r < grammar.leftOffsets[b + 1]; r++) {
+                    int a = grammar.binaryLhs[r];   // A::=B C, so B starts where A starts
+                    for (int w = 0; w < words; w++) {
+                        long bits = closure[a * words + w] | closure[b * words + w];
+                        if (bits != closure[a * words + w]) {
+                            closure[a * words + w] = bits;
+                            changed = true;
+                        }
+                    }
+                }
+            }
+        }
+        return closure;
+    }
+
+    /**
+     * for every non-terminal X, the A with a rule A::=XC
+     */
+    private static long[] firstParents(CompiledGrammar grammar) {
+        int n = grammar.nonTerminalCount();
+        int words = grammar.words;
+        long[] parents = new long[n * words];
+        for (int x = 0; x < n; x++) {
+            for (int r = grammar.leftOffsets[x]; r < grammar.leftOffsets[x + 1]; r++) {
+                int a = grammar.binaryLhs[r];
+                parents[x * words + (a >>> 6)] |= 1L << a;
+            }
+        }
+        return parents;
+    }
+
+    /**
+     * open addressing set of non-negative longs
+     */
+    private static final class LongSet {
+
+        private long[] slots = new long[64];
+        private int size;
+
+        boolean add(long value) {
+            if (size * 2 >= slots.length) {
+                grow();
+            }
+            int slot = slotOf(value);
+            if (slots[slot] == value + 1) {
+                return false;
+            }
+            slots[slot] = value + 1;
+            size++;
+            return true;
+        }
+
+        boolean contains(long value) {
+            return slots[slotOf(value)] == value + 1;
+        }
+
+        int size() {
+            return size;
+        }
+
+        long bytes() {
+            return 16 + 8L * slots.length;
+        }
+
+        void clear() {
+            if (size > 0) {
+                Arrays.fill(slots, 0L);
+                size = 0;
+            }
+        }
+
+        private int slotOf(long value) {
+            int mask = slots.length - 1;
+            long h = (value + 1) * 0x9E3779B97F4A7C15L;
+            int slot = (int) (h >>> 40) & mask;
+            while (slots[slot] != 0 && slots[slot] != value + 1) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        private void grow() {
+            long[] old = slots;
+            slots = new long[old.length * 2];
+            for (long stored : old) {
+                if (stored != 0) {
+                    slots[slotOf(stored - 1)] = stored;
+                }
+            }
+        }
+    }
+
+    /**
+     * open addressing map from non-negative longs to longs
+     */
+    private static final class LongMap {
+
+        static final long MISSING = Long.MIN_VALUE;
+
+        private long[] keys = new long[64];
+        private long[] values = new long[64];
+        private int size;
+
+        long get(long key) {
+            int slot = slotOf(key);
+            return keys[slot] == key + 1 ? values[slot] : MISSING;
+        }
+
+        void put(long key, long value) {
+            if (size * 2 >= keys.length) {
+                grow();
+            }
+            int slot = slotOf(key);
+            if (keys[slot] != key + 1) {
+                keys[slot] = key + 1;
+                size++;
+            }
+            values[slot] = value;
+        }
+
+        long bytes() {
+            return 32 + 16L * keys.length;
+        }
+
+        private int slotOf(long key) {
+            int mask = keys.length - 1;
+            long h = (key + 1) * 0x9E3779B97F4A7C15L;
+            int slot = (int) (h >>> 40) & mask;
+            while (keys[slot] != 0 && keys[slot] != key + 1) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            long[] oldValues = values;
+            keys = new long[oldKeys.length * 2];
+            values = new long[oldKeys.length * 2];
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != 0) {
+                    int slot = slotOf(oldKeys[i] - 1);
+                    keys[slot] = oldKeys[i];
+                    values[slot] = oldValues[i];
+                }
+            }
+        }
+    }
+}
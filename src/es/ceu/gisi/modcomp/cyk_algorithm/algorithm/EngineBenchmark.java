@@ -0,0 +1,157 @@
+package es.ceu.gisi.modcomp.cyk_algorithm.algorithm;
+
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.exceptions.CYKAlgorithmException;
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.exceptions.ParseAbortedException;
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.interfaces.ParsingEngine;
+import java.io.PrintStream;
+import java.util.function.IntFunction;
+
+/**
+ * Compares the time of several engines on the same words of growing length.
+ * Run it with
+ * <pre>
+ * java -cp build/classes es.ceu.gisi.modcomp.cyk_algorithm.algorithm.EngineBenchmark [max length]
+ * </pre>
+ * to print, for a few grammars, the best time per word of every engine at
+ * lengths that double up to the maximum (1024 by default). The words are the
+ * longest of the language, so every engine does its whole work.
+ */
+public final class EngineBenchmark {
+
+    private EngineBenchmark() {
+    }
+
+    /**
+     * best time of a few parses of a word, after some to warm up
+     *
+     * @param engine an engine
+     * @param grammar compiled grammar
+     * @param tokens the word
+     * @param runs parses timed
+     * @return the best time of a parse, in nanoseconds
+     * @throws ParseAbortedException never, the parses have no limits
+     */
+    public static long time(ParsingEngine engine, CompiledGrammar grammar, int[] tokens, int runs)
+            throws ParseAbortedException {
+        ParseOptions options = new ParseOptions().interruptible(false);
+        long best = Long.MAX_VALUE;
+        for (int run = -Math.max(1, runs / 2); run < runs; run++) {
+            long start = System.nanoTime();
+            engine.isDerived(grammar, tokens, options);
+            if (run >= 0) {
+                best = Math.min(best, System.nanoTime() - start);
+            }
+        }
+        return best;
+    }
+
+    /**
+     * prints one row per length with the time of every engine, in
+     * microseconds
+     *
+     * @param out where to print
+     * @param title name of the grammar
+     * @param grammar compiled grammar
+     * @param word the word of every length, as terminal ids
+     * @param maxLength longest word
+     * @param engines engines to compare
+     * @throws ParseAbortedException never, the parses have no limits
+     */
+    public static void compare(PrintStream out, String title, CompiledGrammar grammar,
+            IntFunction<int[]> word, int maxLength, ParsingEngine... engines)
+            throws ParseAbortedException {
+        out.println(title);
+        StringBuilder header = new StringBuilder(String.format("%8s", "length"));
+        for (ParsingEngine engine : engines) {
+            header.append(String.format("%14s", engine.name()));
+        }
+        out.println(header);
+        for (int length = 8; length <= maxLength; length *= 2) {
+            int[] tokens = word.apply(length);
+            StringBuilder row = new StringBuilder(String.format("%8d", length));
+            for (ParsingEngine engine : engines) {
+                int runs = Math.max(3, 4096 / length);
+                row.append(String.format("%14.1f", time(engine, grammar, tokens, runs) / 1000.0));
+            }
+            out.println(row);
+        }
+        out.println();
+    }
+
+    public static void main(String[] args) throws CYKAlgorithmException, ParseAbortedException {
+        int maxLength = args.length > 0 ? Integer.parseInt(args[0]) : 1024;
+        ParsingEngine[] engines = {ChartEngine.SERIAL, ChartEngine.PARALLEL,
+            new EarleyEngine(false), new EarleyEngine(true)};
+
+        // a list: S::=AS|a, A::=a, unambiguous and right recursive
+        CYKAlgorithm list = new CYKAlgorithm();
+        list.addNonTerminal('S');
+        list.addNonTerminal('A');
+        list.addTerminal('a');
+        list.setStartSymbol('S');
+        list.addProduction('S', "AS");
+        list.addProduction('S', "a");
+        list.addProduction('A', "a");
+        compare(System.out, "a^n, right recursive", list.compile(), EngineBenchmark::ones, maxLength, engines);
+
+        // balanced brackets, a opens and b closes: S::=LR|LT|SS, T::=SR, L::=a, R::=b
+        CYKAlgorithm brackets = new CYKAlgorithm();
+        brackets.addNonTerminal('S');
+        brackets.addNonTerminal('T');
+        brackets.addNonTerminal('L');
+        brackets.addNonTerminal('R');
+        brackets.addTerminal('a');
+        brackets.addTerminal('b');
+        brackets.setStartSymbol('S');
+        brackets.addProduction('S', "LR");
+        brackets.addProduction('S', "LT");
+        brackets.addProduction('S', "SS");
+        brackets.addProduction('T', "SR");
+        brackets.addProduction('L', "a");
+        brackets.addProduction('R', "b");
+        compare(System.out, "balanced brackets, nested and concatenated", brackets.compile(),
+                EngineBenchmark::brackets, maxLength, engines);
+
+        // a^n b^n: S::=AB|AT, T::=SB, A::=a, B::=b, unambiguous and center recursive
+        CYKAlgorithm anbn = new CYKAlgorithm();
+        anbn.addNonTerminal('S');
+        anbn.addNonTerminal('T');
+        anbn.addNonTerminal('A');
+        anbn.addNonTerminal('B');
+        anbn.addTerminal('a');
+        anbn.addTerminal('b');
+        anbn.setStartSymbol('S');
+        anbn.addProduction('S', "AB");
+        anbn.addProduction('S', "AT");
+        anbn.addProduction('T', "SB");
+        anbn.addProduction('A', "a");
+        anbn.addProduction('B', "b");
+        compare(System.out, "a^n b^n, center recursive", anbn.compile(), EngineBenchmark::halves, maxLength, engines);
+    }
+
+    private static int[] ones(int length) {
+        return new int[length];
+    }
+
+    /**
+     * blocks of "aababb", cut to a balanced word
+     */
+    private static int[] brackets(int length) {
+        int[] block = {0, 0, 1, 0, 1, 1};
+        int[] word = new int[length - length % 2];
+        int depth = 0;
+        for (int i = 0; i < word.length; i++) {
+            word[i] = word.length - i <= depth ? 1 : block[i % block.length];
+            depth += word[i] == 0 ? 1 : -1;
+        }
+        return word;
+    }
+
+    private static int[] halves(int length) {
+        int[] word = new int[length];
+        for (int i = length / 2; i < length; i++) {
+            word[i] = 1;
+        }
+        return word;
+    }
+}
@@ -0,0 +1,207 @@
+package es.ceu.gisi.modcomp.cyk_algorithm.algorithm;
+
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.exceptions.CYKAlgorithmException;
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.exceptions.ParseAbortedException;
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.interfaces.ParsingEngine;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Engine that picks one of the {@link ChartEngine}s for every call:
+ * <ul>
+ * <li>RULES if the rule density of the grammar (binary rules per pair of
+ * non-terminals) is at most {@link #ruleDensityMax()}.</li>
+ * <li>PARALLEL if the estimated work of the word, about n³/6 splits times the
+ * rules per left symbol, is at least {@link #parallelMinWork()}.</li>
+ * <li>SERIAL otherwise.</li>
+ * </ul>
+ * The thresholds of {@link #calibrated()} come from a micro-benchmark run the
+ * first time it is called, on random grammars, which takes a fraction of a
+ * second; they can also be given explicitly.
+ */
+public final class EngineDispatcher implements ParsingEngine {
+
+    private static volatile EngineDispatcher calibrated;
+
+    private final long parallelMinWork;
+    private final double ruleDensityMax;
+    private final AtomicLongArray chosen = new AtomicLongArray(ChartEngine.values().length);
+
+    /**
+     * @param parallelMinWork smallest work filled in parallel,
+     * Long.MAX_VALUE to never do it
+     * @param ruleDensityMax highest rule density combined rule by rule, -1 to
+     * never do it
+     */
+    public EngineDispatcher(long parallelMinWork, double ruleDensityMax) {
+        this.parallelMinWork = parallelMinWork;
+        this.ruleDensityMax = ruleDensityMax;
+    }
+
+    /**
+     * @return dispatcher with the thresholds measured on this machine, shared
+     * by every caller
+     */
+    public static EngineDispatcher calibrated() {
+        EngineDispatcher dispatcher = calibrated;
+        if (dispatcher == null) {
+            synchronized (EngineDispatcher.class) {
+                dispatcher = calibrated;
+                if (dispatcher == null) {
+                    dispatcher = calibrate();
+                    calibrated = dispatcher;
+                }
+            }
+        }
+        return dispatcher;
+    }
+
+    @Override
+    public String name() {
+        return "DISPATCHER";
+    }
+
+    public long parallelMinWork() {
+        return parallelMinWork;
+    }
+
+    public double ruleDensityMax() {
+        return ruleDensityMax;
+    }
+
+    /**
+     * @param grammar compiled grammar
+     * @param length length of the word
+     * @return the engine used for a word of that length
+     */
+    public ChartEngine choose(CompiledGrammar grammar, int length) {
+        if (grammar.ruleDensity() <= ruleDensityMax) {
+            return ChartEngine.RULES;
+        }
+        if (work(grammar, length) >= parallelMinWork && Runtime.getRuntime().availableProcessors() > 1) {
+            return ChartEngine.PARALLEL;
+        }
+        return ChartEngine.SERIAL;
+    }
+
+    @Override
+    public boolean isDerived(CompiledGrammar grammar, int[] tokens, ParseOptions options)
+            throws ParseAbortedException {
+        ChartEngine engine = choose(grammar, tokens.length);
+        chosen.incrementAndGet(engine.ordinal());
+        return engine.isDerived(grammar, tokens, options);
+    }
+
+    /**
+     * @param engine an engine
+     * @return times the dispatcher chose it
+     */
+    public long chosen(ChartEngine engine) {
+        return chosen.get(engine.ordinal());
+    }
+
+    /**
+     * splits of the chart of a word times the rules tried for every symbol
+     * of a left cell
+     */
+    static long work(CompiledGrammar grammar, int length) {
+        long splits = (long) length * length * length / 6;
+        double rules = 1 + (double) grammar.binaryRuleCount() / Math.max(1, grammar.nonTerminalCount());
+        return (long) Math.min(Long.MAX_VALUE, splits * rules);
+    }
+
+    /**
+     * measure where PARALLEL starts to beat SERIAL, doubling the length of
+     * the word, and up to which density RULES beats SERIAL
+     */
+    private static EngineDispatcher calibrate() {
+        Random random = new Random(42);
+        long parallelMinWork = Long.MAX_VALUE;
+        if (Runtime.getRuntime().availableProcessors() > 1) {
+            CompiledGrammar grammar = randomGrammar(random, 16, 64);
+            for (int length = 16; length <= 128; length *= 2) {
+                int[] word = randomWord(random, grammar, length);
+                if (time(ChartEngine.PARALLEL, grammar, word) < time(ChartEngine.SERIAL, grammar, word)) {
+                    parallelMinWork = work(grammar, length);
+                    break;
+                }
+            }
+        }
+        double ruleDensityMax = -1;
+        for (int rules = 4; rules <= 1024; rules *= 4) {
+            CompiledGrammar grammar = randomGrammar(random, 32, rules);
+            int[] word = randomWord(random, grammar, 48);
+            if (time(ChartEngine.RULES, grammar, word) >= time(ChartEngine.SERIAL, grammar, word)) {
+                break;
+            }
+            ruleDensityMax = grammar.ruleDensity();
+        }
+        return new EngineDispatcher(parallelMinWork, ruleDensityMax);
+    }
+
+    /**
+     * best time of a few runs, after one to warm up
+     */
+    private static long time(ChartEngine engine, CompiledGrammar grammar, int[] word) {
+        long best = Long.MAX_VALUE;
+        ParseOptions options = new ParseOptions().interruptible(false);
+        for (int run = 0; run < 4; run++) {
+            long start = System.nanoTime();
+            try {
+                engine.isDerived(grammar, word, options);
+            } catch (ParseAbortedException e) {
+                throw new IllegalStateException(e);   // there are no limits
+            }
+            if (run > 0) {
+                best = Math.min(best, System.nanoTime() - start);
+            }
+        }
+        return best;
+    }
+
+    /**
+     * grammar with two terminals, each derived by a quarter of the
+     * non-terminals, and random binary rules
+     */
+    private static CompiledGrammar randomGrammar(Random random, int nonTerminals, int rules) {
+        CYKAlgorithm cyk = new CYKAlgorithm();
+        try {
+            for (int a = 0; a < nonTerminals; a++) {
+                cyk.addNonTerminal("N" + a);
+            }
+            cyk.addTerminal("a");
+            cyk.addTerminal("b");
+            cyk.setStartSymbol("N0");
+            for (int a = 0; a < nonTerminals; a++) {
+                if (random.nextInt(4) == 0) {
+                    cyk.addProduction("N" + a, "a");
+                }
+                if (random.nextInt(4) == 0) {
+                    cyk.addProduction("N" + a, "b");
+                }
+            }
+            Set<Integer> added = new HashSet<>();
+            while (added.size() < rules) {
+                int a = random.nextInt(nonTerminals);
+                int b = random.nextInt(nonTerminals);
+                int c = random.nextInt(nonTerminals);
+                if (added.add((a * nonTerminals + b) * nonTerminals + c)) {
+                    cyk.addProduction("N" + a, "N" + b, "N" + c);
+                }
+            }
+            return cyk.compile();
+        } catch (CYKAlgorithmException e) {
+            throw new IllegalStateException(e);   // the grammar is valid
+        }
+    }
+
+    private static int[] randomWord(Random random, CompiledGrammar grammar, int length) {
+        int[] word = new int[length];
+        for (int i = 0; i < length; i++) {
+            word[i] = random.nextInt(grammar.terminalCount());
+        }
+        return word;
+    }
+}
@@ -0,0 +1,87 @@
+package es.ceu.gisi.modcomp.cyk_algorithm.algorithm;
+
+/**
+ * Order independent content hash of a grammar. Every element (symbol, axiom
+ * or production) is hashed on its own with FNV-1a over the names and a
+ * SplitMix64 finalizer, and the hashes are added, so the result only depends
+ * on the set of elements. Names are hashed char by char, never through
+ * String.hashCode, so the value is stable between runs and JVMs.
+ */
+final class Fingerprint {
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private long sum;
+    private int nonTerminals;
+    private int terminals;
+
+    void nonTerminal(String name) {
+        sum += mix(hash(hash(FNV_OFFSET, 1), name));
+        nonTerminals++;
+    }
+
+    void terminal(String name) {
+        sum += mix(hash(hash(FNV_OFFSET, 2), name));
+        terminals++;
+    }
+
+    /**
+     * @param name name of the axiom, null if there is none
+     */
+    void start(String name) {
+        sum += mix(name == null ? hash(FNV_OFFSET, 3) : hash(hash(FNV_OFFSET, 3), name));
+    }
+
+    /**
+     * production lhs::=terminal
+     */
+    void production(String lhs, String terminal) {
+        sum += mix(hash(hash(hash(FNV_OFFSET, 4), lhs), terminal));
+    }
+
+    /**
+     * production lhs::=left right
+     */
+    void production(String lhs, String left, String right) {
+        sum += mix(hash(hash(hash(hash(FNV_OFFSET, 5), lhs), left), right));
+    }
+
+    /**
+     * @return the fingerprint, never 0
+     */
+    long value() {
+        long h = mix(sum ^ mix(nonTerminals * 31L + terminals));
+        return h != 0 ? h : 1;
+    }
+
+    /**
+     * FNV-1a of a value
+     */
+    private static long hash(long h, int value) {
+        for (int i = 0; i < 4; i++) {
+            h = (h ^ ((value >>> (i << 3)) & 0xFF)) * FNV_PRIME;
+        }
+        return h;
+    }
+
+    /**
+     * FNV-1a of a name, length first so that consecutive names can't be
+     * confused
+     */
+    private static long hash(long h, String name) {
+        h = hash(h, name.length());
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            h = (h ^ (c & 0xFF)) * FNV_PRIME;
+            h = (h ^ (c >>> 8)) * FNV_PRIME;
+        }
+        return h;
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,114 @@
+package es.ceu.gisi.modcomp.cyk_algorithm.algorithm;
+
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.exceptions.CYKAlgorithmException;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Directory of compiled grammars shared by the processes of a host. Every
+ * grammar is stored in the binary format of GrammarLoader, in a file named
+ * after its fingerprint, so a process that finds the file maps it instead of
+ * compiling the grammar again.
+ *
+ * Files are written to a temporary name and renamed, so readers never see a
+ * partial file, and a file whose content does not match its name is ignored
+ * and written again. Grammars already read are also kept in memory by each
+ * GrammarCache instance.
+ */
+public final class GrammarCache {
+
+    private static final String SUFFIX = ".cykg";
+
+    private final Path directory;
+    private final ConcurrentMap<Long, CompiledGrammar> loaded;
+
+    /**
+     * @param directory cache directory, created if it does not exist
+     * @throws IOException if the directory can't be created
+     */
+    public GrammarCache(Path directory) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.loaded = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * @param fingerprint grammar fingerprint
+     * @return file of the grammar in the cache, it may not exist
+     */
+    public Path path(long fingerprint) {
+        return directory.resolve(String.format("%016x%s", fingerprint, SUFFIX));
+    }
+
+    /**
+     * Returns the compiled tables of the grammar of the algorithm, mapping
+     * them from the cache if another process already compiled it, or else
+     * compiling the grammar and storing it. The symbol ids of a grammar read
+     * from the cache may differ from those of the algorithm: use the returned
+     * grammar (terminalId, CYKAlgorithm(CompiledGrammar)) to translate them.
+     *
+     * @param cyk algorithm with a complete grammar
+     * @return compiled grammar with the fingerprint of cyk
+     * @throws IOException if the cache can't be read or written
+     * @throws CYKAlgorithmException if the grammar is empty or has no axiom
+     */
+    public CompiledGrammar compile(CYKAlgorithm cyk) throws IOException, CYKAlgorithmException {
+        CompiledGrammar grammar = get(cyk.fingerprint());
+        if (grammar == null) {
+            grammar = cyk.compile();
+            put(grammar);
+        }
+        return grammar;
+    }
+
+    /**
+     * @param fingerprint grammar fingerprint
+     * @return the grammar stored under the fingerprint, null if it is not in
+     * the cache or its file is damaged
+     * @throws IOException if the file exists but can't be read
+     */
+    public CompiledGrammar get(long fingerprint) throws IOException {
+        CompiledGrammar grammar = loaded.get(fingerprint);
+        if (grammar != null) {
+            return grammar;
+        }
+        try {
+            grammar = GrammarLoader.readCompiled(path(fingerprint));
+        } catch (NoSuchFileException | CYKAlgorithmException e) {
+            return null;
+        }
+        if (grammar.fingerprint() != fingerprint) {
+            return null;
+        }
+        CompiledGrammar previous = loaded.putIfAbsent(fingerprint, grammar);
+        return previous != null ? previous : grammar;
+    }
+
+    /**
+     * Stores a compiled grammar under its fingerprint, replacing the file if
+     * it exists.
+     *
+     * @param grammar compiled grammar
+     * @throws IOException if the file can't be written
+     */
+    public void put(CompiledGrammar grammar) throws IOException {
+        Path file = path(grammar.fingerprint());
+        Path temp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        try {
+            GrammarLoader.writeCompiled(grammar, temp);
+            try {
+                Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        loaded.put(grammar.fingerprint(), grammar);
+    }
+}
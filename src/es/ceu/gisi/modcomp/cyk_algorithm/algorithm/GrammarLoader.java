@@ -0,0 +1,398 @@
+package es.ceu.gisi.modcomp.cyk_algorithm.algorithm;
+
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.exceptions.CYKAlgorithmException;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Bulk loading of grammars, in two formats:
+ * <ul>
+ * <li>Text, the same one getGrammar() prints: an optional header
+ * "G=({a,b},{S,A},S,P)", optional "P={" and "}" lines and one
+ * "S::=AB|a" line per non-terminal. Without header the left-hand sides are the
+ * non-terminals, every other symbol is a terminal and the first left-hand side
+ * is the axiom. Alternatives with spaces are split at them, like
+ * getProductions(String) prints them; otherwise they are split into one-char
+ * symbols when every char is a declared name and taken as a single symbol if
+ * not. The whole file is parsed in a single pass with hashed lookups.</li>
+ * <li>Binary, a dump of the tables of a CompiledGrammar, including the indexes
+ * of its binary rules, that is read through a memory mapping and bulk copied
+ * into the compiled tables, with no parsing or index building at startup;
+ * the tables are only checked with linear scans.</li>
+ * </ul>
+ */
+public final class GrammarLoader {
+
+    private static final int MAGIC = 0x474B5943;   // "CYKG"
+    private static final int VERSION = 2;
+    private static final int HEADER_BYTES = 32;
+
+    private GrammarLoader() {
+    }
+
+    /**
+     * Loads a text grammar file, replacing the grammar of the algorithm.
+     *
+     * @param path UTF-8 text file in getGrammar() format
+     * @param cyk algorithm that receives the grammar
+     * @throws IOException if the file can't be read
+     * @throws CYKAlgorithmException if the file is malformed or the grammar is
+     * not valid
+     */
+    public static void load(Path path, CYKAlgorithm cyk) throws IOException, CYKAlgorithmException {
+        try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            load(reader, cyk);
+        }
+    }
+
+    /**
+     * Loads a text grammar, replacing the grammar of the algorithm.
+     *
+     * @param reader grammar in getGrammar() format
+     * @param cyk algorithm that receives the grammar
+     * @throws IOException if the reader fails
+     * @throws CYKAlgorithmException if the text is malformed or the grammar is
+     * not valid
+     */
+    public static void load(Reader reader, CYKAlgorithm cyk) throws IOException, CYKAlgorithmException {
+        BufferedReader in = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+        String header = null;
+        List<String> lines = new ArrayList<>();
+        String line;
+        while ((line = in.readLine()) != null) {
+            line = line.trim();
+            if (line.isEmpty() || line.equals("P={") || line.equals("}")) {
+                continue;
+            }
+            if (line.startsWith("G=(") && header == null && lines.isEmpty()) {
+                header = line;
+            } else if (line.indexOf("::=") > 0) {
+                lines.add(line);
+            } else {
+                throw new CYKAlgorithmException();
+            }
+        }
+
+        cyk.removeGrammar();
+        SymbolTable known = new SymbolTable();
+        String start = null;
+        if (header != null) {
+            start = declareHeader(header, cyk, known);
+        } else {
+            for (String production : lines) {   // every left-hand side is a non-terminal
+                String lhs = production.substring(0, production.indexOf("::="));
+                if (!known.contains(lhs)) {
+                    cyk.addNonTerminal(lhs);
+                    known.intern(lhs);
+                }
+                if (start == null) {
+                    start = lhs;
+                }
+            }
+        }
+
+        for (String production : lines) {
+            int separator = production.indexOf("::=");
+            String lhs = production.substring(0, separator);
+            for (String alternative : split(production.substring(separator + 3), '|')) {
+                String[] symbols = symbols(alternative, known);
+                if (header == null) {   // anything that is not a left-hand side is a terminal
+                    for (String symbol : symbols) {
+                        if (!known.contains(symbol)) {
+                            cyk.addTerminal(symbol);
+                            known.intern(symbol);
+                        }
+                    }
+                }
+                cyk.addProduction(lhs, symbols);
+            }
+        }
+        if (start != null) {
+            cyk.setStartSymbol(start);
+        }
+    }
+
+    /**
+     * declare the terminals and non-terminals of a "G=({a,b},{S,A},S,P)" header
+     *
+     * @return the axiom or null if the header says "null"
+     */
+    private static String declareHeader(String header, CYKAlgorithm cyk, SymbolTable known) throws CYKAlgorithmException {
+        int t0 = header.indexOf('{');
+        int t1 = header.indexOf('}', t0);
+        int n0 = header.indexOf('{', t1);
+        int n1 = header.indexOf('}', n0);
+        if (t0 != 3 || t1 < 0 || n0 != t1 + 2 || n1 < 0 || !header.endsWith(",P)") || n1 + 2 > header.length() - 3
+                || header.charAt(n1 + 1) != ',') {
+            throw new CYKAlgorithmException();
+        }
+        for (String terminal : split(header.substring(t0 + 1, t1), ',')) {
+            if (!terminal.isEmpty()) {
+                cyk.addTerminal(terminal);
+                known.intern(terminal);
+            }
+        }
+        for (String nonterminal : split(header.substring(n0 + 1, n1), ',')) {
+            if (!nonterminal.isEmpty()) {
+                cyk.addNonTerminal(nonterminal);
+                known.intern(nonterminal);
+            }
+        }
+        String start = header.substring(n1 + 2, header.length() - 3);
+        return start.equals("null") ? null : start;
+    }
+
+    /**
+     * symbols of an alternative: separated by spaces, one symbol per char when
+     * every char is a declared name, or else a single symbol
+     */
+    private static String[] symbols(String alternative, SymbolTable known) throws CYKAlgorithmException {
+        String trimmed = alternative.trim();
+        if (trimmed.isEmpty()) {
+            throw new CYKAlgorithmException();
+        }
+        for (int i = 0; i < trimmed.length(); i++) {
+            if (Character.isWhitespace(trimmed.charAt(i))) {
+                return trimmed.split("\\s+");
+            }
+        }
+        if (known.contains(trimmed)) {
+            return new String[]{trimmed};
+        }
+        String[] symbols = new String[trimmed.length()];
+        for (int i = 0; i < symbols.length; i++) {
+            if (!known.contains(trimmed.charAt(i))) {
+                return new String[]{trimmed};
+            }
+            symbols[i] = String.valueOf(trimmed.charAt(i));
+        }
+        return symbols;
+    }
+
+    private static List<String> split(String s, char separator) {
+        List<String> parts = new ArrayList<>();
+        int from = 0;
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) == separator) {
+                parts.add(s.substring(from, i));
+                from = i + 1;
+            }
+        }
+        parts.add(s.substring(from));
+        return parts;
+    }
+
+    /**
+     * Writes the tables of a compiled grammar in the binary format read by
+     * {@link #readCompiled(Path)}.
+     *
+     * @param grammar compiled grammar, see CYKAlgorithm.compile()
+     * @param path destination file, replaced if it exists
+     * @throws IOException if the file can't be written
+     */
+    public static void writeCompiled(CompiledGrammar grammar, Path path) throws IOException {
+        ByteBuffer buffer = toBytes(grammar);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    /**
+     * Maps a binary grammar file and returns its tables as a CompiledGrammar.
+     *
+     * @param path file written by {@link #writeCompiled}
+     * @return the compiled grammar, ready for CYKAlgorithm(CompiledGrammar)
+     * @throws IOException if the file can't be read
+     * @throws CYKAlgorithmException if the file is not a compiled grammar
+     */
+    public static CompiledGrammar readCompiled(Path path) throws IOException, CYKAlgorithmException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return fromBytes(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * layout, little endian: magic, version, non-terminal count, terminal
+     * count, axiom, binary rule count, left symbol count, pair slot count,
+     * terminal sets and pair keys (longs), left offsets, binary right symbols,
+     * binary left-hand sides, left symbols, pair starts, pair ends and pair
+     * left-hand sides (ints), and the names as length prefixed UTF-8
+     */
+    static ByteBuffer toBytes(CompiledGrammar grammar) {
+        byte[][] names = new byte[grammar.nonTerminalCount() + grammar.terminalCount()][];
+        int size = HEADER_BYTES + (grammar.terminalSets.length + grammar.pairKeys.length) * Long.BYTES
+                + (grammar.leftOffsets.length + 3 * grammar.binaryRuleCount() + grammar.ruleLefts.length
+                + 2 * grammar.pairKeys.length) * Integer.BYTES;
+        for (int i = 0; i < names.length; i++) {
+            String name = i < grammar.nonTerminalCount() ? grammar.nonTerminalName(i)
+                    : grammar.terminalName(i - grammar.nonTerminalCount());
+            names[i] = name.getBytes(StandardCharsets.UTF_8);
+            size += Integer.BYTES + names[i].length;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(grammar.nonTerminalCount()).putInt(grammar.terminalCount())
+                .putInt(grammar.startSymbol()).putInt(grammar.binaryRuleCount()).putInt(grammar.ruleLefts.length)
+                .putInt(grammar.pairKeys.length);
+        for (long[] table : new long[][]{grammar.terminalSets, grammar.pairKeys}) {
+            buffer.asLongBuffer().put(table);
+            buffer.position(buffer.position() + table.length * Long.BYTES);
+        }
+        for (int[] table : new int[][]{grammar.leftOffsets, grammar.binaryRight, grammar.binaryLhs, grammar.ruleLefts,
+            grammar.pairFrom, grammar.pairTo, grammar.pairLhs}) {
+            buffer.asIntBuffer().put(table);
+            buffer.position(buffer.position() + table.length * Integer.BYTES);
+        }
+        for (byte[] name : names) {
+            buffer.putInt(name.length).put(name);
+        }
+        return buffer.flip();
+    }
+
+    /**
+     * reject tables that would index out of the charts later: left offsets
+     * that are not a CSR from 0 to the rule count, symbols that are not
+     * non-terminals and bits beyond the last non-terminal in the sets. The
+     * indexes must list exactly the left symbols with rules, in id order, and
+     * every pair key must be reachable from its first slot, with its rules
+     * inside the rules of its left symbol and no rule in two pairs
+     */
+    private static void checkTables(int n, long[] terminalSets, int[] leftOffsets, int[] binaryRight,
+            int[] binaryLhs, int[] ruleLefts, long[] pairKeys, int[] pairFrom, int[] pairTo, int[] pairLhs)
+            throws CYKAlgorithmException {
+        if (leftOffsets[0] != 0 || leftOffsets[n] != binaryRight.length) {
+            throw new CYKAlgorithmException();
+        }
+        for (int b = 0; b < n; b++) {
+            if (leftOffsets[b] > leftOffsets[b + 1]) {
+                throw new CYKAlgorithmException();
+            }
+        }
+        for (int r = 0; r < binaryRight.length; r++) {
+            if (binaryRight[r] < 0 || binaryRight[r] >= n || binaryLhs[r] < 0 || binaryLhs[r] >= n) {
+                throw new CYKAlgorithmException();
+            }
+        }
+        int words = (n + 63) >>> 6;
+        long beyond = (n & 63) == 0 ? 0 : -1L << (n & 63);
+        for (int w = words - 1; w < terminalSets.length; w += words) {
+            if ((terminalSets[w] & beyond) != 0) {
+                throw new CYKAlgorithmException();
+            }
+        }
+
+        int lefts = 0;
+        for (int b = 0; b < n; b++) {
+            if (leftOffsets[b] < leftOffsets[b + 1]) {
+                if (lefts == ruleLefts.length || ruleLefts[lefts] != b) {
+                    throw new CYKAlgorithmException();
+                }
+                lefts++;
+            }
+        }
+        if (lefts != ruleLefts.length) {
+            throw new CYKAlgorithmException();
+        }
+
+        int slots = pairKeys.length;
+        boolean[] indexed = new boolean[binaryRight.length];
+        int covered = 0;
+        boolean empty = false;
+        for (int slot = 0; slot < slots; slot++) {
+            long key = pairKeys[slot];
+            if (key == -1L) {
+                empty = true;
+                continue;
+            }
+            if (key < 0 || key >= (long) n * n) {
+                throw new CYKAlgorithmException();
+            }
+            int b = (int) (key / n);
+            if (pairFrom[slot] < leftOffsets[b] || pairFrom[slot] >= pairTo[slot] || pairTo[slot] > leftOffsets[b + 1]) {
+                throw new CYKAlgorithmException();
+            }
+            for (int r = pairFrom[slot]; r < pairTo[slot]; r++) {
+                if (indexed[r] || pairLhs[r] < 0 || pairLhs[r] >= n) {
+                    throw new CYKAlgorithmException();
+                }
+                indexed[r] = true;
+            }
+            covered += pairTo[slot] - pairFrom[slot];
+            for (int probe = CompiledGrammar.pairHash(key, slots); probe != slot; probe = (probe + 1) & (slots - 1)) {
+                if (pairKeys[probe] == -1L) {   // lookups would stop here and miss the pair
+                    throw new CYKAlgorithmException();
+                }
+            }
+        }
+        if (!empty || covered != binaryRight.length) {   // an empty slot ends the lookups of missing pairs
+            throw new CYKAlgorithmException();
+        }
+    }
+
+    static CompiledGrammar fromBytes(ByteBuffer bytes) throws CYKAlgorithmException {
+        ByteBuffer buffer = bytes.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        try {
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                throw new CYKAlgorithmException();
+            }
+            int n = buffer.getInt();
+            int t = buffer.getInt();
+            int start = buffer.getInt();
+            int rules = buffer.getInt();
+            int lefts = buffer.getInt();
+            int slots = buffer.getInt();
+            int words = (n + 63) >>> 6;
+            if (n <= 0 || t <= 0 || rules < 0 || start < 0 || start >= n || lefts < 0 || lefts > n
+                    || slots < 2 || Integer.bitCount(slots) != 1
+                    || ((long) t * words + slots) * Long.BYTES
+                    + (n + 1 + 3L * rules + lefts + 2L * slots) * Integer.BYTES > buffer.remaining()) {
+                throw new CYKAlgorithmException();
+            }
+
+            long[][] longTables = {new long[t * words], new long[slots]};
+            for (long[] table : longTables) {
+                buffer.asLongBuffer().get(table);
+                buffer.position(buffer.position() + table.length * Long.BYTES);
+            }
+            int[][] tables = {new int[n + 1], new int[rules], new int[rules], new int[lefts], new int[slots],
+                new int[slots], new int[rules]};
+            for (int[] table : tables) {
+                buffer.asIntBuffer().get(table);
+                buffer.position(buffer.position() + table.length * Integer.BYTES);
+            }
+            long[] terminalSets = longTables[0];
+            checkTables(n, terminalSets, tables[0], tables[1], tables[2], tables[3], longTables[1], tables[4],
+                    tables[5], tables[6]);
+
+            String[] nonTerminalNames = new String[n];
+            String[] terminalNames = new String[t];
+            for (int i = 0; i < n + t; i++) {
+                byte[] name = new byte[buffer.getInt()];
+                buffer.get(name);
+                if (i < n) {
+                    nonTerminalNames[i] = new String(name, StandardCharsets.UTF_8);
+                } else {
+                    terminalNames[i - n] = new String(name, StandardCharsets.UTF_8);
+                }
+            }
+            return new CompiledGrammar(nonTerminalNames, terminalNames, start, terminalSets, tables[0], tables[1],
+                    tables[2], tables[3], longTables[1], tables[4], tables[5], tables[6]);
+        } catch (BufferUnderflowException | NegativeArraySizeException e) {
+            throw new CYKAlgorithmException();
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package es.ceu.gisi.modcomp.cyk_algorithm.algorithm;
+
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Tests a word against several grammars with a single chart fill.
+ *
+ * The compiled grammars are merged into one: the non-terminals of every
+ * grammar get their own range of ids, so the grammars can't interfere, and
+ * terminals with the same name are shared, so the first row of the chart is
+ * built once. After the fill, the axiom of each grammar is looked up in the
+ * top cell. Besides sharing the word, the fill walks the cells once and
+ * combines all the grammars with the same bitset operations instead of
+ * repeating the triangle for every grammar.
+ *
+ * A matcher reuses its chart, so it is not thread safe; use one per thread,
+ * created with {@link #GrammarMatcher(GrammarMatcher)} to share the merged
+ * grammar.
+ */
+public final class GrammarMatcher {
+
+    private final CompiledGrammar merged;
+    private final int[] startSymbols;
+    private final Chart chart;
+
+    /**
+     * @param grammars compiled grammars, at least one
+     */
+    public GrammarMatcher(List<CompiledGrammar> grammars) {
+        this(merge(grammars), startSymbols(grammars));
+    }
+
+    /**
+     * Matcher over the same grammars as another one, sharing its merged
+     * grammar, for use in another thread.
+     *
+     * @param other matcher to copy
+     */
+    public GrammarMatcher(GrammarMatcher other) {
+        this(other.merged, other.startSymbols);
+    }
+
+    private GrammarMatcher(CompiledGrammar merged, int[] startSymbols) {
+        this.merged = merged;
+        this.startSymbols = startSymbols;
+        this.chart = new Chart(merged);
+    }
+
+    /**
+     * merged ids of the axioms, -1 for grammars without axiom
+     */
+    private static int[] startSymbols(List<CompiledGrammar> grammars) {
+        int[] starts = new int[grammars.size()];
+        int base = 0;
+        for (int g = 0; g < starts.length; g++) {
+            CompiledGrammar grammar = grammars.get(g);
+            starts[g] = grammar.startSymbol() < 0 ? -1 : base + grammar.startSymbol();
+            base += grammar.nonTerminalCount();
+        }
+        return starts;
+    }
+
+    /**
+     * disjoint union of the non-terminals and productions, union of the
+     * terminals by name
+     */
+    private static CompiledGrammar merge(List<CompiledGrammar> grammars) {
+        if (grammars.isEmpty()) {
+            throw new IllegalArgumentException("no grammars");
+        }
+        SymbolTable terminals = new SymbolTable();
+        int n = 0;
+        int rules = 0;
+        for (CompiledGrammar grammar : grammars) {
+            for (int t = 0; t < grammar.terminalCount(); t++) {
+                terminals.intern(grammar.terminalName(t));
+            }
+            n += grammar.nonTerminalCount();
+            rules += grammar.binaryRuleCount();
+        }
+
+        int words = (n + 63) >>> 6;
+        String[] nonTerminalNames = new String[n];
+        long[] terminalSets = new long[terminals.size() * words];
+        int[] leftOffsets = new int[n + 1];
+        int[] binaryRight = new int[rules];
+        int[] binaryLhs = new int[rules];
+        int base = 0;
+        int r = 0;
+        for (int g = 0; g < grammars.size(); g++) {
+            CompiledGrammar grammar = grammars.get(g);
+            for (int a = 0; a < grammar.nonTerminalCount(); a++) {
+                nonTerminalNames[base + a] = grammar.nonTerminalName(a) + "#" + g;
+            }
+            for (int t = 0; t < grammar.terminalCount(); t++) {
+                int merged = terminals.idOf(grammar.terminalName(t));
+                for (int a = Chart.nextSetBit(grammar.terminalSets, t * grammar.words, grammar.words, 0); a >= 0;
+                        a = Chart.nextSetBit(grammar.terminalSets, t * grammar.words, grammar.words, a + 1)) {
+                    terminalSets[merged * words + ((base + a) >>> 6)] |= 1L << (base + a);
+                }
+            }
+            for (int b = 0; b < grammar.nonTerminalCount(); b++) {   // rules stay grouped by left symbol
+                leftOffsets[base + b] = r;
+                for (int i = grammar.leftOffsets[b]; i < grammar.leftOffsets[b + 1]; i++, r++) {
+                    binaryRight[r] = base + grammar.binaryRight[i];
+                    binaryLhs[r] = base + grammar.binaryLhs[i];
+                }
+            }
+            base += grammar.nonTerminalCount();
+        }
+        leftOffsets[n] = r;
+
+        String[] terminalNames = new String[terminals.size()];
+        for (int t = 0; t < terminalNames.length; t++) {
+            terminalNames[t] = terminals.nameOf(t);
+        }
+        return CompiledGrammar.build(nonTerminalNames, terminalNames, -1, terminalSets, leftOffsets, binaryRight,
+                binaryLhs);
+    }
+
+    /**
+     * @return the merged grammar; non-terminal names get a "#index" suffix
+     * with the position of their grammar
+     */
+    public CompiledGrammar merged() {
+        return merged;
+    }
+
+    public int grammarCount() {
+        return startSymbols.length;
+    }
+
+    /**
+     * @param name terminal name
+     * @return its id in the merged grammar, -1 if no grammar has it
+     */
+    public int terminalId(String name) {
+        return merged.terminalId(name);
+    }
+
+    /**
+     * @param tokens terminal ids of the merged grammar, see
+     * {@link #terminalId(String)}
+     * @return the positions (in the list given to the constructor) of the
+     * grammars that derive the tokens
+     */
+    public BitSet match(int[] tokens) {
+        BitSet matches = new BitSet(startSymbols.length);
+        for (int token : tokens) {
+            if (token < 0 || token >= merged.terminalCount()) {
+                throw new IllegalArgumentException("not a terminal: " + token);
+            }
+        }
+        if (tokens.length == 0) {
+            return matches;
+        }
+        chart.fill(tokens, tokens.length);
+        for (int g = 0; g < startSymbols.length; g++) {
+            if (startSymbols[g] >= 0 && chart.contains(tokens.length - 1, 0, startSymbols[g])) {
+                matches.set(g);
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * @param word word of one-char terminals
+     * @return the positions of the grammars that derive the word; none if it
+     * has a char that is not a terminal of any grammar
+     */
+    public BitSet match(String word) {
+        int[] tokens = new int[word.length()];
+        for (int i = 0; i < tokens.length; i++) {
+            tokens[i] = merged.terminalId(word.charAt(i));
+            if (tokens[i] < 0) {
+                return new BitSet(startSymbols.length);
+            }
+        }
+        return match(tokens);
+    }
+}
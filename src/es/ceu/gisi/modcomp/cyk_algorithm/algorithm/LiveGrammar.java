@@ -0,0 +1,150 @@
+package es.ceu.gisi.modcomp.cyk_algorithm.algorithm;
+
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.exceptions.CYKAlgorithmException;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The grammar currently in use by a service, replaceable while other threads
+ * parse with it.
+ *
+ * A new grammar is built and compiled aside, in a CYKAlgorithm of its own,
+ * and then published with a single atomic swap of a reference to an immutable
+ * CompiledGrammar (copy on write). Every call reads the reference once, so a
+ * parse that started before a swap finishes on the old grammar and the calls
+ * made after it see the new one; readers never take a lock and never see a
+ * grammar half built.
+ *
+ * Every thread keeps a Chart of its own, rebuilt when it sees a new version.
+ */
+public final class LiveGrammar {
+
+    /**
+     * a grammar and the number of times the grammar was published before it
+     */
+    private static final class Version {
+
+        private final CompiledGrammar grammar;
+        private final long number;
+
+        private Version(CompiledGrammar grammar, long number) {
+            this.grammar = grammar;
+            this.number = number;
+        }
+    }
+
+    private final AtomicReference<Version> current;
+    private final ThreadLocal<Chart> charts = new ThreadLocal<>();
+
+    /**
+     * @param grammar first version of the grammar
+     */
+    public LiveGrammar(CompiledGrammar grammar) {
+        this.current = new AtomicReference<>(new Version(grammar, 0));
+    }
+
+    /**
+     * @return the grammar used by the calls made now
+     */
+    public CompiledGrammar current() {
+        return current.get().grammar;
+    }
+
+    /**
+     * @return number of grammars published after the first one
+     */
+    public long version() {
+        return current.get().number;
+    }
+
+    /**
+     * Makes a grammar the current one.
+     *
+     * @param grammar new version of the grammar
+     * @return the previous version
+     */
+    public CompiledGrammar publish(CompiledGrammar grammar) {
+        Version previous;
+        do {
+            previous = current.get();
+        } while (!current.compareAndSet(previous, new Version(grammar, previous.number + 1)));
+        return previous.grammar;
+    }
+
+    /**
+     * Compiles a grammar and makes it the current one. Later changes to the
+     * CYKAlgorithm do not affect the published version.
+     *
+     * @param grammar new version of the grammar
+     * @return the previous version
+     * @throws CYKAlgorithmException if the grammar is empty or has no axiom;
+     * the current version does not change
+     */
+    public CompiledGrammar publish(CYKAlgorithm grammar) throws CYKAlgorithmException {
+        return publish(grammar.compile());
+    }
+
+    /**
+     * Makes a grammar the current one only if no other was published since
+     * {@code expected} was read, to apply an update computed from it.
+     *
+     * @param expected the version the update was computed from
+     * @param grammar new version of the grammar
+     * @return true if it was published
+     */
+    public boolean compareAndPublish(CompiledGrammar expected, CompiledGrammar grammar) {
+        Version previous = current.get();
+        return previous.grammar == expected
+                && current.compareAndSet(previous, new Version(grammar, previous.number + 1));
+    }
+
+    /**
+     * Checks a word of one-char terminals with the current grammar.
+     *
+     * @param word the word
+     * @return true if the axiom of the current grammar derives it; false if it
+     * has a char that is not one of its terminals
+     */
+    public boolean isDerived(String word) {
+        CompiledGrammar grammar = current();
+        int[] tokens = new int[word.length()];
+        for (int i = 0; i < tokens.length; i++) {
+            tokens[i] = grammar.terminalId(word.charAt(i));
+            if (tokens[i] < 0) {
+                return false;
+            }
+        }
+        return isDerived(grammar, tokens);
+    }
+
+    /**
+     * Checks a sequence of terminals, by name, with the current grammar.
+     *
+     * @param terminals names of the terminals
+     * @return true if the axiom of the current grammar derives them; false
+     * if one of them is not a terminal of it
+     */
+    public boolean isDerived(String[] terminals) {
+        CompiledGrammar grammar = current();
+        int[] tokens = new int[terminals.length];
+        for (int i = 0; i < tokens.length; i++) {
+            tokens[i] = grammar.terminalId(terminals[i]);
+            if (tokens[i] < 0) {
+                return false;
+            }
+        }
+        return isDerived(grammar, tokens);
+    }
+
+    private boolean isDerived(CompiledGrammar grammar, int[] tokens) {
+        if (tokens.length == 0 || grammar.filter().check(tokens) != null) {
+            return false;
+        }
+        Chart chart = charts.get();
+        if (chart == null || chart.grammar() != grammar) {
+            chart = new Chart(grammar);
+            charts.set(chart);
+        }
+        chart.fill(tokens, tokens.length);
+        return chart.isDerived();
+    }
+}
@@ -0,0 +1,467 @@
+package es.ceu.gisi.modcomp.cyk_algorithm.algorithm;
+
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.exceptions.ParseAbortedException;
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.interfaces.ChartView;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * CYK chart stored outside the Java heap, for words so long that the chart
+ * takes gigabytes. It has the layout of {@link Chart} (row by row, a bitset of
+ * {@link CompiledGrammar#words()} longs per cell) split in segments of at
+ * most 1 GiB, so its size is not limited by the 2 GiB of an array or a
+ * buffer.
+ *
+ * The segments are direct buffers while the chart fits in
+ * {@code maxDirectBytes}; a bigger chart, or one that can't get direct memory,
+ * is kept in a temporary file mapped in memory, which the operating system
+ * pages to disk when it does not fit in RAM. Either way the garbage collector
+ * never scans or copies the cells. The memory is released as soon as the
+ * chart is closed, and the temporary file is deleted.
+ *
+ * Like Chart, the storage only grows between fills. A chart is not thread
+ * safe; use one per thread.
+ */
+public final class OffHeapChart implements ChartView, AutoCloseable {
+
+    private static final int SEGMENT_SHIFT = 27;
+    private static final long SEGMENT_LONGS = 1L << SEGMENT_SHIFT;
+    private static final long SEGMENT_MASK = SEGMENT_LONGS - 1;
+    private static final Method INVOKE_CLEANER;
+    private static final Object UNSAFE;
+
+    static {
+        Method invokeCleaner = null;
+        Object unsafe = null;
+        try {   // sun.misc.Unsafe from jdk.unsupported, looked up so the class still works without it
+            Class<?> type = Class.forName("sun.misc.Unsafe");
+            Field field = type.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            unsafe = field.get(null);
+            invokeCleaner = type.getMethod("invokeCleaner", ByteBuffer.class);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            invokeCleaner = null;
+        }
+        INVOKE_CLEANER = invokeCleaner;
+        UNSAFE = unsafe;
+    }
+
+    private final CompiledGrammar grammar;
+    private final int words;
+    private final long maxDirectBytes;
+    private final Path spillDirectory;
+    private ByteBuffer[] buffers;
+    private LongBuffer[] segments;
+    private long capacity;
+    private long dirty;
+    private FileChannel file;
+    private int[] tokens;
+    private int length;
+    private long ruleDrivenSplits;
+    private boolean closed;
+
+    /**
+     * Chart in direct memory up to half the maximum heap, and in a temporary
+     * file of java.io.tmpdir beyond that.
+     *
+     * @param grammar compiled grammar
+     */
+    public OffHeapChart(CompiledGrammar grammar) {
+        this(grammar, Runtime.getRuntime().maxMemory() / 2, Path.of(System.getProperty("java.io.tmpdir")));
+    }
+
+    /**
+     * @param grammar compiled grammar
+     * @param maxDirectBytes biggest chart kept in direct memory, 0 to always
+     * use a mapped file
+     * @param spillDirectory directory of the temporary file of the charts
+     * bigger than maxDirectBytes
+     */
+    public OffHeapChart(CompiledGrammar grammar, long maxDirectBytes, Path spillDirectory) {
+        if (maxDirectBytes < 0) {
+            throw new IllegalArgumentException();
+        }
+        this.grammar = grammar;
+        this.words = grammar.words();
+        this.maxDirectBytes = maxDirectBytes;
+        this.spillDirectory = spillDirectory;
+        this.buffers = new ByteBuffer[0];
+        this.segments = new LongBuffer[0];
+        this.tokens = new int[0];
+    }
+
+    public CompiledGrammar grammar() {
+        return grammar;
+    }
+
+    /**
+     * @return true if the cells are in a mapped temporary file, false if they
+     * are in direct memory or nothing was filled yet
+     */
+    public boolean isMapped() {
+        return file != null;
+    }
+
+    /**
+     * @return bytes of storage reserved by the chart
+     */
+    public long capacityBytes() {
+        return capacity * Long.BYTES;
+    }
+
+    /**
+     * @return length of the last word filled
+     */
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public int nonTerminalCount() {
+        return grammar.nonTerminalCount();
+    }
+
+    @Override
+    public String nonTerminalName(int nonterminal) {
+        return grammar.nonTerminalName(nonterminal);
+    }
+
+    @Override
+    public int nextNonTerminal(int row, int col, int from) {
+        checkOpen();
+        long base = offset(row, col);
+        int w = from >>> 6;
+        if (w >= words) {
+            return -1;
+        }
+        long bits = get(base + w) & (-1L << from);
+        while (bits == 0) {
+            if (++w == words) {
+                return -1;
+            }
+            bits = get(base + w);
+        }
+        return (w << 6) + Long.numberOfTrailingZeros(bits);
+    }
+
+    /**
+     * Number of splits of the last fill that were combined rule driven, like
+     * {@link Chart#ruleDrivenSplits()}.
+     *
+     * @return rule driven splits of the last fill
+     */
+    public long ruleDrivenSplits() {
+        return ruleDrivenSplits;
+    }
+
+    /**
+     * Fills the chart for the first {@code length} tokens.
+     *
+     * @param tokens terminal ids, they are not checked
+     * @param length number of tokens to use
+     * @throws UncheckedIOException if the temporary file can't be created or
+     * mapped
+     */
+    public void fill(int[] tokens, int length) {
+        fillFirstRow(tokens, length);
+        for (int i = 1; i < length; i++) {
+            fillRow(i);
+        }
+    }
+
+    /**
+     * Fills the chart for the first {@code length} tokens within the limits
+     * of the options. The memory budget applies to the off-heap storage and is
+     * checked before the chart grows, the other limits before every row.
+     *
+     * @param tokens terminal ids, they are not checked
+     * @param length number of tokens to use
+     * @param options limits of the parse
+     * @throws ParseAbortedException if a limit is exceeded; the chart is left
+     * incomplete
+     */
+    public void fill(int[] tokens, int length, ParseOptions options) throws ParseAbortedException {
+        ParseOptions.Guard guard = options.start(length);
+        guard.check(0, length, Chart.cellCount(length) * words * Long.BYTES);
+        fillFirstRow(tokens, length);
+        for (int i = 1; i < length; i++) {
+            guard.check(i, length - i, 0);
+            fillRow(i);
+        }
+    }
+
+    /**
+     * @param row length of the substring - 1
+     * @param col first position of the substring
+     * @param nonterminal non-terminal id
+     * @return true if the non-terminal derives the substring
+     */
+    public boolean contains(int row, int col, int nonterminal) {
+        checkOpen();
+        return (get(offset(row, col) + (nonterminal >>> 6)) & (1L << nonterminal)) != 0;
+    }
+
+    /**
+     * @return true if the axiom derives the whole word
+     */
+    public boolean isDerived() {
+        return length > 0 && grammar.startSymbol >= 0 && contains(length - 1, 0, grammar.startSymbol);
+    }
+
+    /**
+     * @return copy of the chart on the heap, see ChartSnapshot
+     */
+    public ChartSnapshot snapshot() {
+        checkOpen();
+        int[] word = new int[length];
+        System.arraycopy(tokens, 0, word, 0, length);
+        return ChartSnapshot.capture(this, grammar, word);
+    }
+
+    /**
+     * Releases the storage and deletes the temporary file. The chart can't be
+     * used afterwards.
+     */
+    @Override
+    public void close() {
+        if (!closed) {
+            closed = true;
+            release();
+            length = 0;
+        }
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("chart closed");
+        }
+    }
+
+    private void fillFirstRow(int[] tokens, int length) {
+        checkOpen();
+        reserve(Chart.cellCount(length) * words);
+        if (length > this.tokens.length) {
+            this.tokens = new int[length];
+        }
+        System.arraycopy(tokens, 0, this.tokens, 0, length);
+        this.length = length;
+        this.ruleDrivenSplits = 0;
+        for (int j = 0; j < length; j++) {
+            long base = (long) j * words;
+            for (int w = 0; w < words; w++) {
+                put(base + w, grammar.terminalSets[tokens[j] * words + w]);
+            }
+        }
+    }
+
+    /**
+     * make room for the cells of a word and clear the ones written by the
+     * previous word; fresh storage is already zero
+     */
+    private void reserve(long size) {
+        if (size > capacity) {
+            release();
+            allocate(size);
+            dirty = 0;
+        }
+        long clear = Math.min(dirty, capacity);
+        for (long i = 0; i < clear; i += SEGMENT_LONGS) {
+            LongBuffer segment = segments[(int) (i >>> SEGMENT_SHIFT)];
+            int end = (int) Math.min(SEGMENT_LONGS, clear - i);
+            long[] zeros = new long[Math.min(end, 8192)];
+            for (int p = 0; p < end; p += zeros.length) {
+                segment.put(p, zeros, 0, Math.min(zeros.length, end - p));
+            }
+        }
+        dirty = size;
+    }
+
+    private void allocate(long size) {
+        long bytes = size * Long.BYTES;
+        int count = (int) ((size + SEGMENT_LONGS - 1) >>> SEGMENT_SHIFT);
+        buffers = new ByteBuffer[count];
+        if (bytes <= maxDirectBytes) {
+            try {
+                for (int s = 0; s < count; s++) {
+                    buffers[s] = ByteBuffer.allocateDirect((int) (segmentLongs(size, s) * Long.BYTES));
+                }
+            } catch (OutOfMemoryError e) {   // direct memory exhausted, spill to disk
+                release();
+                buffers = new ByteBuffer[count];
+            }
+        }
+        if (count > 0 && buffers[count - 1] == null) {
+            map(size, count);
+        }
+        segments = new LongBuffer[count];
+        for (int s = 0; s < count; s++) {
+            segments[s] = buffers[s].order(ByteOrder.nativeOrder()).asLongBuffer();
+        }
+        capacity = size;
+    }
+
+    private void map(long size, int count) {
+        try {
+            Path path = Files.createTempFile(spillDirectory, "chart", ".tmp");
+            file = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                    StandardOpenOption.DELETE_ON_CLOSE);
+            for (int s = 0; s < count; s++) {
+                buffers[s] = file.map(FileChannel.MapMode.READ_WRITE, (long) s * SEGMENT_LONGS * Long.BYTES,
+                        segmentLongs(size, s) * Long.BYTES);
+            }
+        } catch (IOException e) {
+            release();
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static long segmentLongs(long size, int segment) {
+        return Math.min(SEGMENT_LONGS, size - ((long) segment << SEGMENT_SHIFT));
+    }
+
+    /**
+     * free the buffers now instead of when they are collected, and delete the
+     * temporary file
+     */
+    private void release() {
+        for (ByteBuffer buffer : buffers) {
+            if (buffer != null && INVOKE_CLEANER != null) {
+                try {
+                    INVOKE_CLEANER.invoke(UNSAFE, buffer);
+                } catch (ReflectiveOperationException | RuntimeException e) {
+                    // left to the garbage collector
+                }
+            }
+        }
+        buffers = new ByteBuffer[0];
+        segments = new LongBuffer[0];
+        capacity = 0;
+        if (file != null) {
+            try {
+                file.close();
+            } catch (IOException e) {
+                // the file is deleted on exit at the latest
+            }
+            file = null;
+        }
+    }
+
+    /**
+     * fill the cells of a row, the rows below must be already filled
+     */
+    private void fillRow(int i) {
+        for (int j = 0; j < length - i; j++) {
+            long target = offset(i, j);
+            for (int k = 0; k < i; k++) {
+                combine(offset(k, j), offset(i - 1 - k, j + k + 1), target);
+            }
+        }
+    }
+
+    /**
+     * add to the target cell every A with A::=BC, B in the left cell and C in
+     * the right cell, pair driven or rule driven like Chart.combine
+     */
+    private void combine(long left, long right, long target) {
+        int leftCount = count(left);
+        int rightCount = leftCount == 0 ? 0 : count(right);
+        if (rightCount == 0) {
+            return;
+        }
+        if (grammar.combinesByRules(leftCount, rightCount)) {
+            combineByRules(left, right, target);
+            ruleDrivenSplits++;
+        } else {
+            combineByPairs(left, right, target);
+        }
+    }
+
+    private int count(long cell) {
+        int count = 0;
+        for (int w = 0; w < words; w++) {
+            count += Long.bitCount(get(cell + w));
+        }
+        return count;
+    }
+
+    /**
+     * for every B in the left cell and C in the right cell, look up the rules
+     * A::=BC of the pair
+     */
+    private void combineByPairs(long left, long right, long target) {
+        int[] from = grammar.pairFrom;
+        int[] to = grammar.pairTo;
+        int[] lhs = grammar.pairLhs;
+        for (int w = 0; w < words; w++) {
+            long bits = get(left + w);
+            while (bits != 0) {
+                int b = (w << 6) + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+                for (int v = 0; v < words; v++) {
+                    long rightBits = get(right + v);
+                    while (rightBits != 0) {
+                        int c = (v << 6) + Long.numberOfTrailingZeros(rightBits);
+                        rightBits &= rightBits - 1;
+                        int slot = grammar.pairSlot(b, c);
+                        if (slot < 0) {
+                            continue;
+                        }
+                        for (int r = from[slot]; r < to[slot]; r++) {
+                            long a = target + (lhs[r] >>> 6);
+                            put(a, get(a) | 1L << lhs[r]);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * for every left symbol B of a binary rule in the left cell, test its
+     * rules A::=BC, skipping the A already in the target
+     */
+    private void combineByRules(long left, long right, long target) {
+        int[] offsets = grammar.leftOffsets;
+        int[] rights = grammar.binaryRight;
+        int[] lhs = grammar.binaryLhs;
+        for (int b : grammar.ruleLefts) {
+            if ((get(left + (b >>> 6)) & (1L << b)) == 0) {
+                continue;
+            }
+            for (int r = offsets[b]; r < offsets[b + 1]; r++) {
+                long a = target + (lhs[r] >>> 6);
+                long bit = 1L << lhs[r];
+                int c = rights[r];
+                long cell = get(a);
+                if ((cell & bit) == 0 && (get(right + (c >>> 6)) & (1L << c)) != 0) {
+                    put(a, cell | bit);
+                }
+            }
+        }
+    }
+
+    /**
+     * index of the first long of a cell
+     */
+    private long offset(int row, int col) {
+        return ((long) row * length - (long) row * (row - 1) / 2 + col) * words;
+    }
+
+    private long get(long index) {
+        return segments[(int) (index >>> SEGMENT_SHIFT)].get((int) (index & SEGMENT_MASK));
+    }
+
+    private void put(long index, long value) {
+        segments[(int) (index >>> SEGMENT_SHIFT)].put((int) (index & SEGMENT_MASK), value);
+    }
+}
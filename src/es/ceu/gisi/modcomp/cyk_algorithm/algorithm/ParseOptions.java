@@ -0,0 +1,129 @@
+package es.ceu.gisi.modcomp.cyk_algorithm.algorithm;
+
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.exceptions.ParseAbortedException;
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.exceptions.ParseAbortedException.Reason;
+import java.time.Duration;
+
+/**
+ * Limits of a single parse: a time budget, a maximum number of chart cells
+ * and a memory budget for the chart. They are checked before every row of
+ * the chart, so a parse that exceeds one stops cleanly with a
+ * ParseAbortedException after at most one more row of work. An interrupted
+ * thread stops the same way, unless the options say otherwise.
+ *
+ * The options can be reused for any number of parses; the time budget starts
+ * when every parse starts.
+ */
+public final class ParseOptions {
+
+    private long timeoutNanos;
+    private long maxCells;
+    private long memoryBudget;
+    private boolean interruptible;
+
+    /**
+     * options without limits that stop on thread interruption
+     */
+    public ParseOptions() {
+        timeoutNanos = Long.MAX_VALUE;
+        maxCells = Long.MAX_VALUE;
+        memoryBudget = Long.MAX_VALUE;
+        interruptible = true;
+    }
+
+    /**
+     * @param timeout maximum time of a parse
+     * @return these options
+     */
+    public ParseOptions timeout(Duration timeout) {
+        if (timeout.isNegative()) {
+            throw new IllegalArgumentException();
+        }
+        this.timeoutNanos = timeout.compareTo(Duration.ofNanos(Long.MAX_VALUE)) >= 0 ? Long.MAX_VALUE : timeout.toNanos();
+        return this;
+    }
+
+    /**
+     * @param maxCells maximum number of cells of the chart
+     * @return these options
+     */
+    public ParseOptions maxCells(long maxCells) {
+        if (maxCells < 0) {
+            throw new IllegalArgumentException();
+        }
+        this.maxCells = maxCells;
+        return this;
+    }
+
+    /**
+     * @param bytes maximum memory taken by the chart, approximately
+     * @return these options
+     */
+    public ParseOptions memoryBudget(long bytes) {
+        if (bytes < 0) {
+            throw new IllegalArgumentException();
+        }
+        this.memoryBudget = bytes;
+        return this;
+    }
+
+    /**
+     * @param interruptible stop when the thread of the parse is interrupted;
+     * the interrupt flag is left set
+     * @return these options
+     */
+    public ParseOptions interruptible(boolean interruptible) {
+        this.interruptible = interruptible;
+        return this;
+    }
+
+    /**
+     * @param rows rows of the chart of the parse
+     * @return the checker of a parse that starts now
+     */
+    Guard start(int rows) {
+        return new Guard(rows);
+    }
+
+    /**
+     * limits and progress of one parse
+     */
+    final class Guard {
+
+        private final long start;
+        private final int rows;
+        private long cells;
+        private long bytes;
+
+        private Guard(int rows) {
+            this.start = System.nanoTime();
+            this.rows = rows;
+        }
+
+        /**
+         * check the limits before filling a row, counting the cells and
+         * bytes it adds to the chart
+         *
+         * @param row row about to be filled, the rows below are complete
+         * @throws ParseAbortedException if a limit is exceeded
+         */
+        void check(int row, long rowCells, long rowBytes) throws ParseAbortedException {
+            long elapsed = System.nanoTime() - start;
+            Reason reason = null;
+            if (interruptible && Thread.currentThread().isInterrupted()) {
+                reason = Reason.INTERRUPTED;
+            } else if (elapsed > timeoutNanos) {
+                reason = Reason.DEADLINE;
+            } else if (cells + rowCells > maxCells) {
+                reason = Reason.MAX_CELLS;
+            } else if (bytes + rowBytes > memoryBudget) {
+                reason = Reason.MEMORY_BUDGET;
+            }
+            if (reason != null) {
+                throw new ParseAbortedException(reason, row, rows, cells, bytes, elapsed);
+            }
+            cells += rowCells;
+            bytes += rowBytes;
+        }
+    }
+}
@@ -0,0 +1,401 @@
+package es.ceu.gisi.modcomp.cyk_algorithm.algorithm;
+
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.exceptions.CYKAlgorithmException;
+import java.time.Duration;
+import java.util.Queue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * In-process asynchronous parsing over a CompiledGrammar, with backpressure.
+ *
+ * Every request runs on its own virtual thread when the JVM has them (Java
+ * 21 or later) and on a fixed pool of platform threads otherwise. At most
+ * {@code maxConcurrent} charts are filled at the same time and at most
+ * {@code queueCapacity} more requests wait for their turn; any other request
+ * is rejected at once with a future failed with RejectedExecutionException,
+ * so bursts can't grow the memory of the service.
+ *
+ * Every request has a deadline. When it expires the future fails with
+ * TimeoutException, and if its chart is being filled the fill stops at the
+ * next row; cancelling the future stops it the same way. Charts are reused
+ * between requests.
+ */
+public final class ParseService implements AutoCloseable {
+
+    private static final int LATENCY_BUCKETS = 64;
+
+    private final CompiledGrammar grammar;
+    private final ExecutorService executor;
+    private final Semaphore admission;
+    private final Semaphore running;
+    private final Queue<Chart> charts;
+    private volatile boolean closed;
+
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final AtomicInteger active = new AtomicInteger();
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder timedOut = new LongAdder();
+    private final LongAdder cancelled = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder latencyTotal = new LongAdder();
+    private final AtomicLong latencyMax = new AtomicLong();
+    private final AtomicLongArray latencies = new AtomicLongArray(LATENCY_BUCKETS);
+
+    /**
+     * @param grammar compiled grammar, see CYKAlgorithm.compile()
+     * @param maxConcurrent charts filled at the same time
+     * @param queueCapacity requests that can wait for a chart, more are
+     * rejected
+     */
+    public ParseService(CompiledGrammar grammar, int maxConcurrent, int queueCapacity) {
+        if (maxConcurrent < 1 || queueCapacity < 0) {
+            throw new IllegalArgumentException();
+        }
+        this.grammar = grammar;
+        this.executor = newExecutor(maxConcurrent);
+        this.admission = new Semaphore(maxConcurrent + queueCapacity);
+        this.running = new Semaphore(maxConcurrent);
+        this.charts = new ConcurrentLinkedQueue<>();
+    }
+
+    /**
+     * a virtual thread per task if the JVM supports them, looked up by
+     * reflection so the class still runs on Java 17
+     */
+    private static ExecutorService newExecutor(int threads) {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            ThreadFactory daemons = task -> {
+                Thread thread = new Thread(task, "parse-service");
+                thread.setDaemon(true);
+                return thread;
+            };
+            return Executors.newFixedThreadPool(threads, daemons);
+        }
+    }
+
+    public CompiledGrammar grammar() {
+        return grammar;
+    }
+
+    /**
+     * Checks a sequence of terminal ids.
+     *
+     * @param tokens terminal ids, see {@link CompiledGrammar#terminalId}
+     * @param timeout time from now until the deadline
+     * @return future completed with true if the axiom derives the tokens; it
+     * fails with RejectedExecutionException if the queue is full,
+     * TimeoutException if the deadline expires and CYKAlgorithmException if a
+     * token is not a terminal
+     */
+    public CompletableFuture<Boolean> isDerived(int[] tokens, Duration timeout) {
+        return submit(tokens, timeout, Chart::isDerived);
+    }
+
+    /**
+     * Checks a word of one-char terminals, like CYKAlgorithm.isDerived(String).
+     *
+     * @param word the word
+     * @param timeout time from now until the deadline
+     * @return see {@link #isDerived(int[], Duration)}
+     */
+    public CompletableFuture<Boolean> isDerived(String word, Duration timeout) {
+        int[] tokens = new int[word.length()];
+        for (int i = 0; i < tokens.length; i++) {
+            tokens[i] = grammar.terminalId(word.charAt(i));
+        }
+        return isDerived(tokens, timeout);
+    }
+
+    /**
+     * Fills the chart of a sequence of terminal ids and returns a copy of it,
+     * to render it or extract a derivation tree.
+     *
+     * @param tokens terminal ids, see {@link CompiledGrammar#terminalId}
+     * @param timeout time from now until the deadline
+     * @return future completed with the filled chart, it fails like
+     * {@link #isDerived(int[], Duration)}
+     */
+    public CompletableFuture<ChartSnapshot> parse(int[] tokens, Duration timeout) {
+        return submit(tokens, timeout, ChartSnapshot::of);
+    }
+
+    private <T> CompletableFuture<T> submit(int[] tokens, Duration timeout, Function<Chart, T> result) {
+        long start = System.nanoTime();
+        submitted.increment();
+        if (closed || !admission.tryAcquire()) {
+            rejected.increment();
+            return CompletableFuture.failedFuture(new RejectedExecutionException());
+        }
+        waiting.incrementAndGet();
+        int[] copy = tokens.clone();
+        Request<T> future = new Request<>(start);
+        future.orTimeout(timeout.toNanos(), TimeUnit.NANOSECONDS);
+        try {
+            executor.execute(() -> run(copy, future, result));
+        } catch (RejectedExecutionException e) {   // closed meanwhile
+            waiting.decrementAndGet();
+            admission.release();
+            rejected.increment();
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    private <T> void run(int[] tokens, Request<T> future, Function<Chart, T> result) {
+        try {
+            running.acquire();
+        } catch (InterruptedException e) {
+            waiting.decrementAndGet();
+            admission.release();
+            future.completeExceptionally(new CancellationException());
+            return;
+        }
+        waiting.decrementAndGet();
+        active.incrementAndGet();
+        try {
+            if (future.isDone()) {   // expired or cancelled while waiting
+                return;
+            }
+            for (int token : tokens) {
+                if (token < 0 || token >= grammar.terminalCount()) {
+                    future.completeExceptionally(new CYKAlgorithmException());
+                    return;
+                }
+            }
+            Chart chart = charts.poll();
+            if (chart == null) {
+                chart = new Chart(grammar);
+            }
+            try {
+                if (chart.fill(tokens, tokens.length, future::isDone)) {
+                    future.complete(result.apply(chart));
+                }
+            } finally {
+                charts.offer(chart);
+            }
+        } catch (RuntimeException | Error e) {
+            future.completeExceptionally(e);
+        } finally {
+            admission.release();
+            running.release();
+            active.decrementAndGet();
+        }
+    }
+
+    /**
+     * future that updates the metrics right before it completes, so they are
+     * up to date when get() returns
+     */
+    private final class Request<T> extends CompletableFuture<T> {
+
+        private final long start;
+        private final AtomicBoolean finished = new AtomicBoolean();
+
+        private Request(long start) {
+            this.start = start;
+        }
+
+        @Override
+        public boolean complete(T value) {
+            if (!finished.compareAndSet(false, true)) {
+                return false;
+            }
+            record(start, null);
+            return super.complete(value);
+        }
+
+        @Override
+        public boolean completeExceptionally(Throwable error) {
+            if (!finished.compareAndSet(false, true)) {
+                return false;
+            }
+            record(start, error);
+            return super.completeExceptionally(error);
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            if (!finished.compareAndSet(false, true)) {
+                return false;
+            }
+            record(start, new CancellationException());
+            return super.cancel(mayInterruptIfRunning);
+        }
+    }
+
+    private void record(long start, Throwable error) {
+        long latency = System.nanoTime() - start;
+        if (error == null) {
+            completed.increment();
+        } else if (error instanceof TimeoutException) {
+            timedOut.increment();
+        } else if (error instanceof CancellationException) {
+            cancelled.increment();
+        } else if (!(error instanceof RejectedExecutionException)) {
+            failed.increment();
+        }
+        latencyTotal.add(latency);
+        latencyMax.accumulateAndGet(latency, Math::max);
+        latencies.incrementAndGet(LATENCY_BUCKETS - 1 - Long.numberOfLeadingZeros(Math.max(latency, 1)));
+    }
+
+    /**
+     * @return current counters and latencies of the service
+     */
+    public Metrics metrics() {
+        long[] buckets = new long[LATENCY_BUCKETS];
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = latencies.get(i);
+        }
+        return new Metrics(waiting.get(), active.get(), submitted.sum(), rejected.sum(), completed.sum(),
+                timedOut.sum(), cancelled.sum(), failed.sum(), latencyTotal.sum(), latencyMax.get(), buckets);
+    }
+
+    /**
+     * Stops accepting requests and waits for the admitted ones to finish.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        executor.shutdown();
+        try {
+            while (!executor.awaitTermination(1, TimeUnit.SECONDS)) {
+                // admitted requests end at their deadline at the latest
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Snapshot of the counters of a ParseService. Latencies go from the
+     * submission of an admitted request to the completion of its future.
+     */
+    public static final class Metrics {
+
+        private final int queueDepth;
+        private final int running;
+        private final long submitted;
+        private final long rejected;
+        private final long completed;
+        private final long timedOut;
+        private final long cancelled;
+        private final long failed;
+        private final long latencyTotal;
+        private final long latencyMax;
+        private final long[] latencies;
+
+        Metrics(int queueDepth, int running, long submitted, long rejected, long completed, long timedOut,
+                long cancelled, long failed, long latencyTotal, long latencyMax, long[] latencies) {
+            this.queueDepth = queueDepth;
+            this.running = running;
+            this.submitted = submitted;
+            this.rejected = rejected;
+            this.completed = completed;
+            this.timedOut = timedOut;
+            this.cancelled = cancelled;
+            this.failed = failed;
+            this.latencyTotal = latencyTotal;
+            this.latencyMax = latencyMax;
+            this.latencies = latencies;
+        }
+
+        /**
+         * @return admitted requests waiting for a chart
+         */
+        public int queueDepth() {
+            return queueDepth;
+        }
+
+        /**
+         * @return charts being filled
+         */
+        public int running() {
+            return running;
+        }
+
+        public long submitted() {
+            return submitted;
+        }
+
+        public long rejected() {
+            return rejected;
+        }
+
+        public long completed() {
+            return completed;
+        }
+
+        public long timedOut() {
+            return timedOut;
+        }
+
+        public long cancelled() {
+            return cancelled;
+        }
+
+        /**
+         * @return requests failed with an error other than a timeout, a
+         * cancellation or a rejection
+         */
+        public long failed() {
+            return failed;
+        }
+
+        /**
+         * @return mean latency in nanoseconds, 0 if no request finished
+         */
+        public long meanLatencyNanos() {
+            long count = 0;
+            for (long bucket : latencies) {
+                count += bucket;
+            }
+            return count == 0 ? 0 : latencyTotal / count;
+        }
+
+        public long maxLatencyNanos() {
+            return latencyMax;
+        }
+
+        /**
+         * @param percentile between 0 and 100
+         * @return upper bound, rounded up to a power of two, of the latency
+         * of that percentile of the requests, in nanoseconds
+         */
+        public long latencyPercentileNanos(double percentile) {
+            long count = 0;
+            for (long bucket : latencies) {
+                count += bucket;
+            }
+            long rank = (long) Math.ceil(count * percentile / 100);
+            long seen = 0;
+            for (int i = 0; i < latencies.length; i++) {
+                seen += latencies[i];
+                if (seen >= rank && seen > 0) {
+                    return Math.min(latencyMax, i >= 62 ? Long.MAX_VALUE : (1L << (i + 1)) - 1);
+                }
+            }
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package es.ceu.gisi.modcomp.cyk_algorithm.algorithm;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Batch recognizer that reuses the chart of the common prefix of
+ * consecutive words.
+ *
+ * The chart is stored by columns of end position: column e holds the cells of
+ * the substrings that end at e, from length 1 to e + 1, and only depends on
+ * the first e + 1 symbols. When the next word shares its first p symbols with
+ * the previous one, columns 0 to p - 1 are kept and only the columns from p
+ * on are computed. A batch is sorted first so that words with common prefixes
+ * are consecutive, which visits the words in the same order as a walk of
+ * their trie.
+ *
+ * A parser reuses its chart, so it is not thread safe.
+ */
+public final class PrefixSharingParser {
+
+    private final CompiledGrammar grammar;
+    private final int words;
+    private long[] cells;
+    private int[] previous;
+    private int columns;
+    private long cellsComputed;
+    private long cellsReused;
+
+    public PrefixSharingParser(CompiledGrammar grammar) {
+        this.grammar = grammar;
+        this.words = grammar.words();
+        this.cells = new long[0];
+        this.previous = new int[0];
+        this.columns = 0;
+    }
+
+    /**
+     * Checks a batch of token sequences, in the order that shares most
+     * columns.
+     *
+     * @param batch terminal ids of every word, see
+     * {@link CompiledGrammar#terminalId}
+     * @return for every word, in the order of the batch, true if the axiom
+     * derives it
+     */
+    public boolean[] isDerived(List<int[]> batch) {
+        Integer[] order = new Integer[batch.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparing(batch::get, Arrays::compare));
+        boolean[] derived = new boolean[order.length];
+        for (int i : order) {
+            derived[i] = isDerived(batch.get(i));
+        }
+        return derived;
+    }
+
+    /**
+     * Checks a batch of words of one-char terminals; a word with a char that
+     * is not a terminal is not derived.
+     *
+     * @param batch the words
+     * @return for every word, in the order of the batch, true if the axiom
+     * derives it
+     */
+    public boolean[] isDerivedWords(List<String> batch) {
+        int[][] tokens = new int[batch.size()][];
+        boolean[] valid = new boolean[tokens.length];
+        for (int w = 0; w < tokens.length; w++) {
+            String word = batch.get(w);
+            tokens[w] = new int[word.length()];
+            valid[w] = true;
+            for (int i = 0; i < word.length() && valid[w]; i++) {
+                tokens[w][i] = grammar.terminalId(word.charAt(i));
+                valid[w] = tokens[w][i] >= 0;
+            }
+            if (!valid[w]) {
+                tokens[w] = new int[0];
+            }
+        }
+        boolean[] derived = isDerived(Arrays.asList(tokens));
+        for (int w = 0; w < derived.length; w++) {
+            derived[w] &= valid[w];
+        }
+        return derived;
+    }
+
+    /**
+     * Checks one word, reusing the columns of the prefix it shares with the
+     * previous words checked by this parser. The columns of a longer word
+     * stay valid after checking one of its prefixes.
+     *
+     * @param tokens terminal ids
+     * @return true if the axiom derives the tokens
+     */
+    public boolean isDerived(int[] tokens) {
+        int n = tokens.length;
+        for (int token : tokens) {
+            if (token < 0 || token >= grammar.terminalCount()) {
+                throw new IllegalArgumentException("not a terminal: " + token);
+            }
+        }
+        int shared = Arrays.mismatch(previous, 0, Math.min(columns, n), tokens, 0, Math.min(columns, n));
+        if (shared < 0) {
+            shared = Math.min(columns, n);
+        }
+        long size = Chart.cellCount(n) * words;
+        if (size > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("word too long: " + n);
+        }
+        if (size > cells.length) {
+            cells = Arrays.copyOf(cells, (int) Math.min(Integer.MAX_VALUE - 8, Math.max(size, cells.length * 3L / 2)));
+        }
+        if (n > previous.length) {
+            previous = Arrays.copyOf(previous, Math.max(n, previous.length * 2));
+        }
+        System.arraycopy(tokens, shared, previous, shared, n - shared);
+        if (shared < n) {
+            columns = n;
+        }
+
+        cellsReused += Chart.cellCount(shared);
+        for (int end = shared; end < n; end++) {
+            fillColumn(end, tokens[end]);
+        }
+        cellsComputed += Chart.cellCount(n) - Chart.cellCount(shared);
+        int start = grammar.startSymbol();
+        return n > 0 && start >= 0 && (cells[cell(n - 1, n) + (start >>> 6)] & (1L << start)) != 0;
+    }
+
+    /**
+     * compute the cells of the substrings that end at a position, the columns
+     * before it must be computed
+     */
+    private void fillColumn(int end, int token) {
+        int base = cell(end, 1);
+        Arrays.fill(cells, base, base + (end + 1) * words, 0L);
+        System.arraycopy(grammar.terminalSets, token * words, cells, base, words);
+        for (int length = 2; length <= end + 1; length++) {
+            int target = cell(end, length);
+            int start = end - length + 1;
+            for (int k = 1; k < length; k++) {
+                Chart.combine(grammar, cells, cell(start + k - 1, k), cell(end, length - k), target);
+            }
+        }
+    }
+
+    /**
+     * offset of the cell of the substring of the given length that ends at a
+     * position
+     */
+    private int cell(int end, int length) {
+        return (int) ((Chart.cellCount(end) + length - 1) * words);
+    }
+
+    /**
+     * @return cells computed since the parser was created
+     */
+    public long cellsComputed() {
+        return cellsComputed;
+    }
+
+    /**
+     * @return cells taken from the previous word instead of being computed
+     */
+    public long cellsReused() {
+        return cellsReused;
+    }
+}
@@ -0,0 +1,133 @@
+package es.ceu.gisi.modcomp.cyk_algorithm.algorithm;
+
+import java.util.Arrays;
+
+/**
+ * Finds, in an unbounded stream of terminals, every window of at most
+ * {@code W} symbols derived by a non-terminal (the axiom by default), as soon
+ * as its last symbol arrives.
+ *
+ * It keeps a rolling CYK chart of the last W diagonals: the diagonal of a
+ * position holds the cells of the W substrings that end there, from length 1
+ * to W. Every new symbol overwrites the oldest diagonal with its own, which
+ * only needs the W - 1 previous diagonals, so each symbol costs O(W²) cell
+ * combinations and the memory stays at W² cells whatever the length of the
+ * stream.
+ *
+ * A recognizer is not thread safe.
+ */
+public final class SlidingWindowRecognizer {
+
+    /**
+     * Receives the matches of a recognizer.
+     */
+    public interface Listener {
+
+        /**
+         * @param start position in the stream of the first symbol of the
+         * match, from 0
+         * @param length number of symbols of the match
+         */
+        void match(long start, int length);
+    }
+
+    private final CompiledGrammar grammar;
+    private final int window;
+    private final int target;
+    private final int words;
+    private final long[] cells;
+    private long position;
+
+    /**
+     * @param grammar compiled grammar with axiom
+     * @param window maximum length of a match
+     */
+    public SlidingWindowRecognizer(CompiledGrammar grammar, int window) {
+        this(grammar, window, grammar.startSymbol());
+    }
+
+    /**
+     * @param grammar compiled grammar
+     * @param window maximum length of a match
+     * @param nonterminal id of the non-terminal whose substrings are matched
+     */
+    public SlidingWindowRecognizer(CompiledGrammar grammar, int window, int nonterminal) {
+        if (window < 1 || nonterminal < 0 || nonterminal >= grammar.nonTerminalCount()) {
+            throw new IllegalArgumentException();
+        }
+        long size = (long) window * window * grammar.words();
+        if (size > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("window too big: " + window);
+        }
+        this.grammar = grammar;
+        this.window = window;
+        this.target = nonterminal;
+        this.words = grammar.words();
+        this.cells = new long[(int) size];
+        this.position = 0;
+    }
+
+    /**
+     * @return number of symbols pushed since the creation or the last reset
+     */
+    public long position() {
+        return position;
+    }
+
+    /**
+     * Forgets the symbols pushed, as if the stream started again.
+     */
+    public void reset() {
+        Arrays.fill(cells, 0L);
+        position = 0;
+    }
+
+    /**
+     * Adds the next symbol of the stream and reports the matches that end
+     * with it, shortest first.
+     *
+     * @param token terminal id, see {@link CompiledGrammar#terminalId}, or -1
+     * for a symbol that is not a terminal (no match contains it)
+     * @param listener receives the matches, may be null
+     * @return number of matches that end with the symbol
+     */
+    public int push(int token, Listener listener) {
+        if (token < -1 || token >= grammar.terminalCount()) {
+            throw new IllegalArgumentException("not a terminal: " + token);
+        }
+        int diagonal = (int) (position % window);
+        int base = diagonal * window * words;
+        Arrays.fill(cells, base, base + window * words, 0L);
+        if (token >= 0) {
+            System.arraycopy(grammar.terminalSets, token * words, cells, base, words);
+        }
+        int lengths = (int) Math.min(window, position + 1);
+        for (int length = 2; length <= lengths; length++) {
+            int cell = cell(diagonal, length);
+            for (int k = 1; k < length; k++) {   // left part: the first k symbols, ending k - length positions ago
+                int left = cell((int) ((position - length + k) % window), k);
+                Chart.combine(grammar, cells, left, cell(diagonal, length - k), cell);
+            }
+        }
+
+        int matches = 0;
+        for (int length = 1; length <= lengths; length++) {
+            if ((cells[cell(diagonal, length) + (target >>> 6)] & (1L << target)) != 0) {
+                matches++;
+                if (listener != null) {
+                    listener.match(position - length + 1, length);
+                }
+            }
+        }
+        position++;
+        return matches;
+    }
+
+    /**
+     * offset of the cell of the substring of the given length that ends at
+     * the position of a diagonal
+     */
+    private int cell(int diagonal, int length) {
+        return (diagonal * window + length - 1) * words;
+    }
+}
@@ -0,0 +1,141 @@
+package es.ceu.gisi.modcomp.cyk_algorithm.algorithm;
+
+import java.util.Arrays;
+
+/**
+ * Interns symbol names into dense integer ids (0, 1, 2...) in insertion
+ * order, so the algorithm can work with int ids and bitsets instead of boxed
+ * characters and list lookups.
+ *
+ * Lookups by name use an open addressing table, and names made of a single
+ * char are also indexed by char code so the char API never has to build a
+ * String to find a symbol.
+ */
+public class SymbolTable {
+
+    private String[] names;
+    private int size;
+
+    private String[] slots;
+    private int[] slotIds;
+
+    private int[] charIds;
+    private boolean onlyCharNames;
+
+    public SymbolTable() {
+        names = new String[16];
+        size = 0;
+        slots = new String[32];
+        slotIds = new int[32];
+        charIds = new int[0];
+        onlyCharNames = true;
+    }
+
+    /**
+     * Returns the id of a name, adding it to the table if it is new.
+     *
+     * @param name symbol name, for example "S" or "Expr"
+     * @return the id of the symbol
+     */
+    public int intern(String name) {
+        int slot = slotOf(name);
+        if (slots[slot] != null) {
+            return slotIds[slot];
+        }
+        if (size == names.length) {
+            names = Arrays.copyOf(names, size * 2);
+        }
+        int id = size++;
+        names[id] = name;
+        slots[slot] = name;
+        slotIds[slot] = id;
+        if (name.length() == 1) {
+            char c = name.charAt(0);
+            if (c >= charIds.length) {
+                charIds = Arrays.copyOf(charIds, Math.max(c + 1, charIds.length * 2));
+            }
+            charIds[c] = id + 1;
+        } else {
+            onlyCharNames = false;
+        }
+        if (size * 2 > slots.length) {
+            rehash();
+        }
+        return id;
+    }
+
+    /**
+     * @param name symbol name
+     * @return the id of the symbol or -1 if it is not in the table
+     */
+    public int idOf(String name) {
+        int slot = slotOf(name);
+        return slots[slot] != null ? slotIds[slot] : -1;
+    }
+
+    /**
+     * @param c single char symbol name
+     * @return the id of the symbol or -1 if it is not in the table
+     */
+    public int idOf(char c) {
+        return c < charIds.length ? charIds[c] - 1 : -1;
+    }
+
+    /**
+     * @param id symbol id
+     * @return the name the id was interned from
+     */
+    public String nameOf(int id) {
+        if (id < 0 || id >= size) {
+            throw new IndexOutOfBoundsException(id);
+        }
+        return names[id];
+    }
+
+    public boolean contains(String name) {
+        return idOf(name) >= 0;
+    }
+
+    public boolean contains(char c) {
+        return idOf(c) >= 0;
+    }
+
+    /**
+     * @return number of symbols, ids go from 0 to size() - 1
+     */
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return true if every name has exactly one char, which means names can
+     * be concatenated without separators
+     */
+    public boolean hasOnlyCharNames() {
+        return onlyCharNames;
+    }
+
+    private int slotOf(String name) {
+        int mask = slots.length - 1;
+        int h = name.hashCode();
+        int slot = (h ^ (h >>> 16)) & mask;
+        while (slots[slot] != null && !slots[slot].equals(name)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void rehash() {
+        slots = new String[slots.length * 2];
+        slotIds = new int[slots.length];
+        for (int id = 0; id < size; id++) {
+            int slot = slotOf(names[id]);
+            slots[slot] = names[id];
+            slotIds[slot] = id;
+        }
+    }
+}
@@ -0,0 +1,321 @@
+package es.ceu.gisi.modcomp.cyk_algorithm.algorithm;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Necessary conditions for a word to be derived by the axiom, derived once
+ * from the productions of a CompiledGrammar and checked in O(n) before any
+ * chart is built. A word that fails one is not in the language; a word that
+ * passes them all still has to be parsed.
+ *
+ * Only useful productions count: the ones of non-terminals that derive some
+ * word and are reachable from the axiom through such productions. The
+ * conditions are, in the order they are checked:
+ * <ul>
+ * <li>TERMINAL: every symbol is produced by a useful production.</li>
+ * <li>LENGTH: the axiom derives some word of that length. The lengths are
+ * known exactly up to {@link #MAX_LENGTH}; longer words always pass.</li>
+ * <li>FIRST / LAST: the first (last) symbol can start (end) a word of the
+ * axiom.</li>
+ * <li>PAIR: every two consecutive symbols can be consecutive in a word of the
+ * axiom. In a derivation tree, consecutive symbols t u meet at a node A::=BC
+ * with t last in the yield of B and u first in the yield of C, so the pairs
+ * are the union of LAST(B) × FIRST(C) over the useful binary productions.
+ * It is skipped for grammars of more than {@link #MAX_PAIR_TERMINALS}
+ * terminals.</li>
+ * </ul>
+ *
+ * The counters can be updated from several threads.
+ */
+public final class WordFilter {
+
+    /**
+     * longest length whose derivability is computed
+     */
+    public static final int MAX_LENGTH = 127;
+
+    /**
+     * biggest grammar, in terminals, for which the pairs are computed
+     */
+    public static final int MAX_PAIR_TERMINALS = 4096;
+
+    /**
+     * The conditions, in the order they are checked.
+     */
+    public enum Check {
+        TERMINAL, LENGTH, FIRST, LAST, PAIR
+    }
+
+    private static final int LENGTH_WORDS = (MAX_LENGTH + 64) >>> 6;
+
+    private final int terminalCount;
+    private final long[] terminals;
+    private final long[] lengths;
+    private final long[] first;
+    private final long[] last;
+    private final long[] pairs;
+    private final LongAdder checked = new LongAdder();
+    private final LongAdder[] rejected = new LongAdder[Check.values().length];
+
+    /**
+     * analyze the productions of a grammar
+     *
+     * @param grammar compiled grammar
+     */
+    WordFilter(CompiledGrammar grammar) {
+        int n = grammar.nonTerminalCount();
+        int t = grammar.terminalCount();
+        int termWords = (t + 63) >>> 6;
+        this.terminalCount = t;
+        for (int i = 0; i < rejected.length; i++) {
+            rejected[i] = new LongAdder();
+        }
+
+        // productive non-terminals, with their first and last terminals and lengths
+        boolean[] productive = new boolean[n];
+        long[][] firstOf = new long[n][termWords];
+        long[][] lastOf = new long[n][termWords];
+        long[][] lengthsOf = new long[n][LENGTH_WORDS];
+        for (int term = 0; term < t; term++) {
+            for (int a = Chart.nextSetBit(grammar.terminalSets, term * grammar.words, grammar.words, 0); a >= 0;
+                    a = Chart.nextSetBit(grammar.terminalSets, term * grammar.words, grammar.words, a + 1)) {
+                productive[a] = true;
+                firstOf[a][term >>> 6] |= 1L << term;
+                lastOf[a][term >>> 6] |= 1L << term;
+                lengthsOf[a][0] |= 1L << 1;
+            }
+        }
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int b = 0; b < n; b++) {
+                for (int r = grammar.leftOffsets[b]; r < grammar.leftOffsets[b + 1]; r++) {
+                    int c = grammar.binaryRight[r];
+                    int a = grammar.binaryLhs[r];
+                    if (!productive[b] || !productive[c]) {
+                        continue;
+                    }
+                    if (!productive[a]) {
+                        productive[a] = true;
+                        changed = true;
+                    }
+                    changed |= or(firstOf[a], firstOf[b]);
+                    changed |= or(lastOf[a], lastOf[c]);
+                    changed |= addSums(lengthsOf[a], lengthsOf[b], lengthsOf[c]);
+                }
+            }
+        }
+
+        // useful non-terminals: productive and reachable from the axiom through productive rules
+        int start = grammar.startSymbol();
+        boolean[] reachable = new boolean[n];
+        int[] stack = new int[n];
+        int top = 0;
+        if (start >= 0 && productive[start]) {
+            reachable[start] = true;
+            stack[top++] = start;
+        }
+        int[][] byLhs = rulesByLhs(grammar);
+        while (top > 0) {
+            int a = stack[--top];
+            for (int r : byLhs[a]) {
+                int b = leftOf(grammar, r);
+                int c = grammar.binaryRight[r];
+                if (productive[b] && productive[c]) {
+                    for (int s : new int[]{b, c}) {
+                        if (!reachable[s]) {
+                            reachable[s] = true;
+                            stack[top++] = s;
+                        }
+                    }
+                }
+            }
+        }
+
+        this.terminals = new long[termWords];
+        for (int term = 0; term < t; term++) {
+            for (int a = Chart.nextSetBit(grammar.terminalSets, term * grammar.words, grammar.words, 0); a >= 0;
+                    a = Chart.nextSetBit(grammar.terminalSets, term * grammar.words, grammar.words, a + 1)) {
+                if (reachable[a]) {
+                    terminals[term >>> 6] |= 1L << term;
+                }
+            }
+        }
+        boolean derives = start >= 0 && reachable[start];
+        this.lengths = derives ? lengthsOf[start] : new long[LENGTH_WORDS];
+        this.first = derives ? firstOf[start] : new long[termWords];
+        this.last = derives ? lastOf[start] : new long[termWords];
+
+        if (t <= MAX_PAIR_TERMINALS) {
+            this.pairs = new long[(int) (((long) t * t + 63) >>> 6)];
+            for (int b = 0; b < n; b++) {
+                for (int r = grammar.leftOffsets[b]; r < grammar.leftOffsets[b + 1]; r++) {
+                    int c = grammar.binaryRight[r];
+                    if (!reachable[grammar.binaryLhs[r]] || !productive[b] || !productive[c]) {
+                        continue;
+                    }
+                    for (int u = Chart.nextSetBit(lastOf[b], 0, termWords, 0); u >= 0;
+                            u = Chart.nextSetBit(lastOf[b], 0, termWords, u + 1)) {
+                        for (int v = Chart.nextSetBit(firstOf[c], 0, termWords, 0); v >= 0;
+                                v = Chart.nextSetBit(firstOf[c], 0, termWords, v + 1)) {
+                            long bit = (long) u * t + v;
+                            pairs[(int) (bit >>> 6)] |= 1L << bit;
+                        }
+                    }
+                }
+            }
+        } else {
+            this.pairs = null;
+        }
+    }
+
+    /**
+     * the binary rules of every left-hand side, as positions of the CSR
+     * tables
+     */
+    private static int[][] rulesByLhs(CompiledGrammar grammar) {
+        int n = grammar.nonTerminalCount();
+        int[] counts = new int[n];
+        for (int a : grammar.binaryLhs) {
+            counts[a]++;
+        }
+        int[][] rules = new int[n][];
+        for (int a = 0; a < n; a++) {
+            rules[a] = new int[counts[a]];
+            counts[a] = 0;
+        }
+        for (int r = 0; r < grammar.binaryLhs.length; r++) {
+            int a = grammar.binaryLhs[r];
+            rules[a][counts[a]++] = r;
+        }
+        return rules;
+    }
+
+    /**
+     * the left symbol B of the rule at a position of the CSR tables
+     */
+    private static int leftOf(CompiledGrammar grammar, int rule) {
+        int low = 0;
+        int high = grammar.nonTerminalCount() - 1;
+        while (low < high) {   // last b with leftOffsets[b] <= rule
+            int mid = (low + high + 1) >>> 1;
+            if (grammar.leftOffsets[mid] <= rule) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * target |= source
+     *
+     * @return true if target changed
+     */
+    private static boolean or(long[] target, long[] source) {
+        boolean changed = false;
+        for (int w = 0; w < target.length; w++) {
+            long bits = target[w] | source[w];
+            changed |= bits != target[w];
+            target[w] = bits;
+        }
+        return changed;
+    }
+
+    /**
+     * target |= {i + j : i in left, j in right}, up to MAX_LENGTH
+     *
+     * @return true if target changed
+     */
+    private static boolean addSums(long[] target, long[] left, long[] right) {
+        long[] sums = new long[LENGTH_WORDS];
+        for (int i = Chart.nextSetBit(left, 0, LENGTH_WORDS, 0); i >= 0; i = Chart.nextSetBit(left, 0, LENGTH_WORDS, i + 1)) {
+            int shift = i >>> 6;
+            int bits = i & 63;
+            for (int w = LENGTH_WORDS - 1; w >= shift; w--) {
+                long shifted = right[w - shift] << bits;
+                if (bits != 0 && w - shift > 0) {
+                    shifted |= right[w - shift - 1] >>> (64 - bits);
+                }
+                sums[w] |= shifted;
+            }
+        }
+        return or(target, sums);
+    }
+
+    /**
+     * Checks the conditions on a sequence of terminal ids and counts the
+     * result.
+     *
+     * @param tokens terminal ids, they are not checked
+     * @return the first condition the word fails, null if it passes them all
+     */
+    public Check check(int[] tokens) {
+        checked.increment();
+        Check failed = firstFailed(tokens);
+        if (failed != null) {
+            rejected[failed.ordinal()].increment();
+        }
+        return failed;
+    }
+
+    private Check firstFailed(int[] tokens) {
+        int n = tokens.length;
+        for (int token : tokens) {
+            if (!has(terminals, token)) {
+                return Check.TERMINAL;
+            }
+        }
+        if (n <= MAX_LENGTH && !has(lengths, n)) {
+            return Check.LENGTH;
+        }
+        if (n == 0) {
+            return null;
+        }
+        if (!has(first, tokens[0])) {
+            return Check.FIRST;
+        }
+        if (!has(last, tokens[n - 1])) {
+            return Check.LAST;
+        }
+        if (pairs != null) {
+            for (int i = 1; i < n; i++) {
+                long bit = (long) tokens[i - 1] * terminalCount + tokens[i];
+                if ((pairs[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                    return Check.PAIR;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static boolean has(long[] set, int element) {
+        return (set[element >>> 6] & (1L << element)) != 0;
+    }
+
+    /**
+     * @return words checked since the filter was created
+     */
+    public long checked() {
+        return checked.sum();
+    }
+
+    /**
+     * @param check a condition
+     * @return words rejected by that condition, each word counts for the
+     * first condition it fails only
+     */
+    public long rejected(Check check) {
+        return rejected[check.ordinal()].sum();
+    }
+
+    /**
+     * @param length word length
+     * @return false if the axiom derives no word of that length, true if it
+     * does or the length is beyond MAX_LENGTH
+     */
+    public boolean derivesLength(int length) {
+        return length > MAX_LENGTH || has(lengths, length);
+    }
+}
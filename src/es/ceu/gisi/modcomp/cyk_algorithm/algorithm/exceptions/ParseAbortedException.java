@@ -0,0 +1,72 @@
+package es.ceu.gisi.modcomp.cyk_algorithm.algorithm.exceptions;
+
+/**
+ * Thrown when a parse is stopped at a row boundary because it exceeded one of
+ * its ParseOptions limits or its thread was interrupted. It carries how far
+ * the chart got.
+ */
+public class ParseAbortedException extends CYKAlgorithmException {
+
+    public enum Reason {
+        DEADLINE, MAX_CELLS, MEMORY_BUDGET, INTERRUPTED
+    }
+
+    private final Reason reason;
+    private final int rowsCompleted;
+    private final int rows;
+    private final long cellsFilled;
+    private final long bytesAllocated;
+    private final long elapsedNanos;
+
+    public ParseAbortedException(Reason reason, int rowsCompleted, int rows, long cellsFilled, long bytesAllocated,
+            long elapsedNanos) {
+        this.reason = reason;
+        this.rowsCompleted = rowsCompleted;
+        this.rows = rows;
+        this.cellsFilled = cellsFilled;
+        this.bytesAllocated = bytesAllocated;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * @return limit that stopped the parse
+     */
+    public Reason reason() {
+        return reason;
+    }
+
+    /**
+     * @return rows of the chart filled before stopping
+     */
+    public int rowsCompleted() {
+        return rowsCompleted;
+    }
+
+    /**
+     * @return rows of the whole chart, the length of the word
+     */
+    public int rows() {
+        return rows;
+    }
+
+    public long cellsFilled() {
+        return cellsFilled;
+    }
+
+    /**
+     * @return approximate bytes taken by the chart when it was stopped
+     */
+    public long bytesAllocated() {
+        return bytesAllocated;
+    }
+
+    public long elapsedNanos() {
+        return elapsedNanos;
+    }
+
+    @Override
+    public String getMessage() {
+        return reason + " after " + rowsCompleted + " of " + rows + " rows (" + cellsFilled + " cells, "
+                + bytesAllocated + " bytes, " + elapsedNanos / 1000000 + " ms)";
+    }
+}
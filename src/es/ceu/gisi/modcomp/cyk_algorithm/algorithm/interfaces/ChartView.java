@@ -0,0 +1,80 @@
+package es.ceu.gisi.modcomp.cyk_algorithm.algorithm.interfaces;
+
+import java.util.BitSet;
+
+/**
+ * Vista de solo lectura de una tabla CYK ya calculada, común a las distintas
+ * representaciones de la tabla para poder mostrarlas o recorrerlas.
+ *
+ * La fila i contiene las celdas de las subcadenas de longitud i + 1 y la
+ * columna j la posición en la que empiezan, igual que en la tabla de
+ * CYKAlgorithm.
+ */
+public interface ChartView {
+
+    /**
+     * @return Longitud de la palabra, es decir, número de filas de la tabla.
+     */
+    public int length();
+
+    /**
+     * @return Número de elementos no terminales de la gramática.
+     */
+    public int nonTerminalCount();
+
+    /**
+     * @param nonterminal Identificador del no terminal.
+     * @return Nombre del no terminal.
+     */
+    public String nonTerminalName(int nonterminal);
+
+    /**
+     * Permite recorrer los no terminales de una celda en orden de
+     * identificador.
+     *
+     * @param row Fila de la celda.
+     * @param col Columna de la celda.
+     * @param from Primer identificador a considerar.
+     * @return El menor identificador mayor o igual que from presente en la
+     * celda, o -1 si no hay ninguno.
+     */
+    public int nextNonTerminal(int row, int col, int from);
+
+    /**
+     * Permite recorrer los no terminales de una celda en el orden en que se
+     * muestran. Por defecto es el orden de identificador; la tabla de
+     * CYKAlgorithm los muestra en el orden en que el algoritmo los añade a la
+     * celda.
+     *
+     * @param row Fila de la celda.
+     * @param col Columna de la celda.
+     * @param previous El último identificador devuelto, o -1 para empezar.
+     * @return El siguiente identificador de la celda, o -1 si no hay más.
+     */
+    public default int nextShownNonTerminal(int row, int col, int previous) {
+        return nextNonTerminal(row, col, previous + 1);
+    }
+
+    /**
+     * Devuelve todas las subcadenas de la palabra que deriva un no terminal,
+     * a partir de la tabla ya calculada, sin volver a ejecutar el algoritmo.
+     *
+     * @param nonterminal Identificador del no terminal.
+     * @return Un BitSet por cada longitud: el elemento i tiene activo el bit
+     * j si el no terminal deriva la subcadena de longitud i + 1 que empieza
+     * en la posición j.
+     */
+    public default BitSet[] spans(int nonterminal) {
+        int length = length();
+        BitSet[] spans = new BitSet[length];
+        for (int i = 0; i < length; i++) {
+            spans[i] = new BitSet(length - i);
+            for (int j = 0; j < length - i; j++) {
+                if (nextNonTerminal(i, j, nonterminal) == nonterminal) {
+                    spans[i].set(j);
+                }
+            }
+        }
+        return spans;
+    }
+}
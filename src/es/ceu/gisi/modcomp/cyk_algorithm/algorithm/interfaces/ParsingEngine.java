@@ -0,0 +1,36 @@
+package es.ceu.gisi.modcomp.cyk_algorithm.algorithm.interfaces;
+
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.CompiledGrammar;
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.ParseOptions;
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.exceptions.ParseAbortedException;
+
+/**
+ * Estrategia de análisis que usa CYKAlgorithm para decidir si una palabra
+ * pertenece al lenguaje (ver CYKAlgorithm.setEngine). Todas las
+ * implementaciones deben dar el mismo resultado; sólo cambia la forma de
+ * rellenar la tabla, y con ello el tiempo que tardan según la palabra y la
+ * gramática.
+ *
+ * Las implementaciones deben poder usarse desde varios hilos a la vez.
+ */
+public interface ParsingEngine {
+
+    /**
+     * @return Nombre corto del motor, para trazas y métricas.
+     */
+    public String name();
+
+    /**
+     * Indica si el axioma de la gramática deriva una secuencia de terminales.
+     *
+     * @param grammar Gramática compilada.
+     * @param tokens Identificadores de terminales, ya comprobados por quien
+     * llama; nunca está vacía.
+     * @param options Límites del análisis, que el motor debe comprobar al
+     * menos una vez por fila de la tabla.
+     * @return TRUE si el axioma deriva la secuencia, FALSE en caso contrario.
+     * @throws ParseAbortedException Si se supera un límite de las opciones.
+     */
+    public boolean isDerived(CompiledGrammar grammar, int[] tokens, ParseOptions options)
+            throws ParseAbortedException;
+}
@@ -0,0 +1,160 @@
+package es.ceu.gisi.modcomp.cyk_algorithm.algorithm.test;
+
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.CNFConverter;
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.CYKAlgorithm;
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.exceptions.CYKAlgorithmException;
+import java.util.List;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+/**
+ * Clase que testea la conversión de gramáticas generales a FNC mediante la
+ * clase CNFConverter.
+ */
+public class CNFConverterTest {
+
+    private CNFConverter converter;
+    private CYKAlgorithm cyk;
+
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+
+    @Test
+    public void comprobarProduccionNoDeclarada() throws CYKAlgorithmException {
+        thrown.expect(CYKAlgorithmException.class);
+        converter = new CNFConverter();
+        converter.addNonTerminal('S');
+        converter.addTerminal('a');
+        converter.addProduction('S', "aSb");
+    }
+
+    @Test
+    public void comprobarConversionSinAxioma() throws CYKAlgorithmException {
+        thrown.expect(CYKAlgorithmException.class);
+        converter = new CNFConverter();
+        converter.addNonTerminal('S');
+        converter.addTerminal('a');
+        converter.addProduction('S', "a");
+        converter.getConvertedProductions();
+    }
+
+    @Test
+    public void comprobarReglasLargasYVacias() throws CYKAlgorithmException {
+        converter = new CNFConverter();
+        converter.addNonTerminal('S');
+        converter.addTerminal('a');
+        converter.addTerminal('b');
+        converter.setStartSymbol('S');
+        converter.addProduction('S', "aSb");
+        converter.addProduction('S', "");
+
+        cyk = new CYKAlgorithm();
+        converter.loadInto(cyk);
+
+        assertTrue(converter.derivesEmptyWord());
+        assertTrue(cyk.isDerived("ab"));
+        assertTrue(cyk.isDerived("aaabbb"));
+        assertFalse(cyk.isDerived("aab"));
+        assertFalse(cyk.isDerived("ba"));
+    }
+
+    @Test
+    public void comprobarReglasUnitarias() throws CYKAlgorithmException {
+        converter = new CNFConverter();
+        converter.addNonTerminal('S');
+        converter.addNonTerminal('A');
+        converter.addNonTerminal('B');
+        converter.addTerminal('a');
+        converter.addTerminal('b');
+        converter.setStartSymbol('S');
+        converter.addProduction('S', "A");
+        converter.addProduction('A', "B");
+        converter.addProduction('A', "aA");
+        converter.addProduction('B', "b");
+
+        cyk = new CYKAlgorithm();
+        converter.loadInto(cyk);
+
+        assertFalse(converter.derivesEmptyWord());
+        assertTrue(cyk.isDerived("b"));
+        assertTrue(cyk.isDerived("aaab"));
+        assertFalse(cyk.isDerived("aba"));
+        assertEquals("B::=b", converter.getOrigin('S', "b"));
+        assertEquals("", converter.getOrigin('S', "a"));
+    }
+
+    @Test
+    public void comprobarSufijosCompartidos() throws CYKAlgorithmException {
+        converter = new CNFConverter();
+        converter.addNonTerminal('S');
+        converter.addNonTerminal('A');
+        converter.addNonTerminal('B');
+        converter.addNonTerminal('C');
+        converter.addNonTerminal('D');
+        converter.addTerminal('a');
+        converter.addTerminal('b');
+        converter.addTerminal('c');
+        converter.addTerminal('d');
+        converter.setStartSymbol('S');
+        converter.addProduction('S', "ABCD");
+        converter.addProduction('S', "BBCD");
+        converter.addProduction('S', "CD");
+        converter.addProduction('A', "a");
+        converter.addProduction('B', "b");
+        converter.addProduction('C', "c");
+        converter.addProduction('D', "d");
+
+        List<String> productions = converter.getConvertedProductions();
+
+        // "BCD" y "CD" comparten un único auxiliar cada uno
+        assertEquals(7, productions.size());
+        int auxiliaries = 0;
+        for (String production : productions) {
+            if (converter.isAuxiliary(production.charAt(0))) {
+                auxiliaries++;
+                // los auxiliares compartidos proceden de las dos producciones
+                String rhs = production.substring(4);
+                assertEquals(List.of("S::=ABCD", "S::=BBCD"), converter.getOrigins(production.charAt(0), rhs));
+                assertEquals("S::=ABCD", converter.getOrigin(production.charAt(0), rhs));
+            }
+        }
+        assertEquals(2, auxiliaries);
+        assertEquals(List.of("S::=CD"), converter.getOrigins('S', "CD"));
+
+        cyk = new CYKAlgorithm();
+        converter.loadInto(cyk);
+        assertTrue(cyk.isDerived("abcd"));
+        assertTrue(cyk.isDerived("bbcd"));
+        assertTrue(cyk.isDerived("cd"));
+        assertFalse(cyk.isDerived("bcd"));
+    }
+
+    @Test
+    public void comprobarTerminalesMezclados() throws CYKAlgorithmException {
+        converter = new CNFConverter();
+        converter.addNonTerminal('S');
+        converter.addNonTerminal('E');
+        converter.addTerminal('x');
+        converter.addTerminal('p');
+        converter.addTerminal('l');
+        converter.addTerminal('r');
+        converter.setStartSymbol('S');
+        converter.addProduction('S', "E");
+        converter.addProduction('E', "EpE");
+        converter.addProduction('E', "lEr");
+        converter.addProduction('E', "x");
+
+        cyk = new CYKAlgorithm();
+        converter.loadInto(cyk);
+
+        assertTrue(cyk.isDerived("x"));
+        assertTrue(cyk.isDerived("lxpxr"));
+        assertTrue(cyk.isDerived("xplxpxrpx"));
+        assertFalse(cyk.isDerived("lxp"));
+        assertFalse(cyk.isDerived("xx"));
+    }
+}
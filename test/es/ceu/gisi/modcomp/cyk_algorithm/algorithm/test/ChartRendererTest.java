@@ -0,0 +1,62 @@
+package es.ceu.gisi.modcomp.cyk_algorithm.algorithm.test;
+
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.CYKAlgorithm;
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.Chart;
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.ChartRenderer;
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.exceptions.CYKAlgorithmException;
+import java.io.IOException;
+import java.io.StringWriter;
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+/**
+ * Clase que testea la visualización de la tabla del algoritmo mediante la
+ * clase ChartRenderer.
+ */
+public class ChartRendererTest {
+
+    @Test
+    public void comprobarTabla() throws CYKAlgorithmException {
+        CYKAlgorithm cyk = Gramaticas.ejemplo();
+        // cada celda en el orden en que el algoritmo añade sus no terminales
+        assertEquals("B   AC  AC B  AC \n"
+                + "AS  B   SC AS \n"
+                + "    B   B  \n"
+                + "    SCA \n"
+                + "SAC \n", cyk.algorithmStateToString("baaba"));
+
+        // las demás tablas los muestran en orden de identificador
+        Chart chart = new Chart(cyk.compile());
+        chart.fill(new int[]{1, 0, 0, 1, 0}, 5);
+        assertEquals("B   AC  AC B  AC \n"
+                + "SA  B   SC SA \n"
+                + "    B   B  \n"
+                + "    SAC \n"
+                + "SAC \n", new ChartRenderer().render(chart));
+    }
+
+    @Test
+    public void comprobarTablaTruncada() throws CYKAlgorithmException, IOException {
+        StringWriter out = new StringWriter();
+        Gramaticas.ejemplo().algorithmStateToString("baaba", out, new ChartRenderer().rows(4).columns(1, 2).maxCellLength(2));
+        assertEquals("AC AC \n"
+                + "B  SC \n"
+                + "B  B  \n"
+                + "S. \n"
+                + "[4 of 5 rows, columns 1-2]\n", out.toString());
+    }
+
+    @Test
+    public void comprobarCsvYJson() throws CYKAlgorithmException, IOException {
+        CYKAlgorithm cyk = Gramaticas.ejemplo();
+        StringWriter out = new StringWriter();
+        cyk.algorithmStateToString("baa", out, new ChartRenderer().format(ChartRenderer.Format.CSV));
+        assertEquals("row,column,nonterminals\n0,0,\"B\"\n0,1,\"A C\"\n0,2,\"A C\"\n1,0,\"A S\"\n1,1,\"B\"\n2,0,\"\"\n",
+                out.toString());
+
+        out = new StringWriter();
+        cyk.algorithmStateToString("baa", out, new ChartRenderer().format(ChartRenderer.Format.JSON));
+        assertEquals("{\"length\":3,\"firstColumn\":0,\"truncated\":false,\"rows\":[[[\"B\"],[\"A\",\"C\"],[\"A\",\"C\"]],"
+                + "[[\"A\",\"S\"],[\"B\"]],[[]]]}", out.toString());
+    }
+}
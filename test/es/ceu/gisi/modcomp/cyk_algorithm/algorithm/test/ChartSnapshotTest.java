@@ -0,0 +1,127 @@
+package es.ceu.gisi.modcomp.cyk_algorithm.algorithm.test;
+
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.CYKAlgorithm;
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.Chart;
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.ChartRenderer;
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.ChartSnapshot;
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.exceptions.CYKAlgorithmException;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+/**
+ * Clase que testea el guardado y la lectura de tablas ya calculadas mediante
+ * la clase ChartSnapshot.
+ */
+public class ChartSnapshotTest {
+
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+
+    /**
+     * La misma gramática que Gramaticas.ejemplo(), introducida en otro orden.
+     */
+    private static CYKAlgorithm gramaticaDesordenada() throws CYKAlgorithmException {
+        CYKAlgorithm cyk = new CYKAlgorithm();
+        cyk.addNonTerminal('C');
+        cyk.addNonTerminal('B');
+        cyk.addNonTerminal('A');
+        cyk.addNonTerminal('S');
+        cyk.addTerminal('b');
+        cyk.addTerminal('a');
+        cyk.addProduction('C', "a");
+        cyk.addProduction('C', "AB");
+        cyk.addProduction('B', "b");
+        cyk.addProduction('B', "CC");
+        cyk.addProduction('A', "a");
+        cyk.addProduction('A', "BA");
+        cyk.addProduction('S', "BC");
+        cyk.addProduction('S', "AB");
+        cyk.setStartSymbol('S');
+        return cyk;
+    }
+
+    @Test
+    public void comprobarGuardarYLeer() throws CYKAlgorithmException, IOException {
+        CYKAlgorithm cyk = Gramaticas.ejemplo();
+        ChartSnapshot snapshot = cyk.snapshot("baaba");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        snapshot.write(out);
+        ChartSnapshot read = ChartSnapshot.read(new ByteArrayInputStream(out.toByteArray()));
+
+        Chart chart = new Chart(cyk.compile());
+        chart.fill(new int[]{1, 0, 0, 1, 0}, 5);
+        assertEquals(new ChartRenderer().render(chart), new ChartRenderer().render(read));
+        assertEquals(cyk.compile().fingerprint(), read.fingerprint());
+        assertTrue(read.isDerived());
+        assertEquals("b", read.terminalAt(0));
+        assertFalse(cyk.snapshot("bb").isDerived());
+    }
+
+    @Test
+    public void comprobarFicheroCompacto() throws CYKAlgorithmException, IOException {
+        CYKAlgorithm cyk = Gramaticas.ejemplo();
+        Chart chart = new Chart(cyk.compile());
+        int[] tokens = new int[200];
+        for (int i = 0; i < tokens.length; i++) {
+            tokens[i] = 1;   // b...b, casi todas las celdas vacías
+        }
+        chart.fill(tokens, tokens.length);
+        Path file = Files.createTempFile("chart", ".bin");
+        try {
+            ChartSnapshot.of(chart).write(file);
+            assertTrue(Files.size(file) < 1000);
+            ChartSnapshot read = ChartSnapshot.read(file);
+            assertEquals(new ChartRenderer().render(chart), new ChartRenderer().render(read));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void comprobarArbolDeDerivacion() throws CYKAlgorithmException, IOException {
+        ChartSnapshot snapshot = Gramaticas.ejemplo().snapshot("baaba");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        snapshot.write(out);
+        ChartSnapshot read = ChartSnapshot.read(new ByteArrayInputStream(out.toByteArray()));
+
+        String expected = "(S (B b) (C (A a) (B (C (A a) (B b)) (C a))))";
+        assertEquals(expected, read.derivationTree(Gramaticas.ejemplo().compile()));
+        // la gramática con los símbolos en otro orden tiene la misma huella
+        assertEquals(expected, read.derivationTree(gramaticaDesordenada().compile()));
+        assertNull(Gramaticas.ejemplo().snapshot("bb").derivationTree(Gramaticas.ejemplo().compile()));
+    }
+
+    @Test
+    public void comprobarHuellaDeOtraGramatica() throws CYKAlgorithmException {
+        CYKAlgorithm otra = Gramaticas.ejemplo();
+        otra.addProduction('S', "SS");
+        assertEquals(Gramaticas.ejemplo().compile().fingerprint(), gramaticaDesordenada().compile().fingerprint());
+        assertNotEquals(Gramaticas.ejemplo().compile().fingerprint(), otra.compile().fingerprint());
+
+        thrown.expect(CYKAlgorithmException.class);
+        Gramaticas.ejemplo().snapshot("baaba").derivationTree(otra.compile());
+    }
+
+    @Test
+    public void comprobarFicheroCorrupto() throws CYKAlgorithmException, IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Gramaticas.ejemplo().snapshot("baaba").write(out);
+        byte[] bytes = out.toByteArray();
+        byte[] truncated = new byte[bytes.length - 1];
+        System.arraycopy(bytes, 0, truncated, 0, truncated.length);
+
+        thrown.expect(CYKAlgorithmException.class);
+        ChartSnapshot.read(new ByteArrayInputStream(truncated));
+    }
+}
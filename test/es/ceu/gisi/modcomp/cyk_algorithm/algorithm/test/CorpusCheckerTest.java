@@ -0,0 +1,54 @@
+package es.ceu.gisi.modcomp.cyk_algorithm.algorithm.test;
+
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.CYKAlgorithm;
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.CorpusChecker;
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.exceptions.CYKAlgorithmException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+/**
+ * Clase que testea la comprobación de ficheros de palabras mediante la clase
+ * CorpusChecker.
+ */
+public class CorpusCheckerTest {
+
+    @Test
+    public void comprobarCorpus() throws CYKAlgorithmException, IOException {
+        CYKAlgorithm cyk = Gramaticas.ejemplo();
+        Random random = new Random(7);
+        StringBuilder corpus = new StringBuilder();
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 300; i++) {
+            StringBuilder word = new StringBuilder();
+            int length = 1 + random.nextInt(12);
+            for (int j = 0; j < length; j++) {
+                word.append(random.nextBoolean() ? 'a' : 'b');
+            }
+            corpus.append(word).append(i % 3 == 0 ? "\r\n" : "\n");
+            expected.append(cyk.isDerived(word.toString()) ? '1' : '0').append('\n');
+        }
+        corpus.append("abc\n").append("a".repeat(40)).append('\n').append('\n').append("baaba");
+        expected.append("?\n?\n0\n1\n");
+
+        Path input = Files.createTempFile("corpus", ".txt");
+        Path output = Files.createTempFile("corpus", ".out");
+        try {
+            Files.write(input, corpus.toString().getBytes(StandardCharsets.ISO_8859_1));
+            CorpusChecker.Summary summary = new CorpusChecker(cyk.compile(), 3, 32, 64).check(input, output);
+
+            String results = new String(Files.readAllBytes(output), StandardCharsets.ISO_8859_1);
+            assertEquals(expected.toString(), results);
+            assertEquals(304, summary.lines());
+            assertEquals(2, summary.skipped());
+            assertEquals(results.chars().filter(c -> c == '1').count(), summary.accepted());
+        } finally {
+            Files.delete(input);
+            Files.delete(output);
+        }
+    }
+}
@@ -0,0 +1,422 @@
+package es.ceu.gisi.modcomp.cyk_algorithm.algorithm.test;
+
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.CYKAlgorithm;
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.ChartEngine;
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.ChartRenderer;
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.CompiledGrammar;
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.EarleyEngine;
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.EngineDispatcher;
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.GrammarCache;
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.LiveGrammar;
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.OffHeapChart;
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.ParseOptions;
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.PrefixSharingParser;
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.SlidingWindowRecognizer;
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.exceptions.CYKAlgorithmException;
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.interfaces.ParsingEngine;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Stream;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Clase que compara, con gramáticas FNC y palabras aleatorias, todos los
+ * motores y modos de análisis (tabla serie y paralela, Earley, caché en disco,
+ * análisis incremental por prefijos y por ventana, tabla fuera del heap...)
+ * entre sí y con una implementación de referencia independiente, la primera
+ * versión del algoritmo con String y HashMap (ReferenciaCYK), tanto en el
+ * resultado como en la tabla que muestran. Si alguno difiere, reduce la
+ * gramática y la palabra a un caso mínimo que sigue fallando y lo muestra en
+ * el error.
+ *
+ * Por defecto hace una pasada corta. Con -Dcyk.soak.segundos=N repite
+ * gramáticas nuevas durante N segundos y al terminar escribe las palabras por
+ * segundo de cada motor en build/soak/differential.txt.
+ */
+public class DifferentialTest {
+
+    private static final String NO_TERMINALES = "SABCDEFG";
+    private static final String TERMINALES = "abc";
+
+    /**
+     * un motor o modo: el resultado para una palabra, Boolean si se deriva o
+     * String con la tabla
+     */
+    private interface Motor {
+
+        Object ejecutar(String palabra, int[] tokens) throws Exception;
+    }
+
+    /**
+     * una gramática y una palabra
+     */
+    private static final class Caso {
+
+        private final String noTerminales;
+        private final String terminales;
+        private final List<String> producciones;
+        private final String palabra;
+
+        private Caso(String noTerminales, String terminales, List<String> producciones, String palabra) {
+            this.noTerminales = noTerminales;
+            this.terminales = terminales;
+            this.producciones = producciones;
+            this.palabra = palabra;
+        }
+
+        /**
+         * el mismo caso con las producciones agrupadas por no terminal
+         */
+        private Caso ordenado() {
+            List<String> ordenadas = new ArrayList<>(producciones);
+            ordenadas.sort(Comparator.comparingInt(p -> noTerminales.indexOf(p.charAt(0))));
+            return new Caso(noTerminales, terminales, ordenadas, palabra);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder s = new StringBuilder("palabra \"" + palabra + "\", gramática:");
+            for (String produccion : producciones) {
+                s.append("\n  ").append(produccion.charAt(0)).append("::=").append(produccion.substring(1));
+            }
+            return s.toString();
+        }
+    }
+
+    /**
+     * la referencia y todos los motores para una gramática
+     */
+    private final class Contexto implements AutoCloseable {
+
+        private final ReferenciaCYK referencia;
+        /**
+         * la referencia con las producciones en el orden de los no
+         * terminales, que es el único que conserva una gramática compilada
+         */
+        private final ReferenciaCYK ordenada;
+        private final CompiledGrammar grammar;
+        private final OffHeapChart offHeap;
+        private final Map<String, Motor> motores = new LinkedHashMap<>();
+
+        private Contexto(Caso caso) throws CYKAlgorithmException, IOException {
+            referencia = referencia(caso);
+            ordenada = referencia(caso.ordenado());
+            CYKAlgorithm cyk = construir(caso);
+            grammar = cyk.compile();
+            motores.put("CYK", (palabra, tokens) -> cyk.isDerived(palabra));
+            motores.put("CYK_TABLA", (palabra, tokens) -> cyk.algorithmStateToString(palabra));
+            ParseOptions opciones = new ParseOptions();
+            for (ParsingEngine motor : new ParsingEngine[]{ChartEngine.SERIAL, ChartEngine.RULES,
+                ChartEngine.PARALLEL, EngineDispatcher.calibrated(), new EarleyEngine(false), new EarleyEngine(true)}) {
+                motores.put(motor.name(), (palabra, tokens) -> motor.isDerived(grammar, tokens, opciones));
+            }
+
+            CYKAlgorithm conMotor = construir(caso);
+            conMotor.setEngine(new EarleyEngine());
+            motores.put("CYK+EARLEY_LEO", (palabra, tokens) -> conMotor.isDerived(palabra));
+
+            GrammarCache cache = new GrammarCache(directory);
+            cache.put(grammar);
+            CYKAlgorithm desdeCache = new CYKAlgorithm(cache.get(grammar.fingerprint()));
+            motores.put("CACHE", (palabra, tokens) -> desdeCache.isDerived(palabra));
+            motores.put("CACHE_TABLA", (palabra, tokens) -> desdeCache.algorithmStateToString(palabra));
+
+            PrefixSharingParser prefijos = new PrefixSharingParser(grammar);
+            motores.put("PREFIJOS", (palabra, tokens) -> prefijos.isDerived(tokens));
+            motores.put("VENTANA", (palabra, tokens) -> {
+                SlidingWindowRecognizer ventana = new SlidingWindowRecognizer(grammar, tokens.length);
+                boolean[] completa = new boolean[1];
+                for (int token : tokens) {
+                    ventana.push(token, (inicio, longitud) -> completa[0] = longitud == tokens.length);
+                }
+                return completa[0];
+            });
+            LiveGrammar live = new LiveGrammar(grammar);
+            motores.put("LIVE", (palabra, tokens) -> live.isDerived(palabra));
+
+            offHeap = new OffHeapChart(grammar);
+            motores.put("OFFHEAP", (palabra, tokens) -> {
+                offHeap.fill(tokens, tokens.length);
+                return offHeap.isDerived();
+            });
+            motores.put("OFFHEAP_TABLA", (palabra, tokens) -> {
+                offHeap.fill(tokens, tokens.length);
+                return new ChartRenderer().render(offHeap);
+            });
+        }
+
+        /**
+         * @param medidas tiempo y palabras de cada motor, puede ser null
+         * @return el primer motor que difiere de la referencia y cómo, null
+         * si ninguno o si la referencia no acepta el caso
+         */
+        private String discrepancia(String palabra, Map<String, long[]> medidas) {
+            boolean derivada;
+            String tabla;
+            String tablaOrdenada;
+            String tablaPorId;
+            int[] tokens = new int[palabra.length()];
+            try {
+                long inicio = System.nanoTime();
+                derivada = referencia.isDerived(palabra);
+                medir(medidas, "REFERENCIA", inicio);
+                tabla = referencia.algorithmStateToString(palabra, false);
+                tablaOrdenada = ordenada.algorithmStateToString(palabra, false);
+                tablaPorId = referencia.algorithmStateToString(palabra, true);
+            } catch (CYKAlgorithmException e) {
+                return null;
+            }
+            for (int i = 0; i < tokens.length; i++) {
+                tokens[i] = grammar.terminalId(palabra.charAt(i));
+            }
+            for (Map.Entry<String, Motor> motor : motores.entrySet()) {
+                Object esperado = motor.getKey().equals("CACHE_TABLA") ? tablaOrdenada
+                        : motor.getKey().equals("OFFHEAP_TABLA") ? tablaPorId
+                        : motor.getKey().endsWith("TABLA") ? tabla : (Object) derivada;
+                Object obtenido;
+                try {
+                    long inicio = System.nanoTime();
+                    obtenido = motor.getValue().ejecutar(palabra, tokens.clone());
+                    medir(medidas, motor.getKey(), inicio);
+                } catch (Exception e) {
+                    obtenido = e;
+                }
+                if (!Objects.equals(esperado, obtenido)) {
+                    return motor.getKey() + ": se esperaba " + esperado + " y se obtuvo " + obtenido;
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public void close() {
+            offHeap.close();
+        }
+    }
+
+    private Path directory;
+
+    @Before
+    public void crearDirectorio() throws IOException {
+        directory = Files.createTempDirectory("grammars");
+    }
+
+    @After
+    public void borrarDirectorio() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    private static CYKAlgorithm construir(Caso caso) throws CYKAlgorithmException {
+        CYKAlgorithm cyk = new CYKAlgorithm();
+        for (char noTerminal : caso.noTerminales.toCharArray()) {
+            cyk.addNonTerminal(noTerminal);
+        }
+        for (char terminal : caso.terminales.toCharArray()) {
+            cyk.addTerminal(terminal);
+        }
+        cyk.setStartSymbol('S');
+        for (String produccion : caso.producciones) {
+            cyk.addProduction(produccion.charAt(0), produccion.substring(1));
+        }
+        return cyk;
+    }
+
+    private static ReferenciaCYK referencia(Caso caso) throws CYKAlgorithmException {
+        ReferenciaCYK referencia = new ReferenciaCYK();
+        for (char noTerminal : caso.noTerminales.toCharArray()) {
+            referencia.addNonTerminal(noTerminal);
+        }
+        for (char terminal : caso.terminales.toCharArray()) {
+            referencia.addTerminal(terminal);
+        }
+        referencia.setStartSymbol('S');
+        for (String produccion : caso.producciones) {
+            referencia.addProduction(produccion.charAt(0), produccion.substring(1));
+        }
+        return referencia;
+    }
+
+    private static void medir(Map<String, long[]> medidas, String motor, long inicio) {
+        if (medidas != null) {
+            long[] medida = medidas.computeIfAbsent(motor, m -> new long[2]);
+            medida[0] += System.nanoTime() - inicio;
+            medida[1]++;
+        }
+    }
+
+    private static List<String> gramaticaAleatoria(Random random, String noTerminales, String terminales) {
+        Set<String> producciones = new LinkedHashSet<>();
+        for (char a : noTerminales.toCharArray()) {
+            for (char t : terminales.toCharArray()) {
+                if (random.nextInt(3) == 0) {
+                    producciones.add("" + a + t);
+                }
+            }
+        }
+        int binarias = 1 + random.nextInt(3 * noTerminales.length());
+        for (int r = 0; r < binarias; r++) {
+            producciones.add("" + noTerminales.charAt(random.nextInt(noTerminales.length()))
+                    + noTerminales.charAt(random.nextInt(noTerminales.length()))
+                    + noTerminales.charAt(random.nextInt(noTerminales.length())));
+        }
+        return new ArrayList<>(producciones);
+    }
+
+    /**
+     * una palabra del lenguaje derivada al azar desde el axioma, o null si no
+     * se llega a una de como mucho {@code maximo} símbolos
+     */
+    private static String derivar(Random random, List<String> producciones, char noTerminal, int maximo) {
+        List<String> opciones = new ArrayList<>();
+        for (String produccion : producciones) {
+            if (produccion.charAt(0) == noTerminal && (produccion.length() == 2 || maximo > 1)) {
+                opciones.add(produccion);
+            }
+        }
+        if (opciones.isEmpty() || maximo < 1) {
+            return null;
+        }
+        String produccion = opciones.get(random.nextInt(opciones.size()));
+        if (produccion.length() == 2) {
+            return produccion.substring(1);
+        }
+        String izquierda = derivar(random, producciones, produccion.charAt(1), maximo / 2);
+        String derecha = izquierda == null ? null
+                : derivar(random, producciones, produccion.charAt(2), maximo - izquierda.length());
+        return derecha == null ? null : izquierda + derecha;
+    }
+
+    /**
+     * la mitad de las palabras comparten un prefijo con la anterior, para el
+     * análisis incremental
+     */
+    private static String palabraAleatoria(Random random, String terminales, String anterior) {
+        StringBuilder palabra = new StringBuilder();
+        if (anterior != null && random.nextBoolean()) {
+            palabra.append(anterior, 0, random.nextInt(anterior.length() + 1));
+        }
+        int longitud = random.nextInt(8) == 0 ? 1 + random.nextInt(40) : 1 + random.nextInt(12);
+        while (palabra.length() < longitud) {
+            palabra.append(terminales.charAt(random.nextInt(terminales.length())));
+        }
+        return palabra.toString();
+    }
+
+    /**
+     * quita producciones y símbolos de la palabra mientras siga habiendo
+     * alguna diferencia
+     */
+    private Caso reducir(Caso caso) throws CYKAlgorithmException, IOException {
+        boolean reducido = true;
+        while (reducido) {
+            reducido = false;
+            for (int i = 0; i < caso.producciones.size() && !reducido; i++) {
+                List<String> producciones = new ArrayList<>(caso.producciones);
+                producciones.remove(i);
+                Caso menor = new Caso(caso.noTerminales, caso.terminales, producciones, caso.palabra);
+                if (discrepancia(menor) != null) {
+                    caso = menor;
+                    reducido = true;
+                }
+            }
+            for (int i = 0; i < caso.palabra.length() && caso.palabra.length() > 1 && !reducido; i++) {
+                String palabra = caso.palabra.substring(0, i) + caso.palabra.substring(i + 1);
+                Caso menor = new Caso(caso.noTerminales, caso.terminales, caso.producciones, palabra);
+                if (discrepancia(menor) != null) {
+                    caso = menor;
+                    reducido = true;
+                }
+            }
+        }
+        return caso;
+    }
+
+    /**
+     * la discrepancia de un caso con motores recién creados
+     */
+    private String discrepancia(Caso caso) throws IOException {
+        try (Contexto contexto = new Contexto(caso)) {
+            return contexto.discrepancia(caso.palabra, null);
+        } catch (CYKAlgorithmException e) {
+            return null;   // la gramática reducida ya no es válida
+        }
+    }
+
+    @Test
+    public void comprobarMotoresIgualesQueReferencia() throws CYKAlgorithmException, IOException {
+        Random random = new Random(47);
+        long segundos = Long.getLong("cyk.soak.segundos", 0);
+        long fin = System.nanoTime() + segundos * 1_000_000_000L;
+        Map<String, long[]> medidas = new LinkedHashMap<>();
+        int gramaticas = 0;
+        int derivadas = 0;
+        while (gramaticas < 60 || System.nanoTime() < fin) {
+            String noTerminales = NO_TERMINALES.substring(0, 2 + random.nextInt(NO_TERMINALES.length() - 1));
+            String terminales = TERMINALES.substring(0, 1 + random.nextInt(TERMINALES.length()));
+            List<String> producciones = gramaticaAleatoria(random, noTerminales, terminales);
+            Contexto creado;
+            try {
+                creado = new Contexto(new Caso(noTerminales, terminales, producciones, ""));
+            } catch (CYKAlgorithmException e) {
+                continue;   // gramática sin producciones de algún tipo
+            }
+            try (Contexto contexto = creado) {
+                String anterior = null;
+                for (int w = 0; w < 30; w++) {
+                    String palabra = w % 2 == 0 ? derivar(random, producciones, 'S', 30) : null;
+                    if (palabra == null) {
+                        palabra = palabraAleatoria(random, terminales, anterior);
+                    }
+                    String diferencia = contexto.discrepancia(palabra, medidas);
+                    if (diferencia != null) {
+                        Caso minimo = reducir(new Caso(noTerminales, terminales, producciones, palabra));
+                        String minima = discrepancia(minimo);
+                        fail((minima != null ? minima : diferencia) + "\n" + minimo);
+                    }
+                    if (contexto.referencia.isDerived(palabra)) {
+                        derivadas++;
+                    }
+                    anterior = palabra;
+                }
+            }
+            gramaticas++;
+        }
+        assertTrue(derivadas > 100);
+
+        long palabras = medidas.get("REFERENCIA")[1];
+        StringBuilder informe = new StringBuilder("palabras por segundo (" + gramaticas + " gramáticas, "
+                + palabras + " palabras):");
+        for (Map.Entry<String, long[]> medida : medidas.entrySet()) {
+            assertEquals(medida.getKey(), palabras, medida.getValue()[1]);
+            informe.append(String.format("%n  %-16s %12.0f", medida.getKey(),
+                    medida.getValue()[1] * 1e9 / Math.max(1, medida.getValue()[0])));
+        }
+        if (segundos > 0) {
+            Path salida = Paths.get("build", "soak", "differential.txt");
+            Files.createDirectories(salida.getParent());
+            Files.write(salida, (informe + System.lineSeparator()).getBytes(StandardCharsets.UTF_8));
+        }
+    }
+}
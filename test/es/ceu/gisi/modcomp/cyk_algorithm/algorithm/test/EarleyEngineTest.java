@@ -0,0 +1,138 @@
+package es.ceu.gisi.modcomp.cyk_algorithm.algorithm.test;
+
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.CYKAlgorithm;
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.Chart;
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.CompiledGrammar;
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.EarleyEngine;
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.ParseOptions;
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.exceptions.CYKAlgorithmException;
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.exceptions.ParseAbortedException;
+import java.util.Random;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+
+/**
+ * Clase que testea el motor de Earley (EarleyEngine) comparándolo con la
+ * tabla de CYK.
+ */
+public class EarleyEngineTest {
+
+    private static final EarleyEngine[] MOTORES = {new EarleyEngine(false), new EarleyEngine(true)};
+
+    /**
+     * gramática de 70 no terminales (más de una palabra por conjunto) y
+     * reglas binarias al azar
+     */
+    private static CompiledGrammar gramaticaAleatoria(Random random) throws CYKAlgorithmException {
+        CYKAlgorithm cyk = new CYKAlgorithm();
+        for (int a = 0; a < 70; a++) {
+            cyk.addNonTerminal("N" + a);
+        }
+        cyk.addTerminal("a");
+        cyk.addTerminal("b");
+        cyk.setStartSymbol("N0");
+        for (int a = 0; a < 70; a++) {
+            cyk.addProduction("N" + a, random.nextBoolean() ? "a" : "b");
+        }
+        for (int r = 0; r < 300; r++) {
+            cyk.addProduction("N" + random.nextInt(70), "N" + random.nextInt(70), "N" + random.nextInt(70));
+        }
+        return cyk.compile();
+    }
+
+    private static void comparar(CompiledGrammar grammar, Random random, int words, int maxLength)
+            throws ParseAbortedException {
+        Chart chart = new Chart(grammar);
+        ParseOptions options = new ParseOptions();
+        for (int w = 0; w < words; w++) {
+            int[] tokens = new int[1 + random.nextInt(maxLength)];
+            for (int i = 0; i < tokens.length; i++) {
+                tokens[i] = random.nextInt(2);
+            }
+            chart.fill(tokens, tokens.length);
+            for (EarleyEngine engine : MOTORES) {
+                assertEquals(engine.name(), chart.isDerived(), engine.isDerived(grammar, tokens, options));
+            }
+        }
+    }
+
+    @Test
+    public void comprobarIgualQueCYK() throws CYKAlgorithmException {
+        Random random = new Random(46);
+        comparar(Gramaticas.ejemplo().compile(), random, 2000, 14);
+        for (int g = 0; g < 5; g++) {
+            comparar(gramaticaAleatoria(random), random, 200, 30);
+        }
+    }
+
+    /**
+     * S::=AS|a, A::=a|b: una recursión por la derecha de 20000 niveles
+     */
+    @Test
+    public void comprobarPalabrasLargas() throws CYKAlgorithmException {
+        CYKAlgorithm lista = new CYKAlgorithm();
+        lista.addNonTerminal('S');
+        lista.addNonTerminal('A');
+        lista.addTerminal('a');
+        lista.addTerminal('b');
+        lista.setStartSymbol('S');
+        lista.addProduction('S', "AS");
+        lista.addProduction('S', "a");
+        lista.addProduction('A', "a");
+        lista.addProduction('A', "b");
+        CompiledGrammar grammar = lista.compile();
+        int[] tokens = new int[20000];
+        for (int i = 0; i < tokens.length; i += 3) {
+            tokens[i] = 1;
+        }
+        tokens[tokens.length - 1] = 0;
+        for (EarleyEngine engine : MOTORES) {
+            assertTrue(engine.name(), engine.isDerived(grammar, tokens, new ParseOptions()));
+        }
+        tokens[tokens.length - 1] = 1;
+        for (EarleyEngine engine : MOTORES) {
+            assertFalse(engine.name(), engine.isDerived(grammar, tokens, new ParseOptions()));
+        }
+    }
+
+    @Test
+    public void comprobarMotorEnCYKAlgorithm() throws CYKAlgorithmException {
+        CYKAlgorithm cyk = Gramaticas.ejemplo();
+        cyk.setEngine(new EarleyEngine());
+        assertTrue(cyk.isDerived("baaba"));
+        assertFalse(cyk.isDerived("abab"));
+        try {
+            cyk.isDerived("baababaab", new ParseOptions().maxCells(3));
+            fail();
+        } catch (ParseAbortedException e) {
+            assertEquals(ParseAbortedException.Reason.MAX_CELLS, e.reason());
+        }
+    }
+
+    /**
+     * los límites cuentan también el último conjunto y la memoria reservada
+     */
+    @Test
+    public void comprobarLimites() throws CYKAlgorithmException {
+        CompiledGrammar grammar = Gramaticas.ejemplo().compile();
+        for (EarleyEngine engine : MOTORES) {
+            try {
+                engine.isDerived(grammar, new int[]{0}, new ParseOptions().maxCells(1));
+                fail();
+            } catch (ParseAbortedException e) {
+                assertEquals(ParseAbortedException.Reason.MAX_CELLS, e.reason());
+            }
+            try {
+                engine.isDerived(grammar, new int[4000], new ParseOptions().memoryBudget(16 * 1024));
+                fail();
+            } catch (ParseAbortedException e) {
+                assertEquals(ParseAbortedException.Reason.MEMORY_BUDGET, e.reason());
+                assertEquals(0, e.rowsCompleted());
+            }
+            assertTrue(engine.isDerived(grammar, new int[]{1, 0, 0, 1, 0}, new ParseOptions().memoryBudget(1 << 20)));
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package es.ceu.gisi.modcomp.cyk_algorithm.algorithm.test;
+
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.CYKAlgorithm;
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.Chart;
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.ChartEngine;
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.CompiledGrammar;
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.EngineDispatcher;
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.OffHeapChart;
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.ParseOptions;
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.exceptions.CYKAlgorithmException;
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.exceptions.ParseAbortedException;
+import java.util.Random;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+
+/**
+ * Clase que testea los motores de análisis (ChartEngine) y la elección del
+ * motor en cada llamada (EngineDispatcher).
+ */
+public class EngineDispatcherTest {
+
+    @Test
+    public void comprobarMotores() throws CYKAlgorithmException {
+        CompiledGrammar grammar = Gramaticas.ejemplo().compile();
+        Chart chart = new Chart(grammar);
+        Random random = new Random(42);
+        ParseOptions options = new ParseOptions();
+        // las palabras de 300 símbolos rellenan en paralelo las filas largas
+        for (int length : new int[]{1, 2, 5, 17, 60, 300, 301}) {
+            for (int w = 0; w < 4; w++) {
+                int[] tokens = new int[length];
+                for (int i = 0; i < length; i++) {
+                    tokens[i] = random.nextInt(2);
+                }
+                chart.fill(tokens, length);
+                for (ChartEngine engine : ChartEngine.values()) {
+                    assertEquals(engine.name(), chart.isDerived(), engine.isDerived(grammar, tokens, options));
+                }
+            }
+        }
+    }
+
+    /**
+     * las celdas tienen más parejas de símbolos que reglas binarias la
+     * gramática, así que todas las divisiones se combinan regla a regla
+     */
+    @Test
+    public void comprobarCeldasDensas() throws CYKAlgorithmException {
+        CYKAlgorithm cyk = new CYKAlgorithm();
+        cyk.addTerminal("a");
+        for (String name : new String[]{"S", "X", "Y", "P1", "P2", "P3", "P4", "P5", "P6", "P7"}) {
+            cyk.addNonTerminal(name);
+            if (!name.equals("S")) {
+                cyk.addProduction(name, "a");
+            }
+        }
+        cyk.setStartSymbol("S");
+        cyk.addProduction("S", "X", "Y");
+        cyk.addProduction("X", "X", "X");
+        cyk.addProduction("P1", "P2", "P2");
+
+        CompiledGrammar grammar = cyk.compile();
+        assertTrue(grammar.combinesByRules(2, 2));
+        assertFalse(grammar.combinesByRules(1, 3));
+        Chart chart = new Chart(grammar);
+        assertFalse(cyk.isDerived("a"));
+        try (OffHeapChart offHeap = new OffHeapChart(grammar)) {
+            for (int length = 2; length < 30; length++) {
+                assertTrue(cyk.isDerived("a".repeat(length)));
+                for (ChartEngine engine : ChartEngine.values()) {
+                    assertTrue(engine.isDerived(grammar, new int[length], new ParseOptions()));
+                }
+                long splits = (long) (length - 1) * length * (length + 1) / 6;
+                chart.fill(new int[length], length);
+                assertEquals(splits, chart.ruleDrivenSplits());
+                offHeap.fill(new int[length], length);
+                assertEquals(splits, offHeap.ruleDrivenSplits());
+            }
+        }
+    }
+
+    /**
+     * con pocas parejas de símbolos por división se combina pareja a pareja
+     */
+    @Test
+    public void comprobarCeldasDispersas() throws CYKAlgorithmException {
+        CompiledGrammar grammar = Gramaticas.ejemplo().compile();
+        int[] tokens = {grammar.terminalId('a'), grammar.terminalId('b')};
+        // {A,C} x {B}: 2 parejas para 5 reglas binarias
+        assertFalse(grammar.combinesByRules(2, 1));
+        Chart chart = new Chart(grammar);
+        chart.fill(tokens, 2);
+        assertTrue(chart.isDerived());
+        assertEquals(0, chart.ruleDrivenSplits());
+        try (OffHeapChart offHeap = new OffHeapChart(grammar)) {
+            offHeap.fill(tokens, 2);
+            assertTrue(offHeap.isDerived());
+            assertEquals(0, offHeap.ruleDrivenSplits());
+        }
+    }
+
+    @Test
+    public void comprobarEleccion() throws CYKAlgorithmException {
+        CompiledGrammar grammar = Gramaticas.ejemplo().compile();
+        assertEquals(5.0 / 16, grammar.ruleDensity(), 0);
+
+        EngineDispatcher dispatcher = new EngineDispatcher(Long.MAX_VALUE, 0.5);
+        assertEquals(ChartEngine.RULES, dispatcher.choose(grammar, 10));
+        dispatcher = new EngineDispatcher(1000, 0.1);
+        assertEquals(ChartEngine.SERIAL, dispatcher.choose(grammar, 5));
+        if (Runtime.getRuntime().availableProcessors() > 1) {
+            assertEquals(ChartEngine.PARALLEL, dispatcher.choose(grammar, 100));
+        }
+        dispatcher = new EngineDispatcher(Long.MAX_VALUE, -1);
+        assertEquals(ChartEngine.SERIAL, dispatcher.choose(grammar, 100000));
+
+        EngineDispatcher calibrated = EngineDispatcher.calibrated();
+        assertSame(calibrated, EngineDispatcher.calibrated());
+        assertTrue(calibrated.parallelMinWork() > 0);
+    }
+
+    @Test
+    public void comprobarMotorEnCYKAlgorithm() throws CYKAlgorithmException {
+        CYKAlgorithm cyk = Gramaticas.ejemplo();
+        EngineDispatcher dispatcher = new EngineDispatcher(Long.MAX_VALUE, 0.5);
+        cyk.setEngine(dispatcher);
+        assertTrue(cyk.isDerived("baaba"));
+        assertFalse(cyk.isDerived("bb"));
+        assertTrue(cyk.isDerived(new int[]{1, 0, 0, 1, 0}));
+        assertEquals(3, dispatcher.chosen(ChartEngine.RULES));
+        assertEquals(0, dispatcher.chosen(ChartEngine.SERIAL));
+
+        try {
+            cyk.isDerived("ab".repeat(50), new ParseOptions().maxCells(100));
+            fail("el motor debe comprobar los límites");
+        } catch (ParseAbortedException e) {
+            assertEquals(ParseAbortedException.Reason.MAX_CELLS, e.reason());
+        }
+        cyk.setEngine(null);
+        assertTrue(cyk.isDerived("baaba"));
+        assertEquals(4, dispatcher.chosen(ChartEngine.RULES));   // la llamada abortada también cuenta
+    }
+}
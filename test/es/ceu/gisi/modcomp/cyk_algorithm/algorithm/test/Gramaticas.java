@@ -0,0 +1,37 @@
+package es.ceu.gisi.modcomp.cyk_algorithm.algorithm.test;
+
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.CYKAlgorithm;
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.exceptions.CYKAlgorithmException;
+
+/**
+ * Gramáticas comunes a los tests.
+ */
+final class Gramaticas {
+
+    private Gramaticas() {
+    }
+
+    /**
+     * la gramática de ejemplo del enunciado: S::=AB|BC, A::=BA|a, B::=CC|b,
+     * C::=AB|a
+     */
+    static CYKAlgorithm ejemplo() throws CYKAlgorithmException {
+        CYKAlgorithm cyk = new CYKAlgorithm();
+        cyk.addNonTerminal('S');
+        cyk.addNonTerminal('A');
+        cyk.addNonTerminal('B');
+        cyk.addNonTerminal('C');
+        cyk.addTerminal('a');
+        cyk.addTerminal('b');
+        cyk.setStartSymbol('S');
+        cyk.addProduction('S', "AB");
+        cyk.addProduction('S', "BC");
+        cyk.addProduction('A', "BA");
+        cyk.addProduction('A', "a");
+        cyk.addProduction('B', "CC");
+        cyk.addProduction('B', "b");
+        cyk.addProduction('C', "AB");
+        cyk.addProduction('C', "a");
+        return cyk;
+    }
+}
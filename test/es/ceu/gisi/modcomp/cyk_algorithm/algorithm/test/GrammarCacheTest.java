@@ -0,0 +1,103 @@
+package es.ceu.gisi.modcomp.cyk_algorithm.algorithm.test;
+
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.CYKAlgorithm;
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.CompiledGrammar;
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.GrammarCache;
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.exceptions.CYKAlgorithmException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Clase que testea la huella de las gramáticas y la caché en disco de
+ * gramáticas compiladas (GrammarCache).
+ */
+public class GrammarCacheTest {
+
+    private Path directory;
+
+    @Before
+    public void crearDirectorio() throws IOException {
+        directory = Files.createTempDirectory("grammars");
+    }
+
+    @After
+    public void borrarDirectorio() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    @Test
+    public void comprobarHuella() throws CYKAlgorithmException {
+        CYKAlgorithm cyk = Gramaticas.ejemplo();
+        long huella = cyk.fingerprint();
+        assertEquals(huella, cyk.compile().fingerprint());
+        assertEquals(huella, new CYKAlgorithm(cyk.compile()).fingerprint());
+
+        CYKAlgorithm otroOrden = new CYKAlgorithm();
+        otroOrden.addTerminal('b');
+        otroOrden.addTerminal('a');
+        otroOrden.addNonTerminal('C');
+        otroOrden.addNonTerminal('B');
+        otroOrden.addNonTerminal('A');
+        otroOrden.addNonTerminal('S');
+        otroOrden.addProduction('C', "a");
+        otroOrden.addProduction('C', "AB");
+        otroOrden.addProduction('B', "b");
+        otroOrden.addProduction('B', "CC");
+        otroOrden.addProduction('A', "a");
+        otroOrden.addProduction('A', "BA");
+        otroOrden.addProduction('S', "BC");
+        otroOrden.addProduction('S', "AB");
+        otroOrden.setStartSymbol('S');
+        assertEquals(huella, otroOrden.fingerprint());
+
+        otroOrden.setStartSymbol('A');
+        assertFalse(huella == otroOrden.fingerprint());
+    }
+
+    @Test
+    public void comprobarCacheEntreProcesos() throws CYKAlgorithmException, IOException {
+        CYKAlgorithm cyk = Gramaticas.ejemplo();
+        CompiledGrammar compilada = new GrammarCache(directory).compile(cyk);
+        assertTrue(Files.exists(new GrammarCache(directory).path(cyk.fingerprint())));
+
+        // otra instancia (otro proceso) lee el fichero en vez de compilar
+        GrammarCache otra = new GrammarCache(directory);
+        CompiledGrammar leida = otra.compile(Gramaticas.ejemplo());
+        assertNotSame(compilada, leida);
+        assertEquals(cyk.fingerprint(), leida.fingerprint());
+        assertSame(leida, otra.get(cyk.fingerprint()));
+
+        CYKAlgorithm desdeCache = new CYKAlgorithm(leida);
+        assertTrue(desdeCache.isDerived("baaba"));
+        assertFalse(desdeCache.isDerived("bb"));
+    }
+
+    @Test
+    public void comprobarFicheroDanado() throws CYKAlgorithmException, IOException {
+        CYKAlgorithm cyk = Gramaticas.ejemplo();
+        GrammarCache cache = new GrammarCache(directory);
+        assertNull(cache.get(cyk.fingerprint()));
+        Files.write(cache.path(cyk.fingerprint()), new byte[]{1, 2, 3});
+
+        assertNull(new GrammarCache(directory).get(cyk.fingerprint()));
+        CompiledGrammar grammar = new GrammarCache(directory).compile(cyk);
+        assertEquals(cyk.fingerprint(), grammar.fingerprint());
+        assertEquals(cyk.fingerprint(), new GrammarCache(directory).get(cyk.fingerprint()).fingerprint());
+    }
+}
@@ -0,0 +1,133 @@
+package es.ceu.gisi.modcomp.cyk_algorithm.algorithm.test;
+
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.CYKAlgorithm;
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.CompiledGrammar;
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.GrammarLoader;
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.exceptions.CYKAlgorithmException;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+/**
+ * Clase que testea la carga de gramáticas en formato texto y binario mediante
+ * la clase GrammarLoader.
+ */
+public class GrammarLoaderTest {
+
+    private CYKAlgorithm cyk;
+
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+
+    @Test
+    public void comprobarCargaDesdeGetGrammar() throws CYKAlgorithmException, IOException {
+        String text = Gramaticas.ejemplo().getGrammar();
+        cyk = new CYKAlgorithm();
+        GrammarLoader.load(new StringReader(text), cyk);
+
+        assertEquals(text, cyk.getGrammar());
+        assertEquals("S::=AB|BC", cyk.getProductions('S'));
+        assertTrue(cyk.isDerived("baaba"));
+        assertFalse(cyk.isDerived("bbb"));
+    }
+
+    @Test
+    public void comprobarCargaSinCabecera() throws CYKAlgorithmException, IOException {
+        cyk = new CYKAlgorithm();
+        GrammarLoader.load(new StringReader("Expr::=Expr Tail|num\nTail::=Op Expr\nOp::=plus\n"), cyk);
+
+        assertEquals("G=({num,plus},{Expr,Tail,Op},Expr,P)\nP={\nExpr::=Expr Tail|num\nTail::=Op Expr\nOp::=plus\n}",
+                cyk.getGrammar());
+        int num = cyk.compile().terminalId("num");
+        int plus = cyk.compile().terminalId("plus");
+        assertTrue(cyk.isDerived(new int[]{num, plus, num}));
+    }
+
+    @Test
+    public void comprobarCargaNoValida() throws CYKAlgorithmException, IOException {
+        thrown.expect(CYKAlgorithmException.class);
+        cyk = new CYKAlgorithm();
+        GrammarLoader.load(new StringReader("G=({a},{S},S,P)\nP={\nS::=aa\n}"), cyk);
+    }
+
+    @Test
+    public void comprobarFormatoBinario() throws CYKAlgorithmException, IOException {
+        Path file = Files.createTempFile("grammar", ".cykg");
+        try {
+            GrammarLoader.writeCompiled(Gramaticas.ejemplo().compile(), file);
+            CompiledGrammar grammar = GrammarLoader.readCompiled(file);
+            assertEquals(4, grammar.nonTerminalCount());
+            assertEquals(2, grammar.terminalCount());
+            assertEquals("S", grammar.nonTerminalName(grammar.startSymbol()));
+
+            cyk = new CYKAlgorithm(grammar);
+            int a = grammar.terminalId("a");
+            int b = grammar.terminalId("b");
+            assertTrue(cyk.isDerived(new int[]{b, a, a, b, a}));
+            assertFalse(cyk.isDerived(new int[]{b, b, b}));
+            assertTrue(cyk.isDerived("baaba"));
+            assertEquals("S::=AB|BC", cyk.getProductions('S'));
+            assertEquals("A::=a|BA", cyk.getProductions('A'));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void comprobarFormatoBinarioNoValido() throws CYKAlgorithmException, IOException {
+        thrown.expect(CYKAlgorithmException.class);
+        Path file = Files.createTempFile("grammar", ".cykg");
+        try {
+            Files.write(file, new byte[]{1, 2, 3, 4, 5, 6, 7, 8});
+            GrammarLoader.readCompiled(file);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * tablas corruptas que antes se cargaban y fallaban al analizar: la
+     * gramática de ejemplo tiene la cabecera en los bytes 0-31 (16 huecos para
+     * sus 4 parejas B C), los conjuntos de los terminales en 32-47, las
+     * claves de las parejas en 48-175, los desplazamientos en 176-195, los
+     * símbolos derecho e izquierdo de las reglas en 196-215 y 216-235, los
+     * símbolos izquierdos en 236-247 y las reglas de cada pareja en 376-395
+     */
+    @Test
+    public void comprobarFormatoBinarioCorrupto() throws CYKAlgorithmException, IOException {
+        Path file = Files.createTempFile("grammar", ".cykg");
+        try {
+            GrammarLoader.writeCompiled(Gramaticas.ejemplo().compile(), file);
+            byte[] original = Files.readAllBytes(file);
+            int[][] cambios = {
+                {28, 1},      // 17 huecos, no es potencia de dos
+                {33, 0x04},   // no terminal 10 en el conjunto de a
+                {180, 7},     // desplazamientos no crecientes
+                {196, 4},     // símbolo derecho fuera de rango
+                {219, 0x80},  // símbolo izquierdo negativo
+                {236, 2},     // C en lugar de A como primer símbolo izquierdo
+                {379, 0x80}}; // parte izquierda negativa en una pareja
+            for (int[] cambio : cambios) {
+                byte[] corrupto = original.clone();
+                corrupto[cambio[0]] |= (byte) cambio[1];
+                Files.write(file, corrupto);
+                try {
+                    GrammarLoader.readCompiled(file);
+                    fail("byte " + cambio[0]);
+                } catch (CYKAlgorithmException e) {
+                    // esperada
+                }
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
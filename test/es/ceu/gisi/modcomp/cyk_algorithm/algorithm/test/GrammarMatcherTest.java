@@ -0,0 +1,76 @@
+package es.ceu.gisi.modcomp.cyk_algorithm.algorithm.test;
+
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.CYKAlgorithm;
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.GrammarMatcher;
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.exceptions.CYKAlgorithmException;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * Clase que testea la comprobación de una palabra contra varias gramáticas a
+ * la vez mediante la clase GrammarMatcher.
+ */
+public class GrammarMatcherTest {
+
+    /**
+     * S::=SS|a, todas las palabras de aes.
+     */
+    private static CYKAlgorithm gramaticaAes() throws CYKAlgorithmException {
+        CYKAlgorithm cyk = new CYKAlgorithm();
+        cyk.addNonTerminal('S');
+        cyk.addTerminal('a');
+        cyk.setStartSymbol('S');
+        cyk.addProduction('S', "SS");
+        cyk.addProduction('S', "a");
+        return cyk;
+    }
+
+    /**
+     * S::=AC|AX, X::=SC, A::=a, C::=c: a^n c^n.
+     */
+    private static CYKAlgorithm gramaticaAnCn() throws CYKAlgorithmException {
+        CYKAlgorithm cyk = new CYKAlgorithm();
+        cyk.addNonTerminal('S');
+        cyk.addNonTerminal('X');
+        cyk.addNonTerminal('A');
+        cyk.addNonTerminal('C');
+        cyk.addTerminal('c');
+        cyk.addTerminal('a');
+        cyk.setStartSymbol('S');
+        cyk.addProduction('S', "AC");
+        cyk.addProduction('S', "AX");
+        cyk.addProduction('X', "SC");
+        cyk.addProduction('A', "a");
+        cyk.addProduction('C', "c");
+        return cyk;
+    }
+
+    @Test
+    public void comprobarVariasGramaticas() throws CYKAlgorithmException {
+        List<CYKAlgorithm> gramaticas = Arrays.asList(Gramaticas.ejemplo(), gramaticaAes(), gramaticaAnCn());
+        GrammarMatcher matcher = new GrammarMatcher(Arrays.asList(gramaticas.get(0).compile(),
+                gramaticas.get(1).compile(), gramaticas.get(2).compile()));
+        assertEquals(3, matcher.grammarCount());
+
+        for (String word : new String[]{"baaba", "aaaa", "aacc", "ab", "a", "ac", "aaccc", "bb", "abc"}) {
+            BitSet expected = new BitSet();
+            for (int g = 0; g < gramaticas.size(); g++) {
+                try {
+                    if (gramaticas.get(g).isDerived(word)) {
+                        expected.set(g);
+                    }
+                } catch (CYKAlgorithmException e) {
+                    // la palabra tiene terminales que no son de la gramática
+                }
+            }
+            assertEquals(word, expected, matcher.match(word));
+        }
+        assertTrue(new GrammarMatcher(matcher).match("aaaa").get(1));
+        assertTrue(matcher.match("xyz").isEmpty());
+        assertTrue(matcher.match("").isEmpty());
+    }
+}
@@ -0,0 +1,110 @@
+package es.ceu.gisi.modcomp.cyk_algorithm.algorithm.test;
+
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.CYKAlgorithm;
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.CompiledGrammar;
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.LiveGrammar;
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.exceptions.CYKAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * Clase que testea el cambio en caliente de la gramática (LiveGrammar).
+ */
+public class LiveGrammarTest {
+
+    /**
+     * a^n b^n con n >= 1
+     */
+    private static CYKAlgorithm gramaticaAnBn() throws CYKAlgorithmException {
+        CYKAlgorithm cyk = new CYKAlgorithm();
+        cyk.addNonTerminal('S');
+        cyk.addNonTerminal('T');
+        cyk.addNonTerminal('A');
+        cyk.addNonTerminal('B');
+        cyk.addTerminal('b');   // otro orden de identificadores que la de ejemplo
+        cyk.addTerminal('a');
+        cyk.setStartSymbol('S');
+        cyk.addProduction('S', "AB");
+        cyk.addProduction('S', "AT");
+        cyk.addProduction('T', "SB");
+        cyk.addProduction('A', "a");
+        cyk.addProduction('B', "b");
+        return cyk;
+    }
+
+    @Test
+    public void comprobarPublicacion() throws CYKAlgorithmException {
+        CYKAlgorithm ejemplo = Gramaticas.ejemplo();
+        CompiledGrammar primera = ejemplo.compile();
+        LiveGrammar live = new LiveGrammar(primera);
+        assertTrue(live.isDerived("baaba"));
+        assertFalse(live.isDerived("aabb"));
+        assertEquals(0, live.version());
+
+        assertSame(primera, live.publish(gramaticaAnBn()));
+        assertEquals(1, live.version());
+        assertFalse(live.isDerived("baaba"));
+        assertTrue(live.isDerived("aabb"));
+        assertTrue(live.isDerived(new String[]{"a", "b"}));
+        assertFalse(live.isDerived("abc"));
+
+        ejemplo.addProduction('S', "AA");   // no afecta a la versión publicada
+        assertFalse(live.compareAndPublish(primera, ejemplo.compile()));
+        assertTrue(live.compareAndPublish(live.current(), ejemplo.compile()));
+        assertEquals(2, live.version());
+        assertTrue(live.isDerived("aa"));
+    }
+
+    @Test
+    public void comprobarCambiosConcurrentes() throws Exception {
+        CYKAlgorithm ejemplo = Gramaticas.ejemplo();
+        CYKAlgorithm anbn = gramaticaAnBn();
+        CompiledGrammar[] versiones = {ejemplo.compile(), anbn.compile()};
+        String[] palabras = {"baaba", "aabb", "ab", "bb", "aaabbb", "abab", "a"};
+        boolean[] enEjemplo = new boolean[palabras.length];
+        boolean[] enAnBn = new boolean[palabras.length];
+        for (int w = 0; w < palabras.length; w++) {
+            enEjemplo[w] = ejemplo.isDerived(palabras[w]);
+            enAnBn[w] = anbn.isDerived(palabras[w]);
+        }
+        LiveGrammar live = new LiveGrammar(versiones[0]);
+
+        AtomicBoolean fin = new AtomicBoolean();
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        List<Thread> lectores = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Thread lector = new Thread(() -> {
+                try {
+                    while (!fin.get()) {
+                        for (int w = 0; w < palabras.length; w++) {
+                            boolean derivada = live.isDerived(palabras[w]);
+                            // el resultado es el de alguna de las dos versiones
+                            assertTrue(palabras[w], derivada == enEjemplo[w] || derivada == enAnBn[w]);
+                        }
+                    }
+                } catch (Throwable e) {
+                    error.compareAndSet(null, e);
+                }
+            });
+            lector.start();
+            lectores.add(lector);
+        }
+        for (int v = 1; v <= 2000; v++) {
+            live.publish(versiones[v % 2]);
+        }
+        fin.set(true);
+        for (Thread lector : lectores) {
+            lector.join();
+        }
+        assertNull(error.get());
+        assertEquals(2000, live.version());
+    }
+}
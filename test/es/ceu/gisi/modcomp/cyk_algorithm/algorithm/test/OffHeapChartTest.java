@@ -0,0 +1,106 @@
+package es.ceu.gisi.modcomp.cyk_algorithm.algorithm.test;
+
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.Chart;
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.CompiledGrammar;
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.OffHeapChart;
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.exceptions.CYKAlgorithmException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.stream.Stream;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Clase que testea la tabla fuera del heap (OffHeapChart), en memoria directa
+ * y en fichero proyectado.
+ */
+public class OffHeapChartTest {
+
+    private Path directory;
+
+    @Before
+    public void crearDirectorio() throws IOException {
+        directory = Files.createTempDirectory("charts");
+    }
+
+    @After
+    public void borrarDirectorio() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    private static long ficheros(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+
+    /**
+     * rellena palabras aleatorias, de mayor a menor para reutilizar la
+     * memoria, y compara todas las celdas con las de Chart
+     */
+    private static void compararConChart(CompiledGrammar grammar, OffHeapChart offHeap) {
+        Chart chart = new Chart(grammar);
+        Random random = new Random(41);
+        for (int length = 40; length >= 0; length -= 3) {
+            int[] tokens = new int[length];
+            for (int i = 0; i < length; i++) {
+                tokens[i] = random.nextInt(2);
+            }
+            chart.fill(tokens, length);
+            offHeap.fill(tokens, length);
+            assertEquals(chart.length(), offHeap.length());
+            assertEquals(chart.isDerived(), offHeap.isDerived());
+            for (int i = 0; i < length; i++) {
+                for (int j = 0; j < length - i; j++) {
+                    for (int a = 0; a < grammar.nonTerminalCount(); a++) {
+                        assertEquals(chart.contains(i, j, a), offHeap.contains(i, j, a));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void comprobarMemoriaDirecta() throws Exception {
+        CompiledGrammar grammar = Gramaticas.ejemplo().compile();
+        try (OffHeapChart chart = new OffHeapChart(grammar, Long.MAX_VALUE, directory)) {
+            compararConChart(grammar, chart);
+            assertFalse(chart.isMapped());
+            assertEquals(0, ficheros(directory));
+        }
+    }
+
+    @Test
+    public void comprobarFicheroProyectado() throws Exception {
+        CompiledGrammar grammar = Gramaticas.ejemplo().compile();
+        OffHeapChart chart = new OffHeapChart(grammar, 0, directory);
+        compararConChart(grammar, chart);
+        assertTrue(chart.isMapped());
+        assertEquals(40 * 41 / 2 * 8, chart.capacityBytes());   // una celda de 8 bytes por subcadena
+
+        chart.fill(new int[]{1, 0, 0, 1, 0}, 5);   // baaba
+        assertTrue(chart.isDerived());
+        assertTrue(chart.snapshot().isDerived());
+
+        chart.close();
+        assertEquals(0, ficheros(directory));
+        assertEquals(0, chart.capacityBytes());
+        try {
+            chart.contains(0, 0, 0);
+            fail("la tabla está cerrada");
+        } catch (IllegalStateException e) {
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package es.ceu.gisi.modcomp.cyk_algorithm.algorithm.test;
+
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.CYKAlgorithm;
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.Chart;
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.ParseOptions;
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.exceptions.CYKAlgorithmException;
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.exceptions.ParseAbortedException;
+import java.time.Duration;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+
+/**
+ * Clase que testea los límites de tiempo, celdas y memoria de un análisis
+ * (ParseOptions) y la excepción ParseAbortedException.
+ */
+public class ParseOptionsTest {
+
+    /**
+     * S::=SS|a, muy ambigua: una palabra de miles de aes tarda segundos.
+     */
+    private static CYKAlgorithm gramaticaLenta() throws CYKAlgorithmException {
+        CYKAlgorithm cyk = new CYKAlgorithm();
+        cyk.addNonTerminal('S');
+        cyk.addTerminal('a');
+        cyk.setStartSymbol('S');
+        cyk.addProduction('S', "SS");
+        cyk.addProduction('S', "a");
+        return cyk;
+    }
+
+    private static ParseAbortedException analizar(CYKAlgorithm cyk, String word, ParseOptions options)
+            throws CYKAlgorithmException {
+        try {
+            cyk.isDerived(word, options);
+        } catch (ParseAbortedException e) {
+            return e;
+        }
+        fail("el análisis debía detenerse");
+        return null;
+    }
+
+    @Test
+    public void comprobarSinLimites() throws CYKAlgorithmException {
+        CYKAlgorithm cyk = gramaticaLenta();
+        assertTrue(cyk.isDerived("aaaa", new ParseOptions().timeout(Duration.ofMinutes(1)).maxCells(10)));
+        assertFalse(cyk.isDerived("", new ParseOptions().maxCells(0)));
+    }
+
+    @Test
+    public void comprobarPlazo() throws CYKAlgorithmException {
+        long inicio = System.nanoTime();
+        ParseAbortedException e = analizar(gramaticaLenta(), "a".repeat(3000),
+                new ParseOptions().timeout(Duration.ofMillis(50)));
+        assertTrue(System.nanoTime() - inicio < Duration.ofSeconds(30).toNanos());
+        assertEquals(ParseAbortedException.Reason.DEADLINE, e.reason());
+        assertEquals(3000, e.rows());
+        assertTrue(e.rowsCompleted() > 0 && e.rowsCompleted() < 3000);
+        assertTrue(e.elapsedNanos() >= Duration.ofMillis(50).toNanos());
+    }
+
+    @Test
+    public void comprobarLimiteDeCeldas() throws CYKAlgorithmException {
+        // filas de 10, 9 y 8 celdas: la cuarta (7) ya no cabe en 30
+        ParseAbortedException e = analizar(gramaticaLenta(), "a".repeat(10), new ParseOptions().maxCells(30));
+        assertEquals(ParseAbortedException.Reason.MAX_CELLS, e.reason());
+        assertEquals(3, e.rowsCompleted());
+        assertEquals(27, e.cellsFilled());
+        assertTrue(e.getMessage().startsWith("MAX_CELLS after 3 of 10 rows"));
+    }
+
+    @Test
+    public void comprobarPresupuestoDeMemoria() throws CYKAlgorithmException {
+        ParseAbortedException e = analizar(gramaticaLenta(), "a".repeat(20000),
+                new ParseOptions().memoryBudget(8 << 20));
+        assertEquals(ParseAbortedException.Reason.MEMORY_BUDGET, e.reason());
+        assertTrue(e.bytesAllocated() <= 8 << 20);
+
+        Chart chart = new Chart(gramaticaLenta().compile());
+        try {
+            chart.fill(new int[20000], 20000, new ParseOptions().memoryBudget(8 << 20));
+            fail("el análisis debía detenerse");
+        } catch (ParseAbortedException abortada) {
+            assertEquals(ParseAbortedException.Reason.MEMORY_BUDGET, abortada.reason());
+            assertEquals(0, abortada.rowsCompleted());
+        }
+    }
+
+    @Test
+    public void comprobarInterrupcion() throws CYKAlgorithmException {
+        Thread.currentThread().interrupt();
+        try {
+            ParseAbortedException e = analizar(gramaticaLenta(), "aaa", new ParseOptions());
+            assertEquals(ParseAbortedException.Reason.INTERRUPTED, e.reason());
+            assertTrue(gramaticaLenta().isDerived("aaa", new ParseOptions().interruptible(false)));
+            assertTrue(gramaticaLenta().isDerived("aaa"));
+        } finally {
+            Thread.interrupted();
+        }
+    }
+}
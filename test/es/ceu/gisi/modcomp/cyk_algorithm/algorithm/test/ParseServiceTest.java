@@ -0,0 +1,101 @@
+package es.ceu.gisi.modcomp.cyk_algorithm.algorithm.test;
+
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.CYKAlgorithm;
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.CompiledGrammar;
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.ParseService;
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.exceptions.CYKAlgorithmException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+
+/**
+ * Clase que testea el servicio de análisis asíncrono ParseService: colas
+ * acotadas, plazos, cancelación y métricas.
+ */
+public class ParseServiceTest {
+
+    private static final Duration PLAZO_LARGO = Duration.ofMinutes(5);
+
+    /**
+     * S::=SS|a, muy ambigua: una palabra de miles de aes tarda segundos.
+     */
+    private static CompiledGrammar gramaticaLenta() throws CYKAlgorithmException {
+        CYKAlgorithm cyk = new CYKAlgorithm();
+        cyk.addNonTerminal('S');
+        cyk.addTerminal('a');
+        cyk.setStartSymbol('S');
+        cyk.addProduction('S', "SS");
+        cyk.addProduction('S', "a");
+        return cyk.compile();
+    }
+
+    private static Throwable causa(CompletableFuture<?> future) throws InterruptedException {
+        try {
+            future.get();
+        } catch (ExecutionException e) {
+            return e.getCause();
+        }
+        fail("el análisis debía fallar");
+        return null;
+    }
+
+    @Test
+    public void comprobarAnalisis() throws Exception {
+        try (ParseService service = new ParseService(Gramaticas.ejemplo().compile(), 2, 10)) {
+            assertTrue(service.isDerived("baaba", PLAZO_LARGO).get());
+            assertFalse(service.isDerived("bb", PLAZO_LARGO).get());
+            assertFalse(service.isDerived("", PLAZO_LARGO).get());
+            assertTrue(service.parse(new int[]{1, 0, 0, 1, 0}, PLAZO_LARGO).get().isDerived());
+            assertTrue(causa(service.isDerived("abc", PLAZO_LARGO)) instanceof CYKAlgorithmException);
+
+            ParseService.Metrics metrics = service.metrics();
+            assertEquals(5, metrics.submitted());
+            assertEquals(4, metrics.completed());
+            assertEquals(1, metrics.failed());
+            assertTrue(metrics.maxLatencyNanos() > 0);
+            assertTrue(metrics.latencyPercentileNanos(50) <= metrics.maxLatencyNanos());
+        }
+    }
+
+    @Test
+    public void comprobarColaLlenaYCancelacion() throws Exception {
+        int[] larga = new int[3000];
+        try (ParseService service = new ParseService(gramaticaLenta(), 1, 1)) {
+            CompletableFuture<Boolean> primera = service.isDerived(larga, PLAZO_LARGO);
+            CompletableFuture<Boolean> segunda = service.isDerived(new int[]{0, 0}, PLAZO_LARGO);
+            CompletableFuture<Boolean> tercera = service.isDerived(new int[]{0}, PLAZO_LARGO);
+            assertTrue(causa(tercera) instanceof RejectedExecutionException);
+
+            primera.cancel(true);   // libera la tabla en la siguiente fila
+            assertTrue(segunda.get());
+            ParseService.Metrics metrics = service.metrics();
+            assertEquals(1, metrics.rejected());
+            assertEquals(1, metrics.cancelled());
+        }
+    }
+
+    @Test
+    public void comprobarPlazo() throws Exception {
+        try (ParseService service = new ParseService(gramaticaLenta(), 1, 0)) {
+            long inicio = System.nanoTime();
+            CompletableFuture<Boolean> future = service.isDerived(new int[3000], Duration.ofMillis(50));
+            assertTrue(causa(future) instanceof TimeoutException);
+
+            // el relleno se detiene en la siguiente fila y la tabla queda libre
+            while (service.metrics().running() > 0) {
+                assertTrue(System.nanoTime() - inicio < Duration.ofSeconds(30).toNanos());
+                Thread.sleep(1);
+            }
+            assertTrue(service.isDerived(new int[]{0, 0}, PLAZO_LARGO).get());
+            assertEquals(1, service.metrics().timedOut());
+            assertEquals(0, service.metrics().queueDepth());
+        }
+    }
+}
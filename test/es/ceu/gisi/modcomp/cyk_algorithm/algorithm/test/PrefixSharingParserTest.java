@@ -0,0 +1,56 @@
+package es.ceu.gisi.modcomp.cyk_algorithm.algorithm.test;
+
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.CYKAlgorithm;
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.PrefixSharingParser;
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.exceptions.CYKAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * Clase que testea el análisis por lotes que reutiliza las columnas de los
+ * prefijos comunes (PrefixSharingParser).
+ */
+public class PrefixSharingParserTest {
+
+    @Test
+    public void comprobarLote() throws CYKAlgorithmException {
+        CYKAlgorithm cyk = Gramaticas.ejemplo();
+        List<String> palabras = new ArrayList<>();
+        for (int length = 1; length <= 8; length++) {   // todas las palabras de aes y bes
+            for (int bits = 0; bits < 1 << length; bits++) {
+                StringBuilder sb = new StringBuilder();
+                for (int i = 0; i < length; i++) {
+                    sb.append((bits >> i & 1) == 0 ? 'a' : 'b');
+                }
+                palabras.add(sb.toString());
+            }
+        }
+        palabras.add("");
+        palabras.add("abxab");
+
+        PrefixSharingParser parser = new PrefixSharingParser(cyk.compile());
+        boolean[] derived = parser.isDerivedWords(palabras);
+        for (int w = 0; w < palabras.size(); w++) {
+            String word = palabras.get(w);
+            boolean expected = word.indexOf('x') < 0 && cyk.isDerived(word);
+            assertEquals(word, expected, derived[w]);
+        }
+        // los prefijos comunes ahorran más de la mitad de las celdas
+        assertTrue(parser.cellsReused() > parser.cellsComputed());
+    }
+
+    @Test
+    public void comprobarPalabrasSueltas() throws CYKAlgorithmException {
+        PrefixSharingParser parser = new PrefixSharingParser(Gramaticas.ejemplo().compile());
+        assertTrue(parser.isDerived(new int[]{1, 0, 0, 1, 0}));   // baaba
+        assertEquals(15, parser.cellsComputed());
+        assertEquals(Arrays.asList(false, true), Arrays.asList(parser.isDerived(new int[]{1, 0, 0, 1}),
+                parser.isDerived(new int[]{1, 0, 0, 1, 0})));
+        assertEquals(15, parser.cellsComputed());   // prefijos de la primera palabra
+        assertEquals(25, parser.cellsReused());
+    }
+}
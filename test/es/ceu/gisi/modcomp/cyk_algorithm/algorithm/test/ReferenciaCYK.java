@@ -0,0 +1,158 @@
+package es.ceu.gisi.modcomp.cyk_algorithm.algorithm.test;
+
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.exceptions.CYKAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Copia de la primera versión de CYKAlgorithm, con las celdas como String y
+ * las producciones en un HashMap, que sirve de referencia independiente en
+ * DifferentialTest: no comparte tablas compiladas, índices ni código de
+ * combinación con los motores que se comparan con ella.
+ */
+final class ReferenciaCYK {
+
+    private String[][] table;
+
+    private final List<Character> nonTerminals = new ArrayList<>();
+    private final List<Character> terminals = new ArrayList<>();
+    private Character startSymbol;
+    private final Map<Character, List<String>> productions = new HashMap<>();
+
+    void addNonTerminal(char nonterminal) throws CYKAlgorithmException {
+        if (nonTerminals.contains(nonterminal) || !Character.isLetter(nonterminal) || !Character.isUpperCase(nonterminal)) {
+            throw new CYKAlgorithmException();
+        }
+        nonTerminals.add(nonterminal);
+    }
+
+    void addTerminal(char terminal) throws CYKAlgorithmException {
+        if (terminals.contains(terminal) || !Character.isLetter(terminal) || !Character.isLowerCase(terminal)) {
+            throw new CYKAlgorithmException();
+        }
+        terminals.add(terminal);
+    }
+
+    void setStartSymbol(char nonterminal) throws CYKAlgorithmException {
+        if (!nonTerminals.contains(nonterminal)) {
+            throw new CYKAlgorithmException();
+        }
+        startSymbol = nonterminal;
+    }
+
+    void addProduction(char nonterminal, String production) throws CYKAlgorithmException {
+        if (!nonTerminals.contains(nonterminal) || !validProduction(production)) {
+            throw new CYKAlgorithmException();
+        }
+        List<String> list = productions.get(nonterminal);
+        if (list == null) {   // put, not computeIfAbsent: it links the entries of a bucket in another order
+            list = new ArrayList<>();
+            productions.put(nonterminal, list);
+        } else if (list.contains(production)) {
+            throw new CYKAlgorithmException();
+        }
+        list.add(production);
+    }
+
+    private boolean validProduction(String production) {
+        int length = production.length();
+        if (length == 1 && terminals.contains(production.charAt(0))) {
+            return true;
+        }
+        return length == 2 && nonTerminals.contains(production.charAt(0))
+                && nonTerminals.contains(production.charAt(1));
+    }
+
+    boolean isDerived(String word) throws CYKAlgorithmException {
+        if (startSymbol == null) {
+            throw new CYKAlgorithmException();
+        }
+        createMatrix(word);
+        return table[table.length - 1][0].indexOf(startSymbol) >= 0;
+    }
+
+    /**
+     * la tabla con el formato de algorithmStateToString
+     *
+     * @param porIdentificador si es true, los no terminales de cada celda en
+     * el orden en que se añadieron a la gramática, como en Chart; si no, en el
+     * orden en que el algoritmo los añade a la celda
+     */
+    String algorithmStateToString(String word, boolean porIdentificador) throws CYKAlgorithmException {
+        createMatrix(word);
+        if (porIdentificador) {
+            for (String[] row : table) {
+                for (int j = 0; j < row.length; j++) {
+                    StringBuilder cell = new StringBuilder();
+                    for (char c : nonTerminals) {
+                        if (row[j].indexOf(c) >= 0) {
+                            cell.append(c);
+                        }
+                    }
+                    row[j] = cell.toString();
+                }
+            }
+        }
+        int[] maxLength = new int[table.length];
+        for (int i = 0; i < table.length; i++) {
+            for (int j = 0; j < table.length - i; j++) {
+                maxLength[j] = Math.max(maxLength[j], table[i][j].length());
+            }
+        }
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < table.length; i++) {
+            for (int j = 0; j < table.length - i; j++) {
+                result.append(table[i][j]).append(" ".repeat(maxLength[j] - table[i][j].length() + 1));
+            }
+            result.append('\n');
+        }
+        return result.toString();
+    }
+
+    private void createMatrix(String word) throws CYKAlgorithmException {
+        if (productions.isEmpty() || terminals.isEmpty() || word.isEmpty()) {
+            throw new CYKAlgorithmException();
+        }
+        for (char c : word.toCharArray()) {
+            if (!terminals.contains(c)) {
+                throw new CYKAlgorithmException();
+            }
+        }
+        int length = word.length();
+        table = new String[length][length];
+        for (int i = 0; i < length; i++) {
+            for (int j = 0; j < length; j++) {
+                table[i][j] = "";
+            }
+        }
+        for (int j = 0; j < length; j++) {
+            for (Map.Entry<Character, List<String>> entry : productions.entrySet()) {
+                if (entry.getValue().contains(String.valueOf(word.charAt(j)))) {
+                    table[0][j] += entry.getKey();
+                }
+            }
+        }
+        for (int i = 1; i < length; i++) {
+            for (int j = 0; j < length - i; j++) {
+                String result = "";
+                for (int k = 0; k < i; k++) {
+                    String left = table[k][j];
+                    String right = table[i - 1 - k][j + k + 1];
+                    for (int b = 0; b < left.length(); b++) {
+                        for (int c = 0; c < right.length(); c++) {
+                            String pair = "" + left.charAt(b) + right.charAt(c);
+                            for (Map.Entry<Character, List<String>> entry : productions.entrySet()) {
+                                if (entry.getValue().contains(pair) && result.indexOf(entry.getKey()) < 0) {
+                                    result += entry.getKey();
+                                }
+                            }
+                        }
+                    }
+                }
+                table[i][j] = result;
+            }
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package es.ceu.gisi.modcomp.cyk_algorithm.algorithm.test;
+
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.CYKAlgorithm;
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.CompiledGrammar;
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.SlidingWindowRecognizer;
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.exceptions.CYKAlgorithmException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+/**
+ * Clase que testea el reconocimiento de ventanas de un flujo de símbolos
+ * mediante la clase SlidingWindowRecognizer.
+ */
+public class SlidingWindowRecognizerTest {
+
+    private static List<String> ventanas(SlidingWindowRecognizer recognizer, CompiledGrammar grammar, String stream) {
+        List<String> matches = new ArrayList<>();
+        for (int i = 0; i < stream.length(); i++) {
+            recognizer.push(grammar.terminalId(String.valueOf(stream.charAt(i))),
+                    (start, length) -> matches.add(start + "+" + length));
+        }
+        return matches;
+    }
+
+    @Test
+    public void comprobarVentanas() throws CYKAlgorithmException {
+        CYKAlgorithm cyk = Gramaticas.ejemplo();
+        CompiledGrammar grammar = cyk.compile();
+        String stream = "baababbaababbbaabaaabab";
+        int window = 6;
+
+        // las subcadenas de longitud hasta la ventana, ordenadas por su final
+        BitSet[] spans = cyk.derivedSpans(stream);
+        List<String> expected = new ArrayList<>();
+        for (int end = 0; end < stream.length(); end++) {
+            for (int length = 1; length <= Math.min(window, end + 1); length++) {
+                if (spans[length - 1].get(end - length + 1)) {
+                    expected.add((end - length + 1) + "+" + length);
+                }
+            }
+        }
+        SlidingWindowRecognizer recognizer = new SlidingWindowRecognizer(grammar, window);
+        assertEquals(expected, ventanas(recognizer, grammar, stream));
+        assertEquals(stream.length(), recognizer.position());
+
+        recognizer.reset();
+        assertEquals(0, recognizer.position());
+        assertEquals(expected, ventanas(recognizer, grammar, stream));
+    }
+
+    @Test
+    public void comprobarSimboloDesconocido() throws CYKAlgorithmException {
+        CompiledGrammar grammar = Gramaticas.ejemplo().compile();
+        SlidingWindowRecognizer recognizer = new SlidingWindowRecognizer(grammar, 4);
+        // "ab" se reconoce, pero "axb" no porque x no es un terminal
+        assertEquals("[0+2, 3+2]", ventanas(recognizer, grammar, "abxab").toString());
+        assertEquals(0, recognizer.push(-1, null));
+    }
+}
@@ -0,0 +1,61 @@
+package es.ceu.gisi.modcomp.cyk_algorithm.algorithm.test;
+
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.CYKAlgorithm;
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.Chart;
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.CompiledGrammar;
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.exceptions.CYKAlgorithmException;
+import java.util.BitSet;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+/**
+ * Clase que testea la búsqueda de todas las subcadenas derivables de una
+ * palabra con un solo cálculo de la tabla.
+ */
+public class SpansTest {
+
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+
+    @Test
+    public void comprobarTodasLasSubcadenas() throws CYKAlgorithmException {
+        CYKAlgorithm cyk = Gramaticas.ejemplo();
+        String word = "baababbaabab";
+        BitSet[] spans = cyk.derivedSpans(word);
+        assertEquals(word.length(), spans.length);
+        for (int length = 1; length <= word.length(); length++) {
+            for (int start = 0; start + length <= word.length(); start++) {
+                boolean derived = cyk.isDerived(word.substring(start, start + length));
+                assertEquals(start + "," + length, derived, spans[length - 1].get(start));
+            }
+        }
+    }
+
+    @Test
+    public void comprobarSubcadenasDeUnNoTerminal() throws CYKAlgorithmException {
+        CYKAlgorithm cyk = Gramaticas.ejemplo();
+        BitSet[] spans = cyk.derivedSpans("baaba", "B");
+        assertEquals("{0, 3}", spans[0].toString());
+        assertEquals("{1}", spans[1].toString());
+        assertEquals("{1, 2}", spans[2].toString());
+        assertTrue(spans[4].isEmpty());
+
+        CompiledGrammar grammar = cyk.compile();
+        Chart chart = new Chart(grammar);
+        chart.fill(new int[]{1, 0, 0, 1, 0}, 5);
+        BitSet[] desdeChart = chart.spans(2);   // B
+        for (int i = 0; i < spans.length; i++) {
+            assertEquals(spans[i], desdeChart[i]);
+        }
+        assertEquals(0, cyk.derivedSpans("").length);
+    }
+
+    @Test
+    public void comprobarNoTerminalDesconocido() throws CYKAlgorithmException {
+        thrown.expect(CYKAlgorithmException.class);
+        Gramaticas.ejemplo().derivedSpans("baaba", "X");
+    }
+}
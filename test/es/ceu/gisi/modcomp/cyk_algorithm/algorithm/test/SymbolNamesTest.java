@@ -0,0 +1,164 @@
+package es.ceu.gisi.modcomp.cyk_algorithm.algorithm.test;
+
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.CYKAlgorithm;
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.CompiledGrammar;
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.SymbolTable;
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.exceptions.CYKAlgorithmException;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+/**
+ * Clase que testea el uso de símbolos con nombres arbitrarios (SymbolTable y
+ * los métodos de CYKAlgorithm que reciben String) y de secuencias de tokens
+ * como entrada.
+ */
+public class SymbolNamesTest {
+
+    private CYKAlgorithm cyk;
+
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+
+    @Test
+    public void comprobarTablaDeSimbolos() {
+        SymbolTable table = new SymbolTable();
+        assertEquals(0, table.intern("S"));
+        assertEquals(1, table.intern("Expr"));
+        assertEquals(0, table.intern("S"));
+        assertEquals(0, table.idOf('S'));
+        assertEquals(-1, table.idOf('E'));
+        assertEquals(1, table.idOf("Expr"));
+        assertEquals(-1, table.idOf("Term"));
+        assertEquals("Expr", table.nameOf(1));
+        assertFalse(table.hasOnlyCharNames());
+        for (int i = 0; i < 5000; i++) {
+            assertEquals(i + 2, table.intern("N" + i));
+        }
+        assertEquals(4001, table.idOf("N3999"));
+    }
+
+    @Test
+    public void comprobarNombreRepetidoEntreConjuntos() throws CYKAlgorithmException {
+        thrown.expect(CYKAlgorithmException.class);
+        cyk = new CYKAlgorithm();
+        cyk.addTerminal("num");
+        cyk.addNonTerminal("num");
+    }
+
+    @Test
+    public void comprobarNombreNoValido() throws CYKAlgorithmException {
+        thrown.expect(CYKAlgorithmException.class);
+        cyk = new CYKAlgorithm();
+        cyk.addNonTerminal("A|B");
+    }
+
+    @Test
+    public void comprobarAdaptadorChar() throws CYKAlgorithmException {
+        thrown.expect(CYKAlgorithmException.class);
+        cyk = new CYKAlgorithm();
+        cyk.addNonTerminal('S');
+        cyk.addNonTerminal("S");
+    }
+
+    @Test
+    public void comprobarProduccionesConNombres() throws CYKAlgorithmException {
+        cyk = new CYKAlgorithm();
+        cyk.addNonTerminal("Expr");
+        cyk.addNonTerminal("Op");
+        cyk.addNonTerminal("Tail");
+        cyk.addTerminal('x');
+        cyk.addTerminal('p');
+        cyk.setStartSymbol("Expr");
+        cyk.addProduction("Expr", "Expr", "Tail");
+        cyk.addProduction("Expr", "x");
+        cyk.addProduction("Tail", "Op", "Expr");
+        cyk.addProduction("Op", "p");
+
+        assertEquals("Expr::=Expr Tail|x", cyk.getProductions("Expr"));
+        assertEquals("Op::=p", cyk.getProductions("Op"));
+        assertTrue(cyk.isDerived("xpxpx"));
+        assertFalse(cyk.isDerived("xpp"));
+        assertEquals("Expr Op   Expr \n     Tail \nExpr \n", cyk.algorithmStateToString("xpx"));
+    }
+
+    @Test
+    public void comprobarMilesDeNoTerminales() throws CYKAlgorithmException {
+        cyk = new CYKAlgorithm();
+        cyk.addTerminal('a');
+        cyk.addNonTerminal("A");
+        cyk.addProduction("A", "a");
+        cyk.addNonTerminal("L1");
+        cyk.addProduction("L1", "A", "A");
+        for (int i = 2; i < 3000; i++) {
+            cyk.addNonTerminal("L" + i);
+            cyk.addProduction("L" + i, "L" + (i - 1), "A");
+        }
+        cyk.setStartSymbol("L20");
+
+        assertTrue(cyk.isDerived("a".repeat(21)));
+        assertFalse(cyk.isDerived("a".repeat(20)));
+    }
+
+    @Test
+    public void comprobarDerivacionTokens() throws CYKAlgorithmException {
+        cyk = new CYKAlgorithm();
+        cyk.addNonTerminal("Expr");
+        cyk.addNonTerminal("Op");
+        cyk.addNonTerminal("Tail");
+        cyk.addTerminal("num");
+        cyk.addTerminal("plus");
+        cyk.setStartSymbol("Expr");
+        cyk.addProduction("Expr", "Expr", "Tail");
+        cyk.addProduction("Expr", "num");
+        cyk.addProduction("Tail", "Op", "Expr");
+        cyk.addProduction("Op", "plus");
+
+        CompiledGrammar grammar = cyk.compile();
+        int num = grammar.terminalId("num");
+        int plus = grammar.terminalId("plus");
+        assertEquals(-1, grammar.terminalId("minus"));
+
+        assertTrue(cyk.isDerived(new int[]{num}));
+        assertTrue(cyk.isDerived(new int[]{num, plus, num, plus, num}));
+        assertFalse(cyk.isDerived(new int[]{num, plus}));
+        assertFalse(cyk.isDerived(new int[]{}));
+    }
+
+    @Test
+    public void comprobarTerminalesDeUnCaracter() throws CYKAlgorithmException {
+        cyk = new CYKAlgorithm();
+        cyk.addNonTerminal("S");
+        cyk.addNonTerminal("N");
+        cyk.addTerminal("a");
+        cyk.addTerminal("num");
+        cyk.setStartSymbol("S");
+        cyk.addProduction("S", "N", "N");
+        cyk.addProduction("N", "a");
+        cyk.addProduction("N", "num");
+
+        CompiledGrammar grammar = cyk.compile();
+        assertEquals(grammar.terminalId("a"), grammar.terminalId('a'));
+        assertEquals(-1, grammar.terminalId('n'));
+        assertTrue(cyk.isDerived("aa"));
+        assertFalse(cyk.isDerived("a"));
+        assertTrue(cyk.isDerived(new int[]{grammar.terminalId("num"), grammar.terminalId('a')}));
+
+        thrown.expect(CYKAlgorithmException.class);
+        cyk.isDerived("an");   // "num" no se puede escribir con un carácter
+    }
+
+    @Test
+    public void comprobarTokenNoValido() throws CYKAlgorithmException {
+        thrown.expect(CYKAlgorithmException.class);
+        cyk = new CYKAlgorithm();
+        cyk.addNonTerminal('S');
+        cyk.addTerminal('a');
+        cyk.setStartSymbol('S');
+        cyk.addProduction('S', "a");
+        cyk.isDerived(new int[]{0, 1});
+    }
+}
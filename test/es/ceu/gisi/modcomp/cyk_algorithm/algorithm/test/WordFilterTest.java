@@ -0,0 +1,113 @@
+package es.ceu.gisi.modcomp.cyk_algorithm.algorithm.test;
+
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.CYKAlgorithm;
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.Chart;
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.CompiledGrammar;
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.WordFilter;
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.WordFilter.Check;
+import es.ceu.gisi.modcomp.cyk_algorithm.algorithm.exceptions.CYKAlgorithmException;
+import java.util.Random;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * Clase que testea los filtros previos (WordFilter) que descartan palabras
+ * antes de construir la tabla.
+ */
+public class WordFilterTest {
+
+    /**
+     * a^n b^n con n >= 1: S::=AB|AT, T::=SB, A::=a, B::=b; la c sólo la
+     * produce D, que no es alcanzable desde el axioma
+     */
+    private static CYKAlgorithm gramaticaAnBn() throws CYKAlgorithmException {
+        CYKAlgorithm cyk = new CYKAlgorithm();
+        cyk.addNonTerminal('S');
+        cyk.addNonTerminal('T');
+        cyk.addNonTerminal('A');
+        cyk.addNonTerminal('B');
+        cyk.addNonTerminal('D');
+        cyk.addTerminal('a');
+        cyk.addTerminal('b');
+        cyk.addTerminal('c');
+        cyk.setStartSymbol('S');
+        cyk.addProduction('S', "AB");
+        cyk.addProduction('S', "AT");
+        cyk.addProduction('T', "SB");
+        cyk.addProduction('A', "a");
+        cyk.addProduction('B', "b");
+        cyk.addProduction('D', "c");
+        return cyk;
+    }
+
+    private static int[] tokens(CompiledGrammar grammar, String word) {
+        int[] tokens = new int[word.length()];
+        for (int i = 0; i < tokens.length; i++) {
+            tokens[i] = grammar.terminalId(word.charAt(i));
+        }
+        return tokens;
+    }
+
+    @Test
+    public void comprobarCondiciones() throws CYKAlgorithmException {
+        CompiledGrammar grammar = gramaticaAnBn().compile();
+        WordFilter filter = grammar.filter();
+        assertEquals(Check.TERMINAL, filter.check(tokens(grammar, "acbb")));
+        assertEquals(Check.LENGTH, filter.check(tokens(grammar, "aab")));
+        assertEquals(Check.FIRST, filter.check(tokens(grammar, "baab")));
+        assertEquals(Check.LAST, filter.check(tokens(grammar, "aaba")));
+        assertEquals(Check.PAIR, filter.check(tokens(grammar, "abab")));
+        assertNull(filter.check(tokens(grammar, "aabb")));
+        assertNull(filter.check(tokens(grammar, "abbb")));   // pasa los filtros pero no se deriva
+
+        assertTrue(filter.derivesLength(2));
+        assertFalse(filter.derivesLength(127));
+        assertTrue(filter.derivesLength(128));
+        assertEquals(7, filter.checked());
+        for (Check check : Check.values()) {
+            assertEquals(check.name(), 1, filter.rejected(check));
+        }
+    }
+
+    @Test
+    public void comprobarIsDerived() throws CYKAlgorithmException {
+        CYKAlgorithm cyk = gramaticaAnBn();
+        WordFilter filter = cyk.compile().filter();
+        assertTrue(cyk.isDerived("aaabbb"));
+        assertFalse(cyk.isDerived("abbb"));
+        assertFalse(cyk.isDerived("aabbb"));
+        assertFalse(cyk.isDerived("abab"));
+        assertFalse(cyk.isDerived(new int[]{1, 0}));
+        assertEquals(5, filter.checked());
+        assertEquals(1, filter.rejected(Check.LENGTH));
+        assertEquals(1, filter.rejected(Check.PAIR));
+        assertEquals(1, filter.rejected(Check.FIRST));
+    }
+
+    /**
+     * los filtros nunca descartan una palabra que se deriva
+     */
+    @Test
+    public void comprobarSinFalsosNegativos() throws CYKAlgorithmException {
+        CompiledGrammar grammar = Gramaticas.ejemplo().compile();
+        WordFilter filter = grammar.filter();
+        Chart chart = new Chart(grammar);
+        Random random = new Random(44);
+        int derived = 0;
+        for (int w = 0; w < 2000; w++) {
+            int[] tokens = new int[1 + random.nextInt(12)];
+            for (int i = 0; i < tokens.length; i++) {
+                tokens[i] = random.nextInt(2);
+            }
+            chart.fill(tokens, tokens.length);
+            if (chart.isDerived()) {
+                derived++;
+                assertNull(filter.check(tokens));
+            }
+        }
+        assertTrue(derived > 100);
+    }
+}